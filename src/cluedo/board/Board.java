@@ -2,15 +2,26 @@ package cluedo.board;
 import java.awt.Point;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
+import cluedo.control.BufferedSink;
 import cluedo.control.CluedoError;
 import cluedo.control.CluedoGame;
 import cluedo.control.CluedoGame.Room;
+import cluedo.control.GameListener;
+import cluedo.control.OutputSink;
+import cluedo.metrics.Metrics;
+import cluedo.metrics.MoveEvent;
 import cluedo.tokens.Card;
 import cluedo.tokens.CharacterToken;
 import cluedo.tokens.GameToken;
+import cluedo.tokens.PositionStore;
 
 /**
  * Holds the tokens and logic for moving the tokens around the board.
@@ -26,8 +37,33 @@ public class Board {
 	private int numPlayers;
 	private List<CharacterToken> activePlayers;
 	private Card[] solution;
+	private List<GameListener> listeners; // told when tokens move
+	private long gameId;
 	
 	private Tile[][] board; // the board is a 2D array of tiles
+	private PositionStore positions; // where the game's tokens are, which the tiles look up
+	
+	private static final char[] ROOM_SYMBOLS = new char[Room.values().length]; // indexed by room
+	static {
+		ROOM_SYMBOLS[Room.KITCHEN.ordinal()] = 'K';
+		ROOM_SYMBOLS[Room.BALL_ROOM.ordinal()] = 'B';
+		ROOM_SYMBOLS[Room.CONSERVATORY.ordinal()] = 'C';
+		ROOM_SYMBOLS[Room.DINING_ROOM.ordinal()] = 'N';
+		ROOM_SYMBOLS[Room.BILLIARD_ROOM.ordinal()] = 'I';
+		ROOM_SYMBOLS[Room.LIBRARY.ordinal()] = 'L';
+		ROOM_SYMBOLS[Room.LOUNGE.ordinal()] = 'O';
+		ROOM_SYMBOLS[Room.HALL.ordinal()] = 'H';
+		ROOM_SYMBOLS[Room.STUDY.ordinal()] = 'S';
+	}
+	private static final Direction[] DIRECTIONS = Direction.values();
+	private static final char[] DOOR_ENTERED = { 'n', 'e', 's', 'w' }; // the door entered stepping each way
+	private static final int MAX_LAYOUTS = 64; // board files kept once read, the least recently used dropped first
+	private static final Map<String, Layout> layouts = new LinkedHashMap<String, Layout>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		protected boolean removeEldestEntry(Map.Entry<String, Layout> eldest) {
+			return size() > MAX_LAYOUTS;
+		}
+	}; // by the full path of each board file
 	
 	/**
 	 * Creates the board by reading a given file.
@@ -40,40 +76,127 @@ public class Board {
 		this.numPlayers = game.numPlayers();
 		this.activePlayers = game.players();
 		this.solution = game.Solution();
-		this.board = new Tile[25][25];
+		this.listeners = game.listeners();
+		this.gameId = game.id();
+		this.positions = game.positions();
 		
-		// reading the board file
-		Scanner scanner = null;
-		try{
-			scanner = new Scanner(new File(boardFile));
-			for(height=0; scanner.hasNextLine(); height++){
-				char[] line = scanner.nextLine().toCharArray();
-				for(width=0; width < line.length; width++){
-						
-					// read the text character
-					char c = line[width];
-					Position pos = new Position(height, width, c);
+		// reading the board file, whose longest line sets the width
+		List<String> lines = layout(boardFile);
+		this.height = lines.size();
+		this.width = 0;
+		for(String line : lines){
+			width = Math.max(width, line.length());
+		}
+		this.board = new Tile[height][width];
+		positions.cover(width, height);
+		for(int y=0; y < height; y++){
+			String line = lines.get(y);
+			for(int x=0; x < width; x++){
 					
-					// digits are starting positions
-					if(Character.isDigit(c)){
-						// starting tile
-						HallwayTile startTile = new HallwayTile(pos, ' ');
-						for(CharacterToken player : activePlayers){
-							if(player.getUid() == Character.getNumericValue(c)){
-								// set player start location
-								startTile.setToken(player);
-								player.setXPos(width);
-								player.setYPos(height);
-							}
+				// read the text character, short lines are walled off
+				char c = x < line.length() ? line.charAt(x) : 'x';
+				Position pos = new Position(y, x, c);
+				
+				// digits are starting positions
+				if(Character.isDigit(c)){
+					// starting tile
+					HallwayTile startTile = new HallwayTile(pos, ' ');
+					startTile.bind(positions, x, y);
+					for(CharacterToken player : activePlayers){
+						if(player.getUid() == Character.getNumericValue(c)){
+							// set player start location
+							startTile.setToken(player);
 						}
-						board[height][width] = startTile;
-					} else {
-						board[height][width] = getTile(c, pos);
 					}
+					board[y][x] = startTile;
+				} else {
+					board[y][x] = getTile(c, pos);
+					board[y][x].bind(positions, x, y);
 				}
 			}
+		}
+	}
+	
+	/**
+	 * Returns the number of squares across the board.
+	 * @return
+	 */
+	public int width(){
+		return width;
+	}
+	
+	/**
+	 * Returns the number of squares down the board.
+	 * @return
+	 */
+	public int height(){
+		return height;
+	}
+	
+	/**
+	 * Returns the lines of a board file, reading it only when it has not been
+	 *  read before or has changed since, so that games can be created without
+	 *  reading the disk. A file is taken to have changed when its time or size
+	 *  has changed, and only the most recently used files are kept.
+	 * @param boardFile
+	 * @return
+	 */
+	static List<String> layout(String boardFile) {
+		File file = new File(boardFile);
+		String path = file.getAbsolutePath();
+		long modified = file.lastModified();
+		long length = file.length();
+		synchronized(layouts){
+			Layout known = layouts.get(path);
+			if(known != null && known.modified == modified && known.length == length)
+				return known.lines;
+		}
+		List<String> lines = new ArrayList<String>();
+		Scanner scanner = null;
+		try{
+			scanner = new Scanner(file);
+			while(scanner.hasNextLine()){
+				lines.add(scanner.nextLine());
+			}
 		} catch(IOException e) {
-			System.out.println("Error processing board file");
+			throw new CluedoError("Error processing board file: " + boardFile);
+		} finally {
+			if(scanner != null)
+				scanner.close();
+		}
+		lines = Collections.unmodifiableList(lines);
+		synchronized(layouts){
+			layouts.put(path, new Layout(lines, modified, length));
+		}
+		return lines;
+	}
+	
+	/**
+	 * Drops what is kept of a board file, so it is read again the next time
+	 *  it is used. For a file written over too quickly for its time to change.
+	 * @param boardFile
+	 */
+	public static void forget(String boardFile) {
+		if(boardFile == null)
+			throw new CluedoError("Null parameters: forget()");
+		synchronized(layouts){
+			layouts.remove(new File(boardFile).getAbsolutePath());
+		}
+		MoveTable.forget(boardFile);
+	}
+	
+	/**
+	 * The lines of a board file, with the time and size of the file when read.
+	 */
+	private static class Layout {
+		final List<String> lines;
+		final long modified;
+		final long length;
+		
+		Layout(List<String> lines, long modified, long length) {
+			this.lines = lines;
+			this.modified = modified;
+			this.length = length;
 		}
 	}
 	
@@ -130,31 +253,7 @@ public class Board {
 	 * @return
 	 */
 	public boolean canMoveNorth(CharacterToken token){	
-		if(token==null)
-			return false;
-		// already in north most square
-		if(token.getYPos() - 1 < 0){
-			return false;
-		}
-		
-		// cannot move if north is a room, invalid tile, or entrance which is not north
-		int xpos = token.getXPos();
-		int ypos = token.getYPos();
-		Tile t = board[ypos-1][xpos];
-		char symbol = t.getSymbol();
-		// cannot move if next tile already contains a token
-		if(t.getToken()!=null){ 
-			return false;
-		}
-		if(inDoorway(token) || inRoom(token)){
-			return Character.isUpperCase(symbol) || symbol == 'n' 
-					|| symbol == 'e' || symbol == 's' || symbol == 'w';
-		}
-		if(Character.isUpperCase(symbol) || symbol == 'x' 
-				|| symbol == 'e' || symbol == 's' || symbol == 'w'){
-			return false;
-		}
-		return true;
+		return token != null && canStep(token.getXPos(), token.getYPos(), Direction.NORTH);
 	}
 	
 	/**
@@ -163,31 +262,7 @@ public class Board {
 	 * @return
 	 */
 	public boolean canMoveEast(CharacterToken token){	
-		if(token==null)
-			return false;
-		// already in east most square
-		if(token.getXPos() + 1 >= width){
-			return false;
-		}
-		
-		// cannot move if east is a room, invalid tile, or entrance which is not north
-		int xpos = token.getXPos();
-		int ypos = token.getYPos();
-		Tile t = board[ypos][xpos + 1];
-		char symbol = t.getSymbol();
-		// cannot move if next tile already contains a token
-		if(t.getToken()!=null){ 
-			return false;
-		}
-		if(inDoorway(token) || inRoom(token)){
-			return Character.isUpperCase(symbol) || symbol == 'n' 
-					|| symbol == 'e' || symbol == 's' || symbol == 'w';
-		}
-		if(Character.isUpperCase(symbol) || symbol == 'x' 
-				|| symbol == 'n' || symbol == 's' || symbol == 'w'){
-			return false;
-		}
-		return true;
+		return token != null && canStep(token.getXPos(), token.getYPos(), Direction.EAST);
 	}
 	
 	/**
@@ -196,67 +271,192 @@ public class Board {
 	 * @return
 	 */
 	public boolean canMoveSouth(CharacterToken token){
-		if(token==null)
-			return false;	
-		// already in south most square
-		if(token.getYPos() + 1 >= height){
-			return false;
-		}
-		
-		// cannot move if south is a room, invalid tile, or entrance which is not south
-		int xpos = token.getXPos();
-		int ypos = token.getYPos();
-//		Tile t = board[ypos+1][xpos];
-		Tile t = getTile(xpos,ypos+1);
-		if(t==null)
+		return token != null && canStep(token.getXPos(), token.getYPos(), Direction.SOUTH);
+	}
+	
+	/**
+	 * Returns true if a given player can move west on the board
+	 * @param token
+	 * @return
+	 */
+	public boolean canMoveWest(CharacterToken token){	
+		return token != null && canStep(token.getXPos(), token.getYPos(), Direction.WEST);
+	}
+	
+	/**
+	 * Returns true if a token on a given square could step in a given direction.
+	 *  A token cannot step off the board, onto a wall, or onto another token.
+	 *  From the hallway it can step onto hallway, or into a doorway facing the
+	 *  way it is going. From a room or doorway it can step within rooms and
+	 *  doorways, or out of a doorway back into the hallway the way it was entered.
+	 */
+	boolean canStep(int x, int y, Direction dir){
+		int nx = x + dir.dx();
+		int ny = y + dir.dy();
+		if(nx < 0 || nx >= width || ny < 0 || ny >= height)
 			return false;
-		char symbol = t.getSymbol();
+		Tile from = board[y][x];
+		Tile t = board[ny][nx];
 		// cannot move if next tile already contains a token
-		if(t.getToken()!=null){ 
+		if(t.getToken() != null)
 			return false;
+		char symbol = t.getSymbol();
+		boolean door = symbol == 'n' || symbol == 'e' || symbol == 's' || symbol == 'w';
+		if(from instanceof DoorwayTile){
+			// a doorway can be left back into the hallway the way it was entered
+			// (the door's own symbol, not the token in it)
+			if(symbol == ' ' && from.symbol == DOOR_ENTERED[dir.ordinal() ^ 2])
+				return true;
+			return Character.isUpperCase(symbol) || door;
 		}
-		if(inDoorway(token) || inRoom(token)){
-			return Character.isUpperCase(symbol) || symbol == 'n' 
-					|| symbol == 'e' || symbol == 's' || symbol == 'w';
-		}
-		if(Character.isUpperCase(symbol) || symbol == 'x' 
-				|| symbol == 'n' || symbol == 'e' || symbol == 'w'){
+		if(from instanceof RoomTile)
+			return Character.isUpperCase(symbol) || door;
+		// from the hallway, only through a door facing the way of the step
+		if(Character.isUpperCase(symbol) || symbol == 'x' || door && symbol != DOOR_ENTERED[dir.ordinal()])
 			return false;
-		}
 		return true;
 	}
 	
 	/**
-	 * Returns true if a given player can move west on the board
+	 * Returns true if a given player can move one step in a given direction
 	 * @param token
+	 * @param dir
 	 * @return
 	 */
-	public boolean canMoveWest(CharacterToken token){	
-		if(token==null)
-			return false;
-		// already in west most square
-		if(token.getXPos() - 1 < 0){
+	public boolean canMove(CharacterToken token, Direction dir){
+		if(dir == null)
 			return false;
+		switch(dir){
+			case NORTH:
+				return canMoveNorth(token);
+			case EAST:
+				return canMoveEast(token);
+			case SOUTH:
+				return canMoveSouth(token);
+			default:
+				return canMoveWest(token);
 		}
-		
-		// cannot move if west is a room, invalid tile, or entrance which is not north
-		int xpos = token.getXPos();
-		int ypos = token.getYPos();
-		Tile t = board[ypos][xpos - 1];
-		char symbol = t.getSymbol();
-		// cannot move if next tile already contains a token
-		if(t.getToken()!=null){ 
-			return false;
+	}
+	
+	/**
+	 * Returns the shortest way for a player to reach a square this turn, as the
+	 *  direction of each step, going around other tokens. Returns null if the
+	 *  square cannot be reached in at most the given number of steps.
+	 * @param player
+	 * @param x
+	 * @param y
+	 * @param maxSteps
+	 * @return
+	 */
+	public List<Direction> pathTo(CharacterToken player, int x, int y, int maxSteps){
+		if(player == null || getTile(x, y) == null)
+			return null;
+		return PathFinder.path(this, player.getXPos(), player.getYPos(), x, y, maxSteps);
+	}
+	
+	/**
+	 * Returns the shortest way for a player to get into a room this turn, as the
+	 *  direction of each step, going around other tokens. Returns null if the
+	 *  room cannot be reached in at most the given number of steps.
+	 * @param player
+	 * @param room
+	 * @param maxSteps
+	 * @return
+	 */
+	public List<Direction> pathToRoom(CharacterToken player, Room room, int maxSteps){
+		if(player == null || room == null)
+			return null;
+		int[] dist = distances(player, maxSteps);
+		int best = -1;
+		for(int i = 0; i < dist.length; i++){
+			Tile t = board[i / width][i % width];
+			if(dist[i] >= 0 && t instanceof RoomTile && ((RoomTile)t).name() == room
+					&& (best < 0 || dist[i] < dist[best]))
+				best = i;
 		}
-		if(inDoorway(token) || inRoom(token)){
-			return Character.isUpperCase(symbol) || symbol == 'n' 
-					|| symbol == 'e' || symbol == 's' || symbol == 'w';
+		if(best < 0)
+			return null;
+		return path(dist, best % width, best / width);
+	}
+	
+	/**
+	 * Moves a player along a path, checking every step before taking any.
+	 * @param player
+	 * @param path
+	 */
+	public void follow(CharacterToken player, List<Direction> path){
+		if(player == null || path == null)
+			throw new CluedoError("Null parameters: follow()");
+		// walk the path first, so that a bad path moves no one
+		int x = player.getXPos(), y = player.getYPos();
+		for(Direction d : path){
+			if(!canStep(x, y, d) && !(x + d.dx() == player.getXPos() && y + d.dy() == player.getYPos()))
+				throw new CluedoError("Cannot move " + d + " from " + x + ", " + y);
+			x += d.dx();
+			y += d.dy();
 		}
-		if(Character.isUpperCase(symbol) || symbol == 'x' 
-				|| symbol == 'n' || symbol == 'e' || symbol == 's'){
-			return false;
+		for(Direction d : path){
+			move(player, d);
 		}
-		return true;
+	}
+	
+	/**
+	 * Returns the steps from a player to every square within a number of steps,
+	 *  by a breadth first search, with -1 for squares out of reach.
+	 */
+	private int[] distances(CharacterToken player, int maxSteps){
+		int[] dist = new int[width * height];
+		Arrays.fill(dist, -1);
+		int[] queue = new int[width * height];
+		int head = 0, tail = 0;
+		int start = player.getYPos() * width + player.getXPos();
+		dist[start] = 0;
+		queue[tail++] = start;
+		while(head < tail){
+			int square = queue[head++];
+			if(dist[square] >= maxSteps)
+				continue;
+			int x = square % width, y = square / width;
+			for(Direction d : DIRECTIONS){
+				int next = square + d.dy() * width + d.dx();
+				if(canStep(x, y, d) && dist[next] < 0){
+					dist[next] = dist[square] + 1;
+					queue[tail++] = next;
+				}
+			}
+		}
+		return dist;
+	}
+	
+	/**
+	 * Returns the steps back along a search from a square to where it started.
+	 */
+	private List<Direction> path(int[] dist, int x, int y){
+		Direction[] steps = new Direction[dist[y * width + x]];
+		for(int i = steps.length - 1; i >= 0; i--){
+			for(Direction d : DIRECTIONS){
+				int px = x - d.dx(), py = y - d.dy();
+				if(getTile(px, py) != null && dist[py * width + px] == i && canStep(px, py, d)){
+					steps[i] = d;
+					x = px;
+					y = py;
+					break;
+				}
+			}
+		}
+		return Arrays.asList(steps);
+	}
+	
+	/**
+	 * Moves player one position in a given direction
+	 * @param player
+	 * @param dir
+	 */
+	public void move(CharacterToken player, Direction dir){
+		if(player==null || dir==null)
+			return;
+		Point newPos = new Point(player.getXPos() + dir.dx(), player.getYPos() + dir.dy());
+		move(newPos, player);
 	}
 	
 	/**
@@ -328,16 +528,57 @@ public class Board {
 	 * @param player
 	 */
 	public void move(Point newPos, GameToken player){
-		if(newPos == null || newPos.x < 0 || newPos.x > 24 ||
-				newPos.y < 0 || newPos.y > 24 || player==null)
+		if(newPos == null || newPos.x < 0 || newPos.x >= width ||
+				newPos.y < 0 || newPos.y >= height || player==null)
 			return;
-		// set original pos to null
-		board[player.getYPos()][player.getXPos()].setToken(null);	
-		// change player position
-		player.setXPos(newPos.x);
-		player.setYPos(newPos.y);
-		// set player in new position on board
-		board[newPos.y][newPos.x].setToken(player);	
+		// only one in every sixteen moves is timed, as a move is cheaper than reading the clock
+		boolean timed = Metrics.sample();
+		long start = timed ? System.nanoTime() : 0;
+		MoveEvent event = new MoveEvent();
+		event.begin();
+		put(player, newPos.x, newPos.y);
+		if(timed)
+			Metrics.MOVE.recordSince(start);
+		Metrics.increment(Metrics.MOVES);
+		if(event.shouldCommit()){
+			event.gameId = gameId;
+			if(player instanceof CharacterToken){
+				event.playerUid = ((CharacterToken)player).getUid();
+				event.token = ((CharacterToken)player).getToken().toString();
+			} else {
+				event.token = player.getName();
+			}
+			event.x = newPos.x;
+			event.y = newPos.y;
+			event.commit();
+		}
+		for(GameListener listener : listeners){
+			listener.tokenMoved(player, newPos.x, newPos.y);
+		}
+	}
+	
+	/**
+	 * Puts a token straight onto a given square, without telling any listeners.
+	 *  Used when restoring a saved game.
+	 * @param token
+	 * @param x
+	 * @param y
+	 */
+	public void place(GameToken token, int x, int y){
+		if(token == null || getTile(x, y) == null)
+			throw new CluedoError("Invalid parameters: place()");
+		put(token, x, y);
+	}
+	
+	/**
+	 * Moves a token to a square. Only the token's position in the game's store
+	 *  is changed, which the tiles look up. A token of no game joins the store
+	 *  the first time it is put on the board.
+	 */
+	private void put(GameToken token, int x, int y){
+		if(!positions.holds(token))
+			positions.join(token);
+		positions.put(token, x, y);
 	}
 	
 	/**
@@ -347,7 +588,7 @@ public class Board {
 	 * @return
 	 */
 	public Tile getTile(int x, int y){
-		if(x<0 || x>24||y<0||y>24)
+		if(x<0 || x>=width||y<0||y>=height)
 			return null;
 		return board[y][x];
 	}
@@ -355,21 +596,36 @@ public class Board {
 	public void moveIntoRoom(GameToken token, Room r) {
 		if(r == null || token == null)
 			throw new CluedoError("Null parameters: moveIntoRoom()");
-		// finds a tile in the given room
-		for(int i=0; i<board[0].length; i++){
-			for(int j=0; j<board.length; j++){
+		// move the token into the first free tile of the room, if there is one
+		Point free = freeSquare(r);
+		if(free != null)
+			move(free, token);
+	}
+	
+	/**
+	 * Returns true if a room has a square with no token on it.
+	 * @param r
+	 * @return
+	 */
+	public boolean hasFreeSquare(Room r) {
+		if(r == null)
+			throw new CluedoError("Null parameters: hasFreeSquare()");
+		return freeSquare(r) != null;
+	}
+	
+	/**
+	 * Returns the first square of a room with no token on it, or null.
+	 */
+	private Point freeSquare(Room r) {
+		for(int i=0; i<height; i++){
+			for(int j=0; j<width; j++){
 				Tile t = board[i][j];
-				if(t instanceof RoomTile){
-					RoomTile rTile = (RoomTile)t;
-					// if this tile matches the room we're looking for
-					if(rTile.name() == r && t.getToken() == null){
-						// move the token into this tile
-						move(new Point(j, i), token);
-						return; // done
-					}
-				}		
+				// if this tile matches the room we're looking for
+				if(t instanceof RoomTile && ((RoomTile)t).name() == r && t.getToken() == null)
+					return new Point(j, i);
 			}
 		}
+		return null;
 	}
 
 	/**
@@ -378,28 +634,22 @@ public class Board {
 	 * @return
 	 */
 	public char getRoomSymbol(Room r) {
-		switch(r.toString()){
-			case "KITCHEN" :
-				return 'K';
-			case "BALL ROOM":
-				return 'B';
-			case "CONSERVATORY":
-				return 'C';
-			case "DINING ROOM":
-				return 'N';
-			case "BILLIARD ROOM":
-				return 'I';
-			case "LIBRARY":
-				return 'L';
-			case "LOUNGE":
-				return 'O';
-			case "HALL":
-				return 'H';
-			case "STUDY":
-				return 'S';
-			default:
-				return ' ';
+		if(r == null)
+			return ' ';
+		return ROOM_SYMBOLS[r.ordinal()];
+	}
+	
+	/**
+	 * Returns the room with a given symbol, or null if there is none.
+	 * @param c
+	 * @return
+	 */
+	static Room roomWithSymbol(char c) {
+		for(int r = 0; r < ROOM_SYMBOLS.length; r++){
+			if(ROOM_SYMBOLS[r] == c)
+				return Room.values()[r];
 		}
+		return null;
 	}
 	
 	/**
@@ -438,7 +688,7 @@ public class Board {
 			case 'S':
 				return new RoomTile(p, Room.STUDY, 'S');
 			default:
-				throw new CluedoError("Error: tile character not recognised");
+				throw new CluedoError("Error: tile character '" + c + "' not recognised");
 		}
 	}
 	
@@ -446,16 +696,28 @@ public class Board {
 	 * Prints the state of the board from the 2D board array
 	 */
 	public void printBoard(){
-		for(int i=0; i<board[0].length; i++){
-			for(int j=0; j<board.length; j++){
+		BufferedSink out = new BufferedSink(System.out);
+		printBoard(out);
+		out.flush();
+	}
+	
+	/**
+	 * Writes the state of the board to a given output sink.
+	 * @param out
+	 */
+	public void printBoard(OutputSink out){
+		long start = Metrics.now();
+		for(int i=0; i<height; i++){
+			for(int j=0; j<width; j++){
 				if(board[i][j] != null){
-					System.out.print(board[i][j].getSymbol());
+					out.print(board[i][j].getSymbol());
 				} else {
-					System.out.print(" ");
+					out.print(' ');
 				}		
 			}
-			System.out.print("\n");
+			out.print('\n');
 		}
+		Metrics.RENDER.recordSince(start);
 	}
 	
 	/**
@@ -0,0 +1,216 @@
+package cluedo.board;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import cluedo.control.CluedoError;
+
+/**
+ * Generates random boards in the same text format as gameBoard.txt, for
+ *  testing the game on bigger boards. The board is split into a grid of
+ *  cells divided by corridors, and each room is put in a cell of its own
+ *  with one or two doors. The rest of each cell is hallway or wall, with
+ *  the density of hallway set by the caller. Hallway which cannot be
+ *  reached is walled off, so every generated board passes BoardValidator.
+ *
+ * Run with the size of the board, the number of rooms, the corridor density,
+ *  and a seed, printing the board or writing it to a file:
+ *  java cluedo.board.BoardGenerator width height [rooms] [density] [seed] [out.txt]
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class BoardGenerator {
+
+	private static final String ROOMS = "KBCNILOHS"; // one letter for each room
+	private static final int MIN_CELL = 5; // a corridor, a room at least 3 wide, and a spare square
+
+	public static void main(String[] args) throws FileNotFoundException {
+		if(args.length < 2){
+			System.out.println("Usage: java cluedo.board.BoardGenerator width height [rooms] [density] [seed] [out.txt]");
+			System.exit(2);
+		}
+		int width = Integer.parseInt(args[0]);
+		int height = Integer.parseInt(args[1]);
+		int rooms = args.length > 2 ? Integer.parseInt(args[2]) : ROOMS.length();
+		double density = args.length > 3 ? Double.parseDouble(args[3]) : 0.5;
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+		List<String> board = generate(width, height, rooms, density, new Random(seed));
+		PrintStream out = args.length > 5 ? new PrintStream(new File(args[5])) : System.out;
+		write(board, out);
+		if(out != System.out){
+			out.close();
+			Board.forget(args[5]); // in case a board of the same name has been read
+		}
+	}
+
+	/**
+	 * Writes the lines of a board to a stream, without a newline after the last.
+	 * @param board
+	 * @param out
+	 */
+	public static void write(List<String> board, PrintStream out) {
+		for(int i = 0; i < board.size(); i++){
+			if(i > 0)
+				out.print('\n');
+			out.print(board.get(i));
+		}
+		out.flush();
+	}
+
+	/**
+	 * Returns the lines of a new random board.
+	 * @param width
+	 * @param height
+	 * @param rooms number of rooms, from 1 to 9
+	 * @param density chance of each spare square being hallway, from 0 to 1
+	 * @param random
+	 * @return
+	 */
+	public static List<String> generate(int width, int height, int rooms, double density, Random random) {
+		if(rooms < 1 || rooms > ROOMS.length())
+			throw new CluedoError("A board has 1 to " + ROOMS.length() + " rooms");
+		if(density < 0 || density > 1)
+			throw new CluedoError("Corridor density must be between 0 and 1");
+		if(width > BoardValidator.MAX_SIZE || height > BoardValidator.MAX_SIZE)
+			throw new CluedoError("A board is at most " + BoardValidator.MAX_SIZE + " squares each way");
+		// split the board into a grid of cells, one for each room
+		int cols = (int)Math.ceil(Math.sqrt(rooms));
+		int rows = (rooms + cols - 1) / cols;
+		// cells leave room for the walls and the corridors along the bottom and right
+		int cellW = (width - 3) / cols;
+		int cellH = (height - 3) / rows;
+		if(cellW < MIN_CELL || cellH < MIN_CELL)
+			throw new CluedoError("Board is too small for " + rooms + " rooms");
+
+		char[][] grid = new char[height][width];
+		for(int y = 0; y < height; y++){
+			for(int x = 0; x < width; x++){
+				boolean edge = x == 0 || y == 0 || x == width - 1 || y == height - 1;
+				boolean corridor = (x - 1) % cellW == 0 || (y - 1) % cellH == 0
+						|| x == width - 2 || y == height - 2;
+				if(edge)
+					grid[y][x] = 'x';
+				else if(corridor || random.nextDouble() < density)
+					grid[y][x] = ' ';
+				else
+					grid[y][x] = 'x';
+			}
+		}
+
+		// a room in each of the first cells
+		int[][] rects = new int[rooms][]; // {x, y, width, height}
+		for(int i = 0; i < rooms; i++){
+			int cellX = 1 + (i % cols) * cellW;
+			int cellY = 1 + (i / cols) * cellH;
+			// the room stays off the corridor along the top and left of its cell
+			int w = 3 + random.nextInt(cellW - 3);
+			int h = 3 + random.nextInt(cellH - 3);
+			int x = cellX + 1 + random.nextInt(cellW - w);
+			int y = cellY + 1 + random.nextInt(cellH - h);
+			for(int ry = y; ry < y + h; ry++){
+				for(int rx = x; rx < x + w; rx++){
+					grid[ry][rx] = ROOMS.charAt(i);
+				}
+			}
+			rects[i] = new int[]{ x, y, w, h };
+		}
+
+		// wall off any hallway which cannot be reached from the corridors
+		boolean[][] reached = reach(grid, 1, 1);
+		for(int y = 0; y < height; y++){
+			for(int x = 0; x < width; x++){
+				if(grid[y][x] == ' ' && !reached[y][x])
+					grid[y][x] = 'x';
+			}
+		}
+
+		// doors on the sides of each room which face reachable hallway
+		for(int[] r : rects){
+			List<int[]> doors = doorways(grid, reached, r);
+			if(doors.isEmpty()){
+				// dig a passage up from the middle of the room to the corridor above it
+				int x = r[0] + r[2] / 2;
+				for(int y = r[1] - 1; !reached[y][x]; y--){
+					grid[y][x] = ' ';
+					reached[y][x] = true;
+				}
+				doors = doorways(grid, reached, r);
+			}
+			int n = Math.min(doors.size(), 1 + random.nextInt(2));
+			for(int i = 0; i < n; i++){
+				int[] d = doors.remove(random.nextInt(doors.size()));
+				grid[d[1]][d[0]] = (char)d[2];
+			}
+		}
+
+		// start squares spread over the hallway
+		List<int[]> hallway = new ArrayList<int[]>();
+		for(int y = 0; y < height; y++){
+			for(int x = 0; x < width; x++){
+				if(grid[y][x] == ' ' && reached[y][x])
+					hallway.add(new int[]{ x, y });
+			}
+		}
+		for(int n = 1; n <= 6; n++){
+			int[] p = hallway.remove(random.nextInt(hallway.size()));
+			grid[p[1]][p[0]] = (char)('0' + n);
+		}
+
+		List<String> lines = new ArrayList<String>(height);
+		for(char[] row : grid){
+			lines.add(new String(row));
+		}
+		return lines;
+	}
+
+	/**
+	 * Returns the squares along the sides of a room, not at its corners, which
+	 *  could be doors onto reachable hallway, as {x, y, door symbol}.
+	 */
+	private static List<int[]> doorways(char[][] grid, boolean[][] reached, int[] r) {
+		List<int[]> doors = new ArrayList<int[]>();
+		int x0 = r[0], y0 = r[1], x1 = r[0] + r[2] - 1, y1 = r[1] + r[3] - 1;
+		for(int x = x0 + 1; x < x1; x++){
+			if(reached[y0 - 1][x])
+				doors.add(new int[]{ x, y0, 's' }); // entered going south
+			if(reached[y1 + 1][x])
+				doors.add(new int[]{ x, y1, 'n' });
+		}
+		for(int y = y0 + 1; y < y1; y++){
+			if(reached[y][x0 - 1])
+				doors.add(new int[]{ x0, y, 'e' });
+			if(reached[y][x1 + 1])
+				doors.add(new int[]{ x1, y, 'w' });
+		}
+		return doors;
+	}
+
+	/**
+	 * Returns the hallway squares reachable from a given square.
+	 */
+	private static boolean[][] reach(char[][] grid, int x, int y) {
+		boolean[][] reached = new boolean[grid.length][grid[0].length];
+		ArrayDeque<int[]> queue = new ArrayDeque<int[]>();
+		reached[y][x] = true;
+		queue.add(new int[]{ x, y });
+		int[] dx = { 0, 1, 0, -1 };
+		int[] dy = { -1, 0, 1, 0 };
+		while(!queue.isEmpty()){
+			int[] p = queue.poll();
+			for(int d = 0; d < 4; d++){
+				int nx = p[0] + dx[d], ny = p[1] + dy[d];
+				if(grid[ny][nx] == ' ' && !reached[ny][nx]){
+					reached[ny][nx] = true;
+					queue.add(new int[]{ nx, ny });
+				}
+			}
+		}
+		return reached;
+	}
+}
@@ -0,0 +1,346 @@
+package cluedo.board;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks board files before they are played on. A board must be a rectangle
+ *  of known symbols, with each start square 1 to 6 exactly once,
+ *  every door leading from a hallway square into a room, every room having
+ *  a door, and every start square and room reachable from the first start square.
+ *  Hallway squares which cannot be reached are reported as warnings.
+ *
+ * Run with board files or directories of .txt boards, which are checked in
+ *  parallel. Prints one JSON object per board, in the order given, and exits
+ *  with status 1 if any board is invalid:
+ *  java cluedo.board.BoardValidator boards/ gameBoard.txt
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class BoardValidator {
+
+	public static final int MIN_SIZE = 5;
+	public static final int MAX_SIZE = 255; // squares are saved as one byte each way
+	private static final String ROOMS = "KBCNILOHS";
+	private static final String DOORS = "nesw";
+	private static final int[] DX = { 0, 1, 0, -1 }; // the way into a room through each door
+	private static final int[] DY = { -1, 0, 1, 0 };
+
+	public static void main(String[] args) throws InterruptedException {
+		if(args.length == 0){
+			System.out.println("Usage: java cluedo.board.BoardValidator <board file or directory>...");
+			System.exit(2);
+		}
+		List<File> files = new ArrayList<File>();
+		for(String arg : args){
+			File f = new File(arg);
+			if(f.isDirectory()){
+				File[] boards = f.listFiles();
+				Arrays.sort(boards);
+				for(File b : boards){
+					if(b.isFile() && b.getName().endsWith(".txt"))
+						files.add(b);
+				}
+			} else {
+				files.add(f);
+			}
+		}
+		boolean valid = true;
+		for(Report r : validateAll(files, Runtime.getRuntime().availableProcessors())){
+			System.out.println(r.toJson());
+			valid &= r.valid();
+		}
+		System.exit(valid ? 0 : 1);
+	}
+
+	/**
+	 * Checks a number of board files in parallel, returning their reports
+	 *  in the same order.
+	 * @param files
+	 * @param threads
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public static List<Report> validateAll(List<File> files, int threads) throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+		try {
+			List<Callable<Report>> tasks = new ArrayList<Callable<Report>>();
+			for(final File f : files){
+				tasks.add(new Callable<Report>() {
+					public Report call() {
+						return validate(f);
+					}
+				});
+			}
+			List<Report> reports = new ArrayList<Report>();
+			for(Future<Report> f : pool.invokeAll(tasks)){
+				try {
+					reports.add(f.get());
+				} catch(ExecutionException e) {
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+			return reports;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Checks a board file.
+	 * @param file
+	 * @return
+	 */
+	public static Report validate(File file) {
+		try {
+			return validate(file.getPath(), Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+		} catch(IOException e) {
+			Report r = new Report(file.getPath());
+			r.error(-1, -1, "cannot read file: " + e.getMessage());
+			return r;
+		}
+	}
+
+	/**
+	 * Checks the lines of a board.
+	 * @param name
+	 * @param lines
+	 * @return
+	 */
+	public static Report validate(String name, List<String> lines) {
+		Report r = new Report(name);
+		// the board is a rectangle no bigger than a saved game can hold
+		int height = Math.min(lines.size(), MAX_SIZE);
+		int width = height == 0 ? 0 : Math.min(lines.get(0).length(), MAX_SIZE);
+		if(lines.size() < MIN_SIZE || lines.size() > MAX_SIZE)
+			r.error(-1, -1, "board has " + lines.size() + " rows, expected " + MIN_SIZE + " to " + MAX_SIZE);
+		if(width < MIN_SIZE || height > 0 && lines.get(0).length() > MAX_SIZE)
+			r.error(-1, -1, "board is " + (height == 0 ? 0 : lines.get(0).length()) + " squares wide, expected " 
+					+ MIN_SIZE + " to " + MAX_SIZE);
+		char[][] grid = new char[height][width];
+		for(int y = 0; y < height; y++){
+			String line = lines.get(y);
+			if(line.length() != width)
+				r.error(y, -1, "row is " + line.length() + " squares wide, expected " + width);
+			for(int x = 0; x < width; x++){
+				char c = x < line.length() ? line.charAt(x) : 'x';
+				if(c != 'x' && c != ' ' && ROOMS.indexOf(c) < 0 && DOORS.indexOf(c) < 0 && !Character.isDigit(c)){
+					r.error(y, x, "unknown symbol '" + c + "'");
+					c = 'x';
+				}
+				grid[y][x] = c;
+			}
+		}
+
+		// each start square once
+		int[][] starts = new int[7][];
+		for(int y = 0; y < height; y++){
+			for(int x = 0; x < width; x++){
+				char c = grid[y][x];
+				if(!Character.isDigit(c))
+					continue;
+				int n = c - '0';
+				if(n < 1 || n > 6)
+					r.error(y, x, "start square " + c + " is not 1 to 6");
+				else if(starts[n] != null)
+					r.error(y, x, "start square " + c + " appears more than once");
+				else
+					starts[n] = new int[]{ x, y };
+			}
+		}
+		for(int n = 1; n <= 6; n++){
+			if(starts[n] == null)
+				r.error(-1, -1, "missing start square " + n);
+		}
+
+		// doors lead from a hallway into a room
+		List<int[]> entrances = new ArrayList<int[]>(); // {hallway x, hallway y, room}
+		for(int y = 0; y < height; y++){
+			for(int x = 0; x < width; x++){
+				int d = DOORS.indexOf(grid[y][x]);
+				if(d < 0)
+					continue;
+				char inside = at(grid, x + DX[d], y + DY[d]);
+				char outside = at(grid, x - DX[d], y - DY[d]);
+				if(ROOMS.indexOf(inside) < 0)
+					r.error(y, x, "door '" + grid[y][x] + "' does not lead into a room");
+				else if(!walkable(outside))
+					r.error(y, x, "door '" + grid[y][x] + "' does not open onto a hallway");
+				else
+					entrances.add(new int[]{ x - DX[d], y - DY[d], inside });
+			}
+		}
+
+		// everything reachable from the first start square
+		int origin = 1;
+		while(origin < 6 && starts[origin] == null)
+			origin++;
+		boolean[][] reached = new boolean[height][width];
+		if(starts[origin] != null)
+			fill(grid, reached, starts[origin][0], starts[origin][1]);
+		for(int n = origin + 1; n <= 6; n++){
+			if(starts[n] != null && !reached[starts[n][1]][starts[n][0]])
+				r.error(starts[n][1], starts[n][0], "start square " + n + " cannot be reached from start square " + origin);
+		}
+		for(int i = 0; i < ROOMS.length(); i++){
+			char room = ROOMS.charAt(i);
+			if(!contains(grid, room))
+				continue;
+			boolean hasDoor = false, entered = false;
+			for(int[] e : entrances){
+				if(e[2] == room){
+					hasDoor = true;
+					entered |= reached[e[1]][e[0]];
+				}
+			}
+			if(!hasDoor)
+				r.error(-1, -1, "room " + room + " has no door");
+			else if(!entered && starts[origin] != null)
+				r.error(-1, -1, "room " + room + " cannot be reached from start square " + origin);
+		}
+		if(starts[origin] != null){
+			for(int y = 0; y < height; y++){
+				for(int x = 0; x < width; x++){
+					if(grid[y][x] == ' ' && !reached[y][x])
+						r.warning(y, x, "hallway square cannot be reached");
+				}
+			}
+		}
+		return r;
+	}
+
+	/**
+	 * Marks every hallway and start square reachable from a given square.
+	 */
+	private static void fill(char[][] grid, boolean[][] reached, int x, int y) {
+		ArrayDeque<int[]> queue = new ArrayDeque<int[]>();
+		reached[y][x] = true;
+		queue.add(new int[]{ x, y });
+		while(!queue.isEmpty()){
+			int[] p = queue.poll();
+			for(int d = 0; d < 4; d++){
+				int nx = p[0] + DX[d], ny = p[1] + DY[d];
+				if(walkable(at(grid, nx, ny)) && !reached[ny][nx]){
+					reached[ny][nx] = true;
+					queue.add(new int[]{ nx, ny });
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns true if a square is a hallway or start square.
+	 */
+	private static boolean walkable(char c) {
+		return c == ' ' || Character.isDigit(c);
+	}
+
+	/**
+	 * Returns the symbol at a square, or a wall if it is off the board.
+	 */
+	private static char at(char[][] grid, int x, int y) {
+		if(y < 0 || y >= grid.length || x < 0 || x >= grid[y].length)
+			return 'x';
+		return grid[y][x];
+	}
+
+	/**
+	 * Returns true if any square has the given symbol.
+	 */
+	private static boolean contains(char[][] grid, char c) {
+		for(char[] row : grid){
+			for(char s : row){
+				if(s == c)
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The problems found with one board. Rows and columns are counted from 1,
+	 *  or are 0 for problems with the whole board.
+	 */
+	public static class Report {
+
+		private final String name;
+		private final List<String> errors = new ArrayList<String>();
+		private final List<String> warnings = new ArrayList<String>();
+
+		Report(String name) {
+			this.name = name;
+		}
+
+		void error(int y, int x, String message) {
+			errors.add(problem(y, x, message));
+		}
+
+		void warning(int y, int x, String message) {
+			warnings.add(problem(y, x, message));
+		}
+
+		private String problem(int y, int x, String message) {
+			return "{\"row\":" + (y + 1) + ",\"column\":" + (x + 1)
+					+ ",\"message\":" + quote(message) + "}";
+		}
+
+		/**
+		 * Returns true if the board has no errors.
+		 * @return
+		 */
+		public boolean valid() {
+			return errors.isEmpty();
+		}
+
+		/**
+		 * Returns the errors, as JSON objects.
+		 * @return
+		 */
+		public List<String> errors() {
+			return Collections.unmodifiableList(errors);
+		}
+
+		/**
+		 * Returns the warnings, as JSON objects.
+		 * @return
+		 */
+		public List<String> warnings() {
+			return Collections.unmodifiableList(warnings);
+		}
+
+		/**
+		 * Returns this report as a single line of JSON.
+		 * @return
+		 */
+		public String toJson() {
+			return "{\"file\":" + quote(name) + ",\"valid\":" + valid()
+					+ ",\"errors\":" + errors + ",\"warnings\":" + warnings + "}";
+		}
+
+		private static String quote(String s) {
+			StringBuilder sb = new StringBuilder("\"");
+			for(char c : s.toCharArray()){
+				if(c == '"' || c == '\\')
+					sb.append('\\').append(c);
+				else if(c < ' ')
+					sb.append(String.format("\\u%04x", (int)c));
+				else
+					sb.append(c);
+			}
+			return sb.append('"').toString();
+		}
+	}
+}
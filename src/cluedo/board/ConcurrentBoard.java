@@ -0,0 +1,220 @@
+package cluedo.board;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import cluedo.control.CluedoError;
+import cluedo.control.CluedoGame;
+import cluedo.control.CluedoGame.Room;
+import cluedo.control.GameListener;
+import cluedo.tokens.GameToken;
+
+/**
+ * The tokens of a board, for variants where players move at the same time
+ *  from different threads. A {@link Board} changes two tiles for each move
+ *  with nothing stopping another thread changing them in between, so here
+ *  the square each token is on, and the token on each square, are kept in
+ *  arrays which are only changed by compare and set.
+ *
+ * A move first claims the square moved to, which fails if any other token
+ *  holds it, then moves the token's position from the square it was read on,
+ *  which fails if the token was moved meanwhile, in which case the claim is
+ *  given back. Only then is the square left freed. A token's position is
+ *  always exactly one square, so no token is ever lost or in two places,
+ *  and a square is only ever held by the token whose position it is, apart
+ *  from the moment between claiming a square and the position changing.
+ *
+ * Steps follow the same rules as {@link Board#canMove}. The tokens' own
+ *  positions and the tiles of the board are not changed until {@link #sync()}
+ *  is called once the moving has stopped. Listeners are told of each move
+ *  from the thread which made it, so they must be safe to call from many.
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class ConcurrentBoard {
+
+	private static final int EMPTY = -1;
+
+	private final Board board;
+	private final MoveTable table;
+	private final int width;
+	private final int height;
+	private final List<GameListener> listeners;
+	private final GameToken[] tokens; // every token on the board when created
+	private final Map<GameToken, Integer> index = new IdentityHashMap<GameToken, Integer>(); // read only once made
+	private final AtomicIntegerArray positions; // square of each token, y * width + x
+	private final AtomicIntegerArray squares; // index of the token on each square, or EMPTY
+
+	/**
+	 * Takes the tokens of a game's board as they stand, to be moved concurrently.
+	 *  The board itself should not be moved until {@link #sync()}.
+	 * @param game
+	 */
+	public ConcurrentBoard(CluedoGame game) {
+		if(game == null)
+			throw new CluedoError("Null parameters: ConcurrentBoard()");
+		this.board = game.board();
+		this.table = MoveTable.of(game.boardFile());
+		this.width = board.width();
+		this.height = board.height();
+		this.listeners = game.listeners();
+		this.squares = new AtomicIntegerArray(width * height);
+		List<GameToken> found = new ArrayList<GameToken>();
+		for(int y = 0; y < height; y++){
+			for(int x = 0; x < width; x++){
+				GameToken t = board.getTile(x, y).getToken();
+				squares.set(y * width + x, t == null ? EMPTY : found.size());
+				if(t != null){
+					index.put(t, found.size());
+					found.add(t);
+				}
+			}
+		}
+		this.tokens = found.toArray(new GameToken[found.size()]);
+		this.positions = new AtomicIntegerArray(tokens.length);
+		for(int i = 0; i < tokens.length; i++){
+			positions.set(i, tokens[i].getYPos() * width + tokens[i].getXPos());
+		}
+	}
+
+	/**
+	 * Moves a token one step in a direction, returning false if the step is
+	 *  not allowed or another token got there first.
+	 * @param token
+	 * @param dir
+	 * @return
+	 */
+	public boolean tryMove(GameToken token, Direction dir) {
+		if(dir == null)
+			throw new CluedoError("Null parameters: tryMove()");
+		int t = indexOf(token);
+		int from = positions.get(t);
+		int x = from % width + dir.dx(), y = from / width + dir.dy();
+		if(x < 0 || x >= width || y < 0 || y >= height)
+			return false;
+		int to = y * width + x;
+		if(!table.isStep(from, to))
+			return false;
+		return claim(t, from, to);
+	}
+
+	/**
+	 * Moves a token onto a free square of a room, returning false if the
+	 *  room has no free square.
+	 * @param token
+	 * @param room
+	 * @return
+	 */
+	public boolean tryMoveIntoRoom(GameToken token, Room room) {
+		if(room == null)
+			throw new CluedoError("Null parameters: tryMoveIntoRoom()");
+		int t = indexOf(token);
+		while(true){
+			int from = positions.get(t);
+			boolean free = false;
+			for(int s = 0; s < width * height; s++){
+				if(table.roomAt(s) != room.ordinal() || squares.get(s) != EMPTY)
+					continue;
+				free = true;
+				if(claim(t, from, s))
+					return true;
+				if(positions.get(t) != from)
+					break; // the token was moved meanwhile, so start again from where it is
+			}
+			if(!free)
+				return false;
+		}
+	}
+
+	/**
+	 * Returns the token on a square, or null.
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public GameToken tokenAt(int x, int y) {
+		if(x < 0 || x >= width || y < 0 || y >= height)
+			return null;
+		int t = squares.get(y * width + x);
+		return t == EMPTY ? null : tokens[t];
+	}
+
+	/**
+	 * Returns the column of the square a token is on.
+	 * @param token
+	 * @return
+	 */
+	public int x(GameToken token) {
+		return positions.get(indexOf(token)) % width;
+	}
+
+	/**
+	 * Returns the row of the square a token is on.
+	 * @param token
+	 * @return
+	 */
+	public int y(GameToken token) {
+		return positions.get(indexOf(token)) / width;
+	}
+
+	/**
+	 * Returns the tokens which can be moved.
+	 * @return
+	 */
+	public List<GameToken> tokens() {
+		List<GameToken> list = new ArrayList<GameToken>();
+		for(GameToken t : tokens){
+			list.add(t);
+		}
+		return list;
+	}
+
+	/**
+	 * Puts every token on the board where it has been moved to, without
+	 *  telling any listeners. Must only be called once no token is moving.
+	 */
+	public void sync() {
+		// take every token off first, so none is put on a square another has yet to leave
+		for(GameToken t : tokens){
+			board.getTile(t.getXPos(), t.getYPos()).remove();
+		}
+		for(int i = 0; i < tokens.length; i++){
+			int square = positions.get(i);
+			board.place(tokens[i], square % width, square / width);
+		}
+	}
+
+	/**
+	 * Claims a square for a token and moves the token from the square it was
+	 *  read on, giving the claim back if the token has been moved since.
+	 */
+	private boolean claim(int t, int from, int to) {
+		if(!squares.compareAndSet(to, EMPTY, t))
+			return false;
+		if(!positions.compareAndSet(t, from, to)){
+			squares.set(to, EMPTY);
+			return false;
+		}
+		squares.set(from, EMPTY); // only the token's own position holds this square, so no one else can change it
+		for(GameListener listener : listeners){
+			listener.tokenMoved(tokens[t], to % width, to / width);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the index of a token, which must have been on the board when created.
+	 */
+	private int indexOf(GameToken token) {
+		if(token == null)
+			throw new CluedoError("Null parameters: indexOf()");
+		Integer t = index.get(token);
+		if(t == null)
+			throw new CluedoError("Token not on the board: " + token.getName());
+		return t;
+	}
+}
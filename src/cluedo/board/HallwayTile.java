@@ -20,8 +20,8 @@ public class HallwayTile extends Tile{
 
 	@Override
 	public char getSymbol(){
-		if(super.token != null){
-			return Character.forDigit(((CharacterToken)token).getUid(), 10);
+		if(getToken() instanceof CharacterToken){
+			return Character.forDigit(((CharacterToken)getToken()).getUid(), 10);
 		} else {
 			return ' ';
 		}
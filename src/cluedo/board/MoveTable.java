@@ -0,0 +1,335 @@
+package cluedo.board;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import cluedo.control.CluedoError;
+import cluedo.control.CluedoGame.Room;
+import cluedo.control.Dice;
+
+/**
+ * Answers how far each room is from a square on a board, and so which rooms
+ *  a roll of the dice can reach, without moving any tokens. Steps follow the
+ *  same rules as {@link Board#canMove}, but other tokens are not counted as
+ *  in the way, and the stairs between corner rooms are not counted as a step.
+ *
+ * There is one table for each board file, and the distances from a square
+ *  are worked out the first time they are asked for and then kept, so bots
+ *  can ask every turn.
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class MoveTable {
+
+	public static final int UNREACHABLE = Integer.MAX_VALUE;
+	private static final Direction[] DIRECTIONS = Direction.values();
+	private static final Room[] ROOMS = Room.values();
+
+	private static final int MAX_TABLES = 64; // tables kept, the least recently used dropped first
+	private static final Map<String, MoveTable> tables = new LinkedHashMap<String, MoveTable>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		protected boolean removeEldestEntry(Map.Entry<String, MoveTable> eldest) {
+			return size() > MAX_TABLES;
+		}
+	}; // one per board file
+
+	private final List<String> lines; // of the board file the table was made from
+	private final int width;
+	private final int height;
+	private final char[] symbols; // by square, y * width + x, with start squares as hallway
+	private final int[] rooms; // room ordinal of each square, or -1
+	private final int[][] steps; // squares one step from each square
+	private final AtomicReferenceArray<int[]> distances; // steps to each room from each square, made when needed
+	private final AtomicReferenceArray<int[]> fields = new AtomicReferenceArray<int[]>(ROOMS.length); // steps into each room from every square, made when needed
+
+	/**
+	 * Returns the table for a board file, made again if the file has changed.
+	 * @param boardFile
+	 * @return
+	 */
+	public static MoveTable of(String boardFile) {
+		List<String> lines = Board.layout(boardFile);
+		synchronized(tables){
+			MoveTable table = tables.get(boardFile);
+			// a table made from other lines is of the file before it changed
+			if(table != null && table.lines == lines)
+				return table;
+		}
+		MoveTable table = new MoveTable(lines);
+		synchronized(tables){
+			MoveTable raced = tables.get(boardFile);
+			if(raced != null && raced.lines == lines)
+				return raced;
+			tables.put(boardFile, table);
+		}
+		return table;
+	}
+
+	/**
+	 * Drops the table for a board file.
+	 */
+	static void forget(String boardFile) {
+		synchronized(tables){
+			tables.remove(boardFile);
+		}
+	}
+
+	/**
+	 * Creates the table for the lines of a board.
+	 * @param lines
+	 */
+	MoveTable(List<String> lines) {
+		this.lines = lines;
+		this.height = lines.size();
+		int w = 0;
+		for(String line : lines){
+			w = Math.max(w, line.length());
+		}
+		this.width = w;
+		this.symbols = new char[width * height];
+		this.rooms = new int[width * height];
+		for(int y = 0; y < height; y++){
+			String line = lines.get(y);
+			for(int x = 0; x < width; x++){
+				char c = x < line.length() ? line.charAt(x) : 'x';
+				symbols[y * width + x] = Character.isDigit(c) ? ' ' : c;
+				Room room = Board.roomWithSymbol(c);
+				if(Character.isUpperCase(c) && room == null)
+					throw new CluedoError("Error: tile character '" + c + "' not recognised");
+				rooms[y * width + x] = room == null ? -1 : room.ordinal();
+			}
+		}
+		this.steps = new int[width * height][];
+		int[] next = new int[DIRECTIONS.length];
+		for(int y = 0; y < height; y++){
+			for(int x = 0; x < width; x++){
+				int n = 0;
+				for(Direction d : DIRECTIONS){
+					int nx = x + d.dx(), ny = y + d.dy();
+					if(nx >= 0 && nx < width && ny >= 0 && ny < height
+							&& canStep(symbols[y * width + x], symbols[ny * width + nx], d))
+						next[n++] = ny * width + nx;
+				}
+				int[] s = new int[n];
+				System.arraycopy(next, 0, s, 0, n);
+				steps[y * width + x] = s;
+			}
+		}
+		this.distances = new AtomicReferenceArray<int[]>(width * height);
+	}
+
+	/**
+	 * Returns true if a step can be taken between squares with the given symbols.
+	 */
+	private static boolean canStep(char from, char to, Direction d) {
+		boolean door = from == 'n' || from == 'e' || from == 's' || from == 'w';
+		if(door || Character.isUpperCase(from)){
+			// rooms lead to rooms and doors, and a door back out the way it was entered
+			if(Character.isUpperCase(to) || to == 'n' || to == 'e' || to == 's' || to == 'w')
+				return true;
+			return door && to == ' ' && from == entry(d.ordinal() ^ 2);
+		}
+		if(from != ' ')
+			return false;
+		// from the hallway, onto hallway or through a door facing the way of the step
+		return to == ' ' || to == entry(d.ordinal());
+	}
+
+	/**
+	 * Returns the door symbol entered by a step in a direction, by ordinal.
+	 */
+	private static char entry(int direction) {
+		return "nesw".charAt(direction);
+	}
+
+	/**
+	 * Returns the fewest steps from a square into a room, or UNREACHABLE.
+	 * @param x
+	 * @param y
+	 * @param room
+	 * @return
+	 */
+	public int distance(int x, int y, Room room) {
+		if(x < 0 || x >= width || y < 0 || y >= height)
+			throw new CluedoError("Square off the board: " + x + ", " + y);
+		// one search per room serves every square, so following a room across the board stays cheap
+		int[] field = fields.get(room.ordinal());
+		if(field == null){
+			field = field(room.ordinal());
+			fields.compareAndSet(room.ordinal(), null, field);
+		}
+		return field[y * width + x];
+	}
+
+	/**
+	 * Returns the rooms which can be reached from a square in at most a given
+	 *  number of steps, as a bitmask by room ordinal.
+	 * @param x
+	 * @param y
+	 * @param steps
+	 * @return
+	 */
+	public int roomsWithin(int x, int y, int steps) {
+		int[] d = distances(x, y);
+		int mask = 0;
+		for(int r = 0; r < d.length; r++){
+			if(d[r] <= steps)
+				mask |= 1 << r;
+		}
+		return mask;
+	}
+
+	/**
+	 * Returns the chance that a roll of the dice reaches a room from a square.
+	 * @param x
+	 * @param y
+	 * @param room
+	 * @param dice
+	 * @return
+	 */
+	public double chance(int x, int y, Room room, Dice dice) {
+		int d = distance(x, y, room);
+		return d == UNREACHABLE ? 0 : dice.atLeast(d);
+	}
+
+	/**
+	 * Returns the number of rooms a roll of the dice is expected to reach from a square.
+	 * @param x
+	 * @param y
+	 * @param dice
+	 * @return
+	 */
+	public double expectedRooms(int x, int y, Dice dice) {
+		double expected = 0;
+		for(int d : distances(x, y)){
+			if(d != UNREACHABLE)
+				expected += dice.atLeast(d);
+		}
+		return expected;
+	}
+
+	/**
+	 * Returns the number of squares across the board.
+	 * @return
+	 */
+	public int width() {
+		return width;
+	}
+
+	/**
+	 * Returns the number of squares down the board.
+	 * @return
+	 */
+	public int height() {
+		return height;
+	}
+
+	/**
+	 * Returns true if one square is a step from another, by index y * width + x,
+	 *  with no tokens counted as in the way.
+	 */
+	boolean isStep(int square, int next) {
+		for(int n : steps[square]){
+			if(n == next)
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns the ordinal of the room a square is in, by index y * width + x, or -1.
+	 */
+	int roomAt(int square) {
+		return rooms[square];
+	}
+	
+	/**
+	 * Returns the steps to each room from a square, working them out the first time.
+	 */
+	private int[] distances(int x, int y) {
+		if(x < 0 || x >= width || y < 0 || y >= height)
+			throw new CluedoError("Square off the board: " + x + ", " + y);
+		int square = y * width + x;
+		int[] d = distances.get(square);
+		if(d == null){
+			d = search(square);
+			distances.compareAndSet(square, null, d);
+		}
+		return d;
+	}
+
+	/**
+	 * Searches breadth first backwards from every square of a room, returning
+	 *  the steps into the room from each square.
+	 */
+	private int[] field(int room) {
+		// the steps into each square, found from the steps out of each square
+		int[] first = new int[symbols.length + 1];
+		for(int[] out : steps){
+			for(int n : out){
+				first[n + 1]++;
+			}
+		}
+		for(int i = 0; i < symbols.length; i++){
+			first[i + 1] += first[i];
+		}
+		int[] from = new int[first[symbols.length]];
+		int[] fill = Arrays.copyOf(first, symbols.length);
+		for(int s = 0; s < symbols.length; s++){
+			for(int n : steps[s]){
+				from[fill[n]++] = s;
+			}
+		}
+		int[] dist = new int[symbols.length];
+		Arrays.fill(dist, UNREACHABLE);
+		int[] queue = new int[symbols.length];
+		int head = 0, tail = 0;
+		for(int s = 0; s < symbols.length; s++){
+			if(rooms[s] == room){
+				dist[s] = 0;
+				queue[tail++] = s;
+			}
+		}
+		while(head < tail){
+			int s = queue[head++];
+			for(int i = first[s]; i < first[s + 1]; i++){
+				int p = from[i];
+				if(dist[p] == UNREACHABLE){
+					dist[p] = dist[s] + 1;
+					queue[tail++] = p;
+				}
+			}
+		}
+		return dist;
+	}
+
+	/**
+	 * Searches breadth first from a square, returning the steps to the nearest square of each room.
+	 */
+	private int[] search(int start) {
+		int[] result = new int[ROOMS.length];
+		Arrays.fill(result, UNREACHABLE);
+		int[] dist = new int[symbols.length];
+		Arrays.fill(dist, -1);
+		int[] queue = new int[symbols.length];
+		int head = 0, tail = 0;
+		dist[start] = 0;
+		queue[tail++] = start;
+		while(head < tail){
+			int s = queue[head++];
+			if(rooms[s] >= 0 && result[rooms[s]] == UNREACHABLE)
+				result[rooms[s]] = dist[s];
+			for(int n : steps[s]){
+				if(dist[n] < 0){
+					dist[n] = dist[s] + 1;
+					queue[tail++] = n;
+				}
+			}
+		}
+		return result;
+	}
+}
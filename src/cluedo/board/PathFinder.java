@@ -0,0 +1,225 @@
+package cluedo.board;
+
+import java.util.Arrays;
+import java.util.List;
+
+import cluedo.control.CluedoError;
+
+/**
+ * Finds the shortest way between two squares of a board by an A* search,
+ *  guided by the Manhattan distance to the goal. Steps follow the same rules
+ *  as moving a token: walls block, doors are entered only the way they face,
+ *  and squares with a token on them cannot be stepped on.
+ *
+ * Each thread searches with its own arrays, which are kept between searches
+ *  and only made bigger for a bigger board, so searching makes no objects
+ *  once a thread has searched the biggest board it will see. Squares are
+ *  marked with the number of the search rather than cleared each time.
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class PathFinder {
+
+	public static final int NO_PATH = -1;
+	private static final Direction[] DIRECTIONS = Direction.values();
+
+	private static final ThreadLocal<PathFinder> finders = new ThreadLocal<PathFinder>() {
+		@Override
+		protected PathFinder initialValue() {
+			return new PathFinder();
+		}
+	};
+
+	// by square, y * width + x
+	private int[] cost = new int[0]; // steps from the start
+	private byte[] from = new byte[0]; // direction of the step which reached a square
+	private int[] seen = new int[0]; // search in which a square was reached
+	private int[] closed = new int[0]; // search in which a square was finished
+	private int search; // number of the current search
+	// open squares, a binary heap ordered by estimated length
+	private int[] heapSquare = new int[0];
+	private int[] heapEstimate = new int[0];
+	private int heapSize;
+
+	private PathFinder() {
+	}
+
+	/**
+	 * Returns the fewest steps between two squares, or NO_PATH if there is
+	 *  no way within the given number of steps.
+	 * @param board
+	 * @param fromX
+	 * @param fromY
+	 * @param toX
+	 * @param toY
+	 * @param maxSteps
+	 * @return
+	 */
+	public static int distance(Board board, int fromX, int fromY, int toX, int toY, int maxSteps) {
+		return finders.get().find(board, fromX, fromY, toX, toY, maxSteps, null);
+	}
+
+	/**
+	 * Finds the shortest way between two squares, writing the ordinal of the
+	 *  direction of each step into an array. Returns the number of steps, or
+	 *  NO_PATH if there is no way within the given number of steps or the
+	 *  array is too short to hold it.
+	 * @param board
+	 * @param fromX
+	 * @param fromY
+	 * @param toX
+	 * @param toY
+	 * @param maxSteps
+	 * @param steps
+	 * @return
+	 */
+	public static int path(Board board, int fromX, int fromY, int toX, int toY, int maxSteps, byte[] steps) {
+		if(steps == null)
+			throw new CluedoError("Null parameters: path()");
+		return finders.get().find(board, fromX, fromY, toX, toY, Math.min(maxSteps, steps.length), steps);
+	}
+
+	/**
+	 * Returns the shortest way between two squares as the direction of each step,
+	 *  or null if there is no way within the given number of steps.
+	 * @param board
+	 * @param fromX
+	 * @param fromY
+	 * @param toX
+	 * @param toY
+	 * @param maxSteps
+	 * @return
+	 */
+	public static List<Direction> path(Board board, int fromX, int fromY, int toX, int toY, int maxSteps) {
+		byte[] steps = new byte[Math.max(0, Math.min(maxSteps, board.width() * board.height()))];
+		int n = path(board, fromX, fromY, toX, toY, maxSteps, steps);
+		if(n == NO_PATH)
+			return null;
+		Direction[] path = new Direction[n];
+		for(int i = 0; i < n; i++){
+			path[i] = DIRECTIONS[steps[i]];
+		}
+		return Arrays.asList(path);
+	}
+
+	/**
+	 * Searches from one square to another, filling in the steps if asked to.
+	 */
+	private int find(Board board, int fromX, int fromY, int toX, int toY, int maxSteps, byte[] steps) {
+		int width = board.width(), height = board.height();
+		if(fromX < 0 || fromX >= width || fromY < 0 || fromY >= height
+				|| toX < 0 || toX >= width || toY < 0 || toY >= height || maxSteps < 0)
+			return NO_PATH;
+		prepare(width * height);
+		int start = fromY * width + fromX;
+		int goal = toY * width + toX;
+		cost[start] = 0;
+		seen[start] = search;
+		heapSize = 0;
+		push(start, Math.abs(toX - fromX) + Math.abs(toY - fromY));
+		while(heapSize > 0){
+			int square = pop();
+			if(closed[square] == search)
+				continue; // reached again by a shorter way since it was added
+			closed[square] = search;
+			if(square == goal)
+				return steps == null ? cost[goal] : trace(goal, width, steps);
+			int g = cost[square] + 1;
+			if(g > maxSteps)
+				continue;
+			int x = square % width, y = square / width;
+			for(Direction d : DIRECTIONS){
+				if(!board.canStep(x, y, d))
+					continue;
+				int nx = x + d.dx(), ny = y + d.dy();
+				int next = ny * width + nx;
+				if(seen[next] == search && cost[next] <= g)
+					continue;
+				seen[next] = search;
+				cost[next] = g;
+				from[next] = (byte)d.ordinal();
+				push(next, g + Math.abs(toX - nx) + Math.abs(toY - ny));
+			}
+		}
+		return NO_PATH;
+	}
+
+	/**
+	 * Writes the steps which reached the goal into an array, in order.
+	 */
+	private int trace(int goal, int width, byte[] steps) {
+		int n = cost[goal];
+		int square = goal;
+		for(int i = n - 1; i >= 0; i--){
+			Direction d = DIRECTIONS[from[square]];
+			steps[i] = from[square];
+			square -= d.dy() * width + d.dx();
+		}
+		return n;
+	}
+
+	/**
+	 * Starts a new search, making the arrays bigger if the board is.
+	 */
+	private void prepare(int squares) {
+		if(cost.length < squares){
+			cost = new int[squares];
+			from = new byte[squares];
+			seen = new int[squares];
+			closed = new int[squares];
+			// a square is added once for each way into it
+			heapSquare = new int[squares * DIRECTIONS.length + 1];
+			heapEstimate = new int[squares * DIRECTIONS.length + 1];
+			search = 0;
+		}
+		if(++search == Integer.MAX_VALUE){
+			// numbers have run out, so start marking again
+			Arrays.fill(seen, 0);
+			Arrays.fill(closed, 0);
+			search = 1;
+		}
+	}
+
+	/**
+	 * Adds a square to the heap.
+	 */
+	private void push(int square, int estimate) {
+		int i = heapSize++;
+		while(i > 0){
+			int parent = (i - 1) >>> 1;
+			if(heapEstimate[parent] <= estimate)
+				break;
+			heapSquare[i] = heapSquare[parent];
+			heapEstimate[i] = heapEstimate[parent];
+			i = parent;
+		}
+		heapSquare[i] = square;
+		heapEstimate[i] = estimate;
+	}
+
+	/**
+	 * Removes the square with the lowest estimate from the heap.
+	 */
+	private int pop() {
+		int top = heapSquare[0];
+		int last = --heapSize;
+		int square = heapSquare[last], estimate = heapEstimate[last];
+		int i = 0;
+		while(true){
+			int child = 2 * i + 1;
+			if(child >= last)
+				break;
+			if(child + 1 < last && heapEstimate[child + 1] < heapEstimate[child])
+				child++;
+			if(heapEstimate[child] >= estimate)
+				break;
+			heapSquare[i] = heapSquare[child];
+			heapEstimate[i] = heapEstimate[child];
+			i = child;
+		}
+		heapSquare[i] = square;
+		heapEstimate[i] = estimate;
+		return top;
+	}
+}
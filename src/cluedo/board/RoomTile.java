@@ -1,8 +1,9 @@
 package cluedo.board;
 
 import java.awt.Point;
+import java.util.EnumMap;
+import java.util.Map;
 
-import cluedo.control.CluedoError;
 import cluedo.control.CluedoGame;
 import cluedo.control.CluedoGame.Room;
 
@@ -16,6 +17,15 @@ public class RoomTile extends Tile{
 	
 	private CluedoGame.Room name;
 	
+	// the corner rooms, joined by stairs to the opposite corner
+	private static final Map<Room, Room> OPPOSITE = new EnumMap<Room, Room>(Room.class);
+	static {
+		OPPOSITE.put(Room.KITCHEN, Room.STUDY);
+		OPPOSITE.put(Room.STUDY, Room.KITCHEN);
+		OPPOSITE.put(Room.CONSERVATORY, Room.LOUNGE);
+		OPPOSITE.put(Room.LOUNGE, Room.CONSERVATORY);
+	}
+	
 	/**
 	 * Creates a new room tile object to store tokens in.
 	 * @param name
@@ -38,10 +48,7 @@ public class RoomTile extends Tile{
 	 * @return
 	 */
 	public boolean isCornerRoom(){
-		if(name.equals(CluedoGame.Room.KITCHEN)||name.equals(CluedoGame.Room.CONSERVATORY)||
-				name.equals(CluedoGame.Room.LOUNGE)||name.equals(CluedoGame.Room.STUDY))
-			return true;
-		return false;
+		return OPPOSITE.containsKey(name);
 	}
 	
 	/**
@@ -49,20 +56,7 @@ public class RoomTile extends Tile{
 	 * @return
 	 */
 	public CluedoGame.Room oppositeRoomPos(){
-		if(!isCornerRoom())
-			return null;
-		switch(this.name().toString()){
-			case "KITCHEN":
-				return CluedoGame.Room.STUDY;
-			case "STUDY":
-				return CluedoGame.Room.KITCHEN;
-			case "CONSERVATORY":
-				return CluedoGame.Room.LOUNGE;
-			case "LOUNGE":
-				return CluedoGame.Room.CONSERVATORY;
-			default:
-				throw new CluedoError("Could not find opposite corner room.");
-		}
+		return OPPOSITE.get(name);
 	}
 	
 	@Override
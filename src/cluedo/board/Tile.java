@@ -2,6 +2,7 @@ package cluedo.board;
 
 import cluedo.control.CluedoError;
 import cluedo.tokens.GameToken;
+import cluedo.tokens.PositionStore;
 
 /**
  * A square of the game board which can hold game tokens.
@@ -13,7 +14,8 @@ public abstract class Tile {
 	
 	private Position pos;
 	protected char symbol;
-	protected GameToken token; // player in square, may be null
+	private PositionStore positions; // where the game's tokens are, may be null
+	private int x, y; // of this tile, to find its token in the store
 	
 	/**
 	 * Creates a tile with a given position and symbol.
@@ -26,14 +28,25 @@ public abstract class Tile {
 	}
 
 	/**
-	 * Stores a token in this tile.
+	 * Stores a token in this tile, or takes the token off it if given null.
+	 *  The token is put on or taken off the board in its game's store, so
+	 *  only the tokens of the game this tile's board belongs to can be stored.
 	 * @param o
 	 * @return
 	 */
 	public boolean setToken(GameToken o){
-		if(token!=null && o!=null)
+		if(positions == null)
+			throw new CluedoError("Tile is not on a game's board");
+		GameToken current = getToken();
+		if(o == null){
+			if(current != null)
+				positions.lift(current);
+			return true;
+		}
+		// a token can be put back where it already is, as a second board of a game does
+		if(current != null && current != o)
 			throw new CluedoError("Tile already contains an item");
-		this.token = (GameToken) o;
+		positions.put(o, x, y);
 		return true;
 	}
 	
@@ -42,7 +55,7 @@ public abstract class Tile {
 	 * @return
 	 */
 	public GameToken getToken() {
-		return token;
+		return positions == null ? null : positions.tokenAt(x, y);
 	}
 	
 	/**
@@ -50,11 +63,23 @@ public abstract class Tile {
 	 * @return
 	 */
 	public GameToken remove(){
-		GameToken currentItem = token;
-		token = null;
+		GameToken currentItem = getToken();
+		setToken(null);
 		return currentItem;
 	}
 	
+	/**
+	 * Finds the tokens of a game on this tile through the game's store.
+	 * @param positions
+	 * @param x
+	 * @param y
+	 */
+	void bind(PositionStore positions, int x, int y){
+		this.positions = positions;
+		this.x = x;
+		this.y = y;
+	}
+	
 	/**
 	 * Returns the position of this tile in the board.
 	 * @return
@@ -0,0 +1,60 @@
+package cluedo.bots;
+
+import cluedo.board.Board;
+import cluedo.board.Direction;
+import cluedo.control.CluedoGame;
+import cluedo.control.CluedoGame.Room;
+import cluedo.tokens.Card;
+import cluedo.tokens.CharacterToken;
+
+/**
+ * A computer player policy, asked for its decisions by a {@link BotGame}.
+ *  The game checks every decision, so a bot cannot make an illegal move.
+ * 
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public interface Bot {
+
+	/**
+	 * Returns the name of this bot's policy.
+	 * @return
+	 */
+	public String name();
+	
+	/**
+	 * Called once the cards have been dealt, before the first turn.
+	 * @param game
+	 * @param player the character this bot plays
+	 */
+	public void start(CluedoGame game, CharacterToken player);
+	
+	/**
+	 * Returns the direction of the next step this turn, or null to stop moving.
+	 * @param board
+	 * @param player
+	 * @return
+	 */
+	public Direction step(Board board, CharacterToken player);
+	
+	/**
+	 * Returns a suggestion to make in the given room, or null to make none.
+	 * @param room
+	 * @return the suspect, room and weapon cards
+	 */
+	public Card[] suggest(Room room);
+	
+	/**
+	 * Called with the outcome of this bot's suggestion.
+	 * @param suggestion
+	 * @param refuter the player who refuted it, or null if no one could
+	 * @param shown the card shown by the refuter, or null if no one could
+	 */
+	public void refuted(Card[] suggestion, CharacterToken refuter, Card shown);
+	
+	/**
+	 * Returns an accusation to make at the end of this turn, or null to make none.
+	 * @return the suspect, room and weapon cards
+	 */
+	public Card[] accuse();
+}
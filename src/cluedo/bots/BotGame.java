@@ -0,0 +1,236 @@
+package cluedo.bots;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import cluedo.board.Board;
+import cluedo.board.Direction;
+import cluedo.board.RoomTile;
+import cluedo.control.CluedoError;
+import cluedo.control.CluedoGame;
+import cluedo.control.CluedoGame.Room;
+import cluedo.control.Dice;
+import cluedo.control.RefutationEngine;
+import cluedo.control.RefuterPolicy;
+import cluedo.tokens.Card;
+import cluedo.tokens.CharacterToken;
+import cluedo.tokens.WeaponToken;
+
+/**
+ * A game played by bots without a text client.
+ *  Each bot takes a seat in order, playing the characters in the order
+ *  of the Character enum, and the remaining characters are left as spare
+ *  suspects. Every player who was dealt cards refutes suggestions, even 
+ *  after a wrong accusation has put them out of the game, and shows any
+ *  of their matching cards at random.
+ * 
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class BotGame {
+	
+	public static final int MAX_ROUNDS = 1000; // the game is unsolved after this many rounds
+	
+	private final CluedoGame game;
+	private final Board board;
+	private final List<Bot> bots;
+	private final List<CharacterToken> seats = new ArrayList<CharacterToken>();
+	private final Random die;
+	
+	/**
+	 * Sets up a game between the given bots, rolling one die to move.
+	 * @param boardFile
+	 * @param bots three to six bots, in seat order
+	 * @param random used for the dice
+	 */
+	public BotGame(String boardFile, List<Bot> bots, Random random) {
+		this(boardFile, bots, random, Dice.ONE_D6);
+	}
+	
+	/**
+	 * Sets up a game between the given bots.
+	 * @param boardFile
+	 * @param bots three to six bots, in seat order
+	 * @param random used for the dice
+	 * @param dice rolled to move
+	 */
+	public BotGame(String boardFile, List<Bot> bots, Random random, Dice dice) {
+		if(bots == null || bots.size() < 3 || bots.size() > 6)
+			throw new CluedoError("A game needs three to six bots");
+		this.bots = bots;
+		this.die = random;
+		List<CharacterToken> players = new ArrayList<CharacterToken>();
+		CluedoGame.Character[] characters = CluedoGame.Character.values();
+		for(int i = 0; i < characters.length; i++){
+			boolean seated = i < bots.size();
+			CharacterToken c = new CharacterToken(seated ? bots.get(i).name() : "computer", 
+					characters[i], seated, i + 1);
+			players.add(c);
+			if(seated)
+				seats.add(c);
+		}
+		this.game = new CluedoGame(bots.size(), players, boardFile);
+		this.board = game.board();
+		game.setDice(dice);
+		game.refutations().setPolicy(RefuterPolicy.random(random));
+		for(int i = 0; i < bots.size(); i++){
+			bots.get(i).start(game, seats.get(i));
+		}
+	}
+	
+	/**
+	 * Returns the game being played.
+	 * @return
+	 */
+	public CluedoGame game() {
+		return game;
+	}
+	
+	/**
+	 * Plays the game until it is won, every player has lost, 
+	 *  or the given System.nanoTime() deadline has passed.
+	 * @param deadline
+	 * @return
+	 */
+	public Result play(long deadline) {
+		int turns = 0;
+		for(int round = 0; round < MAX_ROUNDS; round++){
+			for(int seat = 0; seat < seats.size(); seat++){
+				// only give turns to players
+				if(!seats.get(seat).isPlayer())
+					continue;
+				if(System.nanoTime() > deadline || Thread.currentThread().isInterrupted())
+					return new Result(-1, turns, true);
+				turns++;
+				if(playTurn(seat))
+					return new Result(seat, turns, false);
+				if(!game.activePlayers())
+					return new Result(-1, turns, false);
+			}
+		}
+		return new Result(-1, turns, false);
+	}
+	
+	/**
+	 * Plays one turn for the bot in a given seat.
+	 * @param seat
+	 * @return true if the bot won the game
+	 */
+	private boolean playTurn(int seat) {
+		Bot bot = bots.get(seat);
+		CharacterToken player = seats.get(seat);
+		game.setTurn(seat); // seats are the first players
+		
+		// roll the dice and move
+		player.setRemainingSteps(game.dice().roll(die));
+		game.diceRolled(player, player.getRemainingSteps());
+		while(player.getRemainingSteps() > 0){
+			Direction dir = bot.step(board, player);
+			if(dir == null || !board.canMove(player, dir))
+				break;
+			board.move(player, dir);
+			player.setRemainingSteps(player.getRemainingSteps() - 1);
+		}
+		player.setRemainingSteps(0);
+		
+		// suggest in the room the player is in
+		if(board.inRoom(player)){
+			Room room = ((RoomTile)board.getTile(player.getXPos(), player.getYPos())).name();
+			Card[] suggestion = bot.suggest(room);
+			if(suggestion != null){
+				suggestion[1] = room; // can only suggest the room the player is in
+				board.moveIntoRoom(suspectToken(suggestion[0]), room);
+				board.moveIntoRoom(weaponToken(suggestion[2]), room);
+				// the players are asked clockwise from the suggester
+				RefutationEngine engine = game.refutations();
+				int refutation = engine.refute(player, suggestion);
+				CharacterToken refuter = null;
+				Card shown = null;
+				if(refutation != RefutationEngine.NONE){
+					refuter = engine.player(RefutationEngine.seat(refutation));
+					shown = CluedoGame.getCard(RefutationEngine.card(refutation));
+				}
+				bot.refuted(suggestion, refuter, shown);
+				game.suggestionMade(player, suggestion, refuter != null);
+			}
+		}
+		
+		// accuse if the bot is ready
+		Card[] accusation = bot.accuse();
+		if(accusation == null)
+			return false;
+		Card[] solution = game.Solution();
+		for(int i = 0; i < 3; i++){
+			if(accusation[i].id() != solution[i].id()){
+				player.isPlayer(false); // wrong, so out of the game
+				game.accusationMade(player, accusation, false);
+				return false;
+			}
+		}
+		game.accusationMade(player, accusation, true);
+		return true;
+	}
+	
+	/**
+	 * Returns the token of a suspect card.
+	 */
+	private CharacterToken suspectToken(Card suspect) {
+		for(CharacterToken c : game.players()){
+			if(c.getToken() == suspect)
+				return c;
+		}
+		throw new CluedoError("Not a suspect: " + suspect);
+	}
+	
+	/**
+	 * Returns the token of a weapon card.
+	 */
+	private WeaponToken weaponToken(Card weapon) {
+		for(WeaponToken w : game.weapons()){
+			if(w.token() == weapon)
+				return w;
+		}
+		throw new CluedoError("Not a weapon: " + weapon);
+	}
+	
+	/**
+	 * The outcome of a bot game.
+	 */
+	public static class Result {
+		
+		private final int winner;
+		private final int turns;
+		private final boolean timedOut;
+		
+		Result(int winner, int turns, boolean timedOut) {
+			this.winner = winner;
+			this.turns = turns;
+			this.timedOut = timedOut;
+		}
+		
+		/**
+		 * Returns the seat of the winner, or -1 if no one won.
+		 * @return
+		 */
+		public int winner() {
+			return winner;
+		}
+		
+		/**
+		 * Returns the number of turns played.
+		 * @return
+		 */
+		public int turns() {
+			return turns;
+		}
+		
+		/**
+		 * Returns true if the game was stopped before it finished.
+		 * @return
+		 */
+		public boolean timedOut() {
+			return timedOut;
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package cluedo.bots;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import cluedo.control.CluedoError;
+
+/**
+ * Creates bots from the names of their policies.
+ * 
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class Bots {
+	
+	/**
+	 * Returns the names of every bot policy.
+	 * @return
+	 */
+	public static List<String> policies() {
+		return Arrays.asList("random", "notebook", "info");
+	}
+
+	/**
+	 * Creates a new bot with the given policy.
+	 * @param policy
+	 * @param random
+	 * @return
+	 */
+	public static Bot create(String policy, Random random) {
+		switch(policy){
+			case "random":
+				return new RandomBot(random);
+			case "notebook":
+				return new NotebookBot(random);
+			case "info":
+				return new InfoBot(random);
+			default:
+				throw new CluedoError("Unknown bot policy: " + policy);
+		}
+	}
+}
@@ -0,0 +1,497 @@
+package cluedo.bots;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import cluedo.control.CluedoError;
+import cluedo.control.CluedoGame;
+import cluedo.control.RefutationEngine;
+import cluedo.tokens.Card;
+import cluedo.tokens.CharacterToken;
+
+/**
+ * Works out the exact chance of each possible solution from what one player
+ *  has seen, by counting every deal of the unseen cards which agrees with it.
+ *  Every deal is taken to be equally likely, and a refuter is taken to hold
+ *  the card they showed, with no account of which card they chose to show.
+ *
+ * Hands are kept as bitmasks of card ids, so counting makes no objects. Each
+ *  possible solution is counted as its own fork-join task. The number of deals
+ *  grows very quickly with the number of unseen cards, so this is only meant
+ *  for the end of a game; see {@link #small()}.
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class EndgameSolver {
+
+	public static final double MAX_DEALS = 5e7; // most deals solve() will count
+	private static final int ALL = (1 << CluedoGame.NUM_CARDS) - 1; // every card id
+	private static final int MAX_TRIES = 100; // deals tried for each one sample() keeps
+
+	private final CharacterToken player;
+	private final List<CharacterToken> opponents = new ArrayList<CharacterToken>();
+	private final int[] handSizes;
+	private final int[] held; // cards each opponent is known to hold
+	private final int[] notHeld; // cards each opponent is known not to hold
+	private final List<List<Integer>> heldOneOf = new ArrayList<List<Integer>>(); // each opponent holds one of each
+	private int seen; // cards known not to be in the solution
+
+	/**
+	 * Creates a solver for a player, who knows their own hand and
+	 *  the cards left over from the deal.
+	 * @param game
+	 * @param player
+	 */
+	public EndgameSolver(CluedoGame game, CharacterToken player) {
+		if(game == null || player == null)
+			throw new CluedoError("Null parameters: EndgameSolver()");
+		this.player = player;
+		// opponents in the order the game asks them to refute the player
+		RefutationEngine engine = game.refutations();
+		int seat = engine.seatOf(player);
+		for(int i = 0; i < engine.seats() - 1; i++){
+			CharacterToken p = engine.player(engine.asked(seat, i));
+			if(!p.getHand().isEmpty())
+				opponents.add(p);
+		}
+		this.handSizes = new int[opponents.size()];
+		this.held = new int[opponents.size()];
+		this.notHeld = new int[opponents.size()];
+		for(int i = 0; i < opponents.size(); i++){
+			handSizes[i] = opponents.get(i).getHand().size();
+			heldOneOf.add(new ArrayList<Integer>());
+		}
+		seen = mask(player.getHand()) | mask(game.unusedCards());
+	}
+
+	/**
+	 * Records that an opponent showed a card.
+	 * @param opponent
+	 * @param shown
+	 */
+	public void shown(CharacterToken opponent, Card shown) {
+		int i = seat(opponent);
+		held[i] |= bit(shown);
+		seen |= bit(shown);
+	}
+
+	/**
+	 * Records that an opponent could not refute a suggestion.
+	 * @param opponent
+	 * @param suggestion
+	 */
+	public void passed(CharacterToken opponent, Card[] suggestion) {
+		notHeld[seat(opponent)] |= mask(suggestion);
+	}
+
+	/**
+	 * Records that an opponent refuted someone else's suggestion with a card
+	 *  this player did not see.
+	 * @param opponent
+	 * @param suggestion
+	 */
+	public void refuted(CharacterToken opponent, Card[] suggestion) {
+		heldOneOf.get(seat(opponent)).add(mask(suggestion));
+	}
+
+	/**
+	 * Returns the number of possible solutions left.
+	 * @return
+	 */
+	public int candidates() {
+		return solutions().size();
+	}
+
+	/**
+	 * Returns true if there are few enough deals left to count them all.
+	 * @return
+	 */
+	public boolean small() {
+		List<int[]> solutions = solutions();
+		if(solutions.size() <= 1)
+			return true;
+		// the ways of dealing the cards no one has been seen with, ignoring what is known not to be held
+		int free = 0;
+		int unknown = Integer.bitCount(~seen & ALL) - 3;
+		double deals = 1;
+		for(int i = 0; i < opponents.size(); i++){
+			int k = handSizes[i] - Integer.bitCount(held[i]);
+			for(int j = 1; j <= k; j++){
+				deals = deals * (unknown - free) / j;
+				free++;
+			}
+		}
+		return deals * solutions.size() <= MAX_DEALS;
+	}
+
+	/**
+	 * Counts the deals for each possible solution on the common fork-join pool.
+	 * @return
+	 */
+	public Odds solve() {
+		return solve(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Counts the deals for each possible solution on a given fork-join pool.
+	 * @param pool
+	 * @return
+	 */
+	public Odds solve(ForkJoinPool pool) {
+		List<int[]> solutions = solutions();
+		long[] deals = new long[solutions.size()];
+		if(solutions.size() == 1){
+			// nothing left to tell apart
+			deals[0] = 1;
+		} else if(!solutions.isEmpty()){
+			if(!small())
+				throw new CluedoError("Too many deals to solve: " + candidates() + " possible solutions");
+			List<int[]> oneOf = new ArrayList<int[]>();
+			for(List<Integer> masks : heldOneOf){
+				int[] m = new int[masks.size()];
+				for(int j = 0; j < m.length; j++){
+					m[j] = masks.get(j);
+				}
+				oneOf.add(m);
+			}
+			Deals problem = new Deals(seen, handSizes.clone(), held.clone(), notHeld.clone(),
+					oneOf.toArray(new int[oneOf.size()][]));
+			pool.invoke(new Count(problem, solutions, deals, 0, solutions.size()));
+		}
+		Card[][] cards = new Card[solutions.size()][];
+		for(int i = 0; i < cards.length; i++){
+			int[] s = solutions.get(i);
+			cards[i] = new Card[]{ CluedoGame.getCard(s[0]), CluedoGame.getCard(s[1]), CluedoGame.getCard(s[2]) };
+		}
+		return new Odds(cards, deals);
+	}
+
+	/**
+	 * Returns the number of opponents who hold cards, in the order they are
+	 *  asked to refute a suggestion.
+	 * @return
+	 */
+	int opponents() {
+		return opponents.size();
+	}
+
+	/**
+	 * Deals the unseen cards at random, keeping only the deals which agree with
+	 *  what has been seen, until the arrays are full or too many deals have
+	 *  been thrown away. Every deal kept is as likely as any other.
+	 * @param random
+	 * @param solutions filled with the solution of each deal, as a bitmask
+	 * @param hands filled with each opponent's hand in each deal, as bitmasks
+	 * @return the number of deals kept
+	 */
+	int sample(Random random, int[] solutions, int[][] hands) {
+		List<int[]> candidates = solutions();
+		if(candidates.isEmpty())
+			return 0;
+		int n = opponents.size();
+		int[] room = new int[n];
+		int[] cards = new int[CluedoGame.NUM_CARDS];
+		int kept = 0;
+		for(int tries = 0; kept < solutions.length && tries < solutions.length * MAX_TRIES; tries++){
+			int[] c = candidates.get(random.nextInt(candidates.size()));
+			int solution = 1 << c[0] | 1 << c[1] | 1 << c[2];
+			// shuffle the free cards and deal them into the space left in each hand
+			int count = 0;
+			for(int free = ~seen & ALL & ~solution; free != 0; free &= free - 1){
+				cards[count++] = Integer.numberOfTrailingZeros(free);
+			}
+			for(int i = count - 1; i > 0; i--){
+				int j = random.nextInt(i + 1);
+				int t = cards[i];
+				cards[i] = cards[j];
+				cards[j] = t;
+			}
+			int next = 0;
+			boolean agrees = true;
+			for(int i = 0; i < n && agrees; i++){
+				int hand = held[i];
+				room[i] = handSizes[i] - Integer.bitCount(hand);
+				for(int k = 0; k < room[i] && next < count; k++){
+					hand |= 1 << cards[next++];
+				}
+				agrees = (hand & notHeld[i]) == 0;
+				for(int m : heldOneOf.get(i)){
+					agrees &= (hand & m) != 0;
+				}
+				hands[i][kept] = hand;
+			}
+			if(agrees && next == count)
+				solutions[kept++] = solution;
+		}
+		return kept;
+	}
+
+	/**
+	 * Returns the suspect, room and weapon ids of every solution not yet ruled out.
+	 */
+	private List<int[]> solutions() {
+		List<int[]> solutions = new ArrayList<int[]>();
+		for(int s = 0; s < CluedoGame.FIRST_WEAPON; s++){
+			for(int r = CluedoGame.FIRST_ROOM; r < CluedoGame.NUM_CARDS; r++){
+				for(int w = CluedoGame.FIRST_WEAPON; w < CluedoGame.FIRST_ROOM; w++){
+					if((seen & (1 << s | 1 << r | 1 << w)) == 0)
+						solutions.add(new int[]{ s, r, w });
+				}
+			}
+		}
+		return solutions;
+	}
+
+	/**
+	 * Returns the index of an opponent.
+	 */
+	private int seat(CharacterToken opponent) {
+		int i = opponents.indexOf(opponent);
+		if(i < 0)
+			throw new CluedoError("Not an opponent of " + player.getName() + ": " + opponent);
+		return i;
+	}
+
+	private static int bit(Card c) {
+		return 1 << c.id();
+	}
+
+	private static int mask(Iterable<Card> cards) {
+		int m = 0;
+		for(Card c : cards){
+			m |= bit(c);
+		}
+		return m;
+	}
+
+	private static int mask(Card[] cards) {
+		int m = 0;
+		for(Card c : cards){
+			m |= bit(c);
+		}
+		return m;
+	}
+
+	/**
+	 * A copy of what is known, shared by the counting tasks.
+	 */
+	private static class Deals {
+
+		final int seen;
+		final int[] handSizes;
+		final int[] held;
+		final int[] notHeld;
+		final int[][] heldOneOf;
+
+		Deals(int seen, int[] handSizes, int[] held, int[] notHeld, int[][] heldOneOf) {
+			this.seen = seen;
+			this.handSizes = handSizes;
+			this.held = held;
+			this.notHeld = notHeld;
+			this.heldOneOf = heldOneOf;
+		}
+	}
+
+	/**
+	 * Counts the deals for a range of solutions, splitting it in half
+	 *  until there is one solution to count.
+	 */
+	private static class Count extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Deals problem;
+		private final List<int[]> solutions;
+		private final long[] deals;
+		private final int from, to;
+		// the hands being dealt
+		private int[] room;
+		private int[] hands;
+
+		Count(Deals problem, List<int[]> solutions, long[] deals, int from, int to) {
+			this.problem = problem;
+			this.solutions = solutions;
+			this.deals = deals;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from > 1){
+				int mid = (from + to) >>> 1;
+				invokeAll(new Count(problem, solutions, deals, from, mid),
+						new Count(problem, solutions, deals, mid, to));
+				return;
+			}
+			int[] s = solutions.get(from);
+			int solution = 1 << s[0] | 1 << s[1] | 1 << s[2];
+			int n = problem.handSizes.length;
+			room = new int[n];
+			hands = new int[n];
+			int cards = ~problem.seen & ALL & ~solution;
+			for(int i = 0; i < n; i++){
+				if((problem.held[i] & problem.notHeld[i]) != 0)
+					return; // cannot happen
+				hands[i] = problem.held[i];
+				room[i] = problem.handSizes[i] - Integer.bitCount(hands[i]);
+				if(room[i] < 0 || room[i] == 0 && !satisfied(i))
+					return;
+			}
+			// each unseen card but the solution goes to an opponent, so the hands must have room for them all
+			int space = 0;
+			for(int r : room){
+				space += r;
+			}
+			if(space != Integer.bitCount(cards))
+				return;
+			deals[from] = count(cards);
+		}
+
+		/**
+		 * Returns the number of ways of dealing the given cards into the hands.
+		 */
+		private long count(int cards) {
+			if(cards == 0)
+				return 1;
+			int c = cards & -cards;
+			int rest = cards & (cards - 1);
+			long total = 0;
+			for(int i = 0; i < room.length; i++){
+				if(room[i] == 0 || (problem.notHeld[i] & c) != 0)
+					continue;
+				hands[i] |= c;
+				room[i]--;
+				if(room[i] > 0 || satisfied(i))
+					total += count(rest);
+				room[i]++;
+				hands[i] &= ~c;
+			}
+			return total;
+		}
+
+		/**
+		 * Returns true if a full hand holds a card from each suggestion it refuted.
+		 */
+		private boolean satisfied(int i) {
+			for(int m : problem.heldOneOf[i]){
+				if((hands[i] & m) == 0)
+					return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * The chance of each possible solution.
+	 */
+	public static class Odds {
+
+		private final Card[][] solutions;
+		private final long[] deals;
+		private final long total;
+
+		Odds(Card[][] solutions, long[] deals) {
+			this.solutions = solutions;
+			this.deals = deals;
+			long t = 0;
+			for(long d : deals){
+				t += d;
+			}
+			this.total = t;
+		}
+
+		/**
+		 * Returns the number of possible solutions.
+		 * @return
+		 */
+		public int size() {
+			return solutions.length;
+		}
+
+		/**
+		 * Returns a possible solution, as suspect, room and weapon cards.
+		 * @param i
+		 * @return
+		 */
+		public Card[] solution(int i) {
+			return solutions[i].clone();
+		}
+
+		/**
+		 * Returns the number of deals in which a solution is the answer.
+		 * @param i
+		 * @return
+		 */
+		public long deals(int i) {
+			return deals[i];
+		}
+
+		/**
+		 * Returns the chance that a solution is the answer.
+		 * @param i
+		 * @return
+		 */
+		public double probability(int i) {
+			return total == 0 ? 0 : (double)deals[i] / total;
+		}
+
+		/**
+		 * Returns the chance that the given suspect, room and weapon are the answer.
+		 * @param suspect
+		 * @param room
+		 * @param weapon
+		 * @return
+		 */
+		public double probability(Card suspect, Card room, Card weapon) {
+			for(int i = 0; i < solutions.length; i++){
+				Card[] s = solutions[i];
+				if(s[0].id() == suspect.id() && s[1].id() == room.id() && s[2].id() == weapon.id())
+					return probability(i);
+			}
+			return 0;
+		}
+
+		/**
+		 * Returns the most likely solution, or null if nothing fits what was seen.
+		 * @return
+		 */
+		public Card[] best() {
+			int best = -1;
+			for(int i = 0; i < solutions.length; i++){
+				if(deals[i] > 0 && (best < 0 || deals[i] > deals[best]))
+					best = i;
+			}
+			return best < 0 ? null : solution(best);
+		}
+
+		/**
+		 * Returns the chance that the most likely solution is the answer,
+		 *  which is the expected value of accusing now when a win is worth 1
+		 *  and a loss 0.
+		 * @return
+		 */
+		public double bestProbability() {
+			long most = 0;
+			for(long d : deals){
+				most = Math.max(most, d);
+			}
+			return total == 0 ? 0 : (double)most / total;
+		}
+
+		/**
+		 * Returns the accusation to make now, or null if waiting is worth more.
+		 * @param waitValue the chance of winning by waiting for more clues
+		 * @return
+		 */
+		public Card[] accuse(double waitValue) {
+			if(total == 0 || bestProbability() < waitValue)
+				return null;
+			return best();
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package cluedo.bots;
+
+import java.util.Random;
+
+import cluedo.control.CluedoGame;
+import cluedo.control.CluedoGame.Room;
+import cluedo.control.RefutationEngine;
+import cluedo.tokens.Card;
+import cluedo.tokens.CharacterToken;
+
+/**
+ * A notebook bot which makes the suggestion expected to tell it the most,
+ *  as scored by a {@link SuggestionScorer}. Besides the cards it is shown,
+ *  it remembers which players could not refute its suggestions.
+ * 
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class InfoBot extends NotebookBot {
+	
+	private CluedoGame game;
+	private CharacterToken player;
+	private EndgameSolver knowledge;
+	private SuggestionScorer scorer;
+
+	/**
+	 * Creates an information bot.
+	 * @param random
+	 */
+	public InfoBot(Random random) {
+		super(random);
+	}
+	
+	@Override
+	public String name() {
+		return "info";
+	}
+	
+	@Override
+	public void start(CluedoGame game, CharacterToken player) {
+		super.start(game, player);
+		this.game = game;
+		this.player = player;
+		this.knowledge = new EndgameSolver(game, player);
+		this.scorer = new SuggestionScorer(knowledge);
+	}
+	
+	@Override
+	public Card[] suggest(Room room) {
+		Card[] suggestion = scorer.best(room, random);
+		if(suggestion == null)
+			return super.suggest(room);
+		return suggestion;
+	}
+	
+	@Override
+	public void refuted(Card[] suggestion, CharacterToken refuter, Card shown) {
+		super.refuted(suggestion, refuter, shown);
+		// everyone the game asked before the refuter could not refute
+		RefutationEngine engine = game.refutations();
+		int seat = engine.seatOf(player);
+		for(int i = 0; i < engine.seats() - 1; i++){
+			CharacterToken p = engine.player(engine.asked(seat, i));
+			if(p == refuter){
+				knowledge.shown(p, shown);
+				break;
+			}
+			if(!p.getHand().isEmpty())
+				knowledge.passed(p, suggestion);
+		}
+	}
+}
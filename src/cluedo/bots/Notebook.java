@@ -0,0 +1,108 @@
+package cluedo.bots;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import cluedo.control.CluedoGame.Character;
+import cluedo.control.CluedoGame.Room;
+import cluedo.control.CluedoGame.Weapon;
+import cluedo.tokens.Card;
+import cluedo.tokens.WeaponToken;
+
+/**
+ * A player's record of which cards could still be part of the solution.
+ * 
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class Notebook {
+
+	private final EnumSet<Character> suspects = EnumSet.allOf(Character.class);
+	private final EnumSet<Room> rooms = EnumSet.allOf(Room.class);
+	private final EnumSet<Weapon> weapons = EnumSet.allOf(Weapon.class);
+	
+	/**
+	 * Records that a card is not part of the solution.
+	 * @param c
+	 */
+	public void see(Card c) {
+		if(c instanceof Character)
+			suspects.remove(c);
+		else if(c instanceof Room)
+			rooms.remove(c);
+		else if(c instanceof Weapon)
+			weapons.remove(c);
+		else if(c instanceof WeaponToken)
+			weapons.remove(((WeaponToken)c).token());
+	}
+	
+	/**
+	 * Records that a card is part of the solution.
+	 * @param c
+	 */
+	public void confirm(Card c) {
+		if(c instanceof Character){
+			suspects.retainAll(EnumSet.of((Character)c));
+		} else if(c instanceof Room){
+			rooms.retainAll(EnumSet.of((Room)c));
+		} else if(c instanceof Weapon){
+			weapons.retainAll(EnumSet.of((Weapon)c));
+		} else if(c instanceof WeaponToken){
+			weapons.retainAll(EnumSet.of(((WeaponToken)c).token()));
+		}
+	}
+	
+	/**
+	 * Returns true if a card could still be part of the solution.
+	 * @param c
+	 * @return
+	 */
+	public boolean possible(Card c) {
+		if(c instanceof WeaponToken)
+			return weapons.contains(((WeaponToken)c).token());
+		return suspects.contains(c) || rooms.contains(c) || weapons.contains(c);
+	}
+	
+	/**
+	 * Returns the suspects which could still be the murderer.
+	 * @return
+	 */
+	public List<Character> suspects() {
+		return new ArrayList<Character>(suspects);
+	}
+	
+	/**
+	 * Returns the rooms which could still be the crime scene.
+	 * @return
+	 */
+	public List<Room> rooms() {
+		return new ArrayList<Room>(rooms);
+	}
+	
+	/**
+	 * Returns the weapons which could still be the murder weapon.
+	 * @return
+	 */
+	public List<Weapon> weapons() {
+		return new ArrayList<Weapon>(weapons);
+	}
+	
+	/**
+	 * Returns true if only one suspect, room and weapon remain.
+	 * @return
+	 */
+	public boolean solved() {
+		return suspects.size() == 1 && rooms.size() == 1 && weapons.size() == 1;
+	}
+	
+	/**
+	 * Returns the solution if it is known, otherwise null.
+	 * @return
+	 */
+	public Card[] solution() {
+		if(!solved())
+			return null;
+		return new Card[]{ suspects.iterator().next(), rooms.iterator().next(), weapons.iterator().next() };
+	}
+}
@@ -0,0 +1,68 @@
+package cluedo.bots;
+
+import java.util.List;
+import java.util.Random;
+
+import cluedo.control.CluedoGame;
+import cluedo.control.CluedoGame.Character;
+import cluedo.control.CluedoGame.Room;
+import cluedo.control.CluedoGame.Weapon;
+import cluedo.tokens.Card;
+import cluedo.tokens.CharacterToken;
+
+/**
+ * A bot which only suggests cards it has not yet ruled out, and which
+ *  works out the solution when no one can refute a suggestion.
+ * 
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class NotebookBot extends RandomBot {
+	
+	private CharacterToken player;
+
+	/**
+	 * Creates a notebook bot.
+	 * @param random
+	 */
+	public NotebookBot(Random random) {
+		super(random);
+	}
+	
+	@Override
+	public String name() {
+		return "notebook";
+	}
+	
+	@Override
+	public void start(CluedoGame game, CharacterToken player) {
+		super.start(game, player);
+		this.player = player;
+	}
+	
+	@Override
+	protected boolean worth(Room room) {
+		// only worth suggesting in a room which could still be the answer
+		return notebook.possible(room);
+	}
+	
+	@Override
+	public Card[] suggest(Room room) {
+		List<Character> suspects = notebook.suspects();
+		List<Weapon> weapons = notebook.weapons();
+		return new Card[]{ suspects.get(random.nextInt(suspects.size())), room, 
+				weapons.get(random.nextInt(weapons.size())) };
+	}
+	
+	@Override
+	public void refuted(Card[] suggestion, CharacterToken refuter, Card shown) {
+		super.refuted(suggestion, refuter, shown);
+		if(refuter == null){
+			// no one else holds these cards, so any not in this bot's hand are the answer
+			for(Card c : suggestion){
+				if(!player.getHand().contains(c) && notebook.possible(c))
+					notebook.confirm(c);
+			}
+		}
+	}
+}
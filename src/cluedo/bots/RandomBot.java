@@ -0,0 +1,145 @@
+package cluedo.bots;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import cluedo.board.Board;
+import cluedo.board.Direction;
+import cluedo.board.MoveTable;
+import cluedo.board.RoomTile;
+import cluedo.control.CluedoGame;
+import cluedo.control.CluedoGame.Character;
+import cluedo.control.CluedoGame.Room;
+import cluedo.control.CluedoGame.Weapon;
+import cluedo.tokens.Card;
+import cluedo.tokens.CharacterToken;
+
+/**
+ * A bot which heads for rooms picked at random and makes random suggestions,
+ *  only accusing once the cards it has been shown leave a single answer.
+ *  It leaves a room after making a suggestion in it, so bots dragged into
+ *  a room by a suggestion do not gather there for good.
+ * 
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class RandomBot implements Bot {
+	
+	protected final Random random;
+	protected final Notebook notebook = new Notebook();
+	private MoveTable table; // steps to each room from each square
+	private Room target; // the room being headed for
+	private Room suggested; // the room of the last suggestion, until the player leaves it
+	
+	/**
+	 * Creates a random bot.
+	 * @param random
+	 */
+	public RandomBot(Random random) {
+		this.random = random;
+	}
+
+	@Override
+	public String name() {
+		return "random";
+	}
+
+	@Override
+	public void start(CluedoGame game, CharacterToken player) {
+		table = MoveTable.of(game.boardFile());
+		// cards in hand and the extra cards cannot be in the solution
+		for(Card c : player.getHand()){
+			notebook.see(c);
+		}
+		for(Card c : game.unusedCards()){
+			notebook.see(c);
+		}
+	}
+
+	@Override
+	public Direction step(Board board, CharacterToken player) {
+		Room here = board.inRoom(player) ? room(board, player) : null;
+		if(here == null)
+			suggested = null;
+		// stay in a room to make a suggestion, unless one was just made there
+		if(here != null && here != suggested && worth(here))
+			return null;
+		if(target == null || target == here || !worth(target))
+			target = target(here);
+		// step closer to the target, or anywhere if other tokens are in the way
+		int x = player.getXPos(), y = player.getYPos();
+		int nearest = table.distance(x, y, target);
+		Direction closer = null;
+		List<Direction> moves = new ArrayList<Direction>(4);
+		for(Direction d : Direction.values()){
+			if(!board.canMove(player, d))
+				continue;
+			moves.add(d);
+			int distance = table.distance(x + d.dx(), y + d.dy(), target);
+			if(distance < nearest){
+				nearest = distance;
+				closer = d;
+			}
+		}
+		if(closer != null)
+			return closer;
+		if(moves.isEmpty())
+			return null;
+		return moves.get(random.nextInt(moves.size()));
+	}
+
+	/**
+	 * Returns true if a room is worth making a suggestion in.
+	 * @param room
+	 * @return
+	 */
+	protected boolean worth(Room room) {
+		return true;
+	}
+
+	/**
+	 * Returns a room worth heading for at random, other than the room the
+	 *  player is in, or any other room if none is worth it.
+	 */
+	private Room target(Room here) {
+		List<Room> choices = new ArrayList<Room>();
+		for(Room r : Room.values()){
+			if(r != here && worth(r))
+				choices.add(r);
+		}
+		if(choices.isEmpty()){
+			choices.addAll(Arrays.asList(Room.values()));
+			choices.remove(here);
+		}
+		return choices.get(random.nextInt(choices.size()));
+	}
+
+	/**
+	 * Returns the room a player is in.
+	 */
+	private static Room room(Board board, CharacterToken player) {
+		return ((RoomTile)board.getTile(player.getXPos(), player.getYPos())).name();
+	}
+
+	@Override
+	public Card[] suggest(Room room) {
+		Character[] suspects = Character.values();
+		Weapon[] weapons = Weapon.values();
+		return new Card[]{ suspects[random.nextInt(suspects.length)], room, 
+				weapons[random.nextInt(weapons.length)] };
+	}
+
+	@Override
+	public void refuted(Card[] suggestion, CharacterToken refuter, Card shown) {
+		suggested = (Room)suggestion[1];
+		if(shown != null)
+			notebook.see(shown);
+	}
+
+	@Override
+	public Card[] accuse() {
+		return notebook.solution();
+	}
+}
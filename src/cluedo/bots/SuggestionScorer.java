@@ -0,0 +1,204 @@
+package cluedo.bots;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import cluedo.control.CluedoError;
+import cluedo.control.CluedoGame;
+import cluedo.control.CluedoGame.Room;
+import cluedo.tokens.Card;
+
+/**
+ * Scores the 36 suspect and weapon pairs a player could suggest in a room by
+ *  how much they are expected to tell the player about the solution, in bits.
+ *
+ * The scorer deals the unseen cards at random a few hundred times, keeping
+ *  only deals which agree with what the player has seen, and works out who
+ *  would refute each suggestion in each deal and which card they could show.
+ *  A refuter with more than one of the cards is taken to show any of them
+ *  equally often. The score is the drop in the uncertainty of the suspect,
+ *  room and weapon between before and after hearing the outcome.
+ *
+ * The deals are kept as bitmasks in one array for each opponent, and the
+ *  counts in arrays made once, so scoring makes no objects.
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class SuggestionScorer {
+
+	public static final int SAMPLES = 256; // deals kept for each scoring
+	public static final int PAIRS = 36; // suspect and weapon pairs
+	private static final int SUSPECTS = CluedoGame.FIRST_WEAPON;
+	private static final int WEAPONS = CluedoGame.FIRST_ROOM - CluedoGame.FIRST_WEAPON;
+	private static final int SHARES = 6; // a count split evenly between one, two or three cards shown
+	private static final double[] N_LOG_N = new double[SAMPLES * SHARES + 1]; // n log2 n, for any count
+	static {
+		for(int n = 1; n < N_LOG_N.length; n++){
+			N_LOG_N[n] = n * Math.log(n) / Math.log(2);
+		}
+	}
+
+	private final EndgameSolver knowledge;
+	private final int[] solutions = new int[SAMPLES];
+	private final int[][] hands;
+	private final int[][] counts; // times each card is in the solution, for each outcome
+	private final int[] totals; // times each outcome happens
+	private final double[] scores = new double[PAIRS];
+	private int deals;
+	private double before; // uncertainty of the solution in the current deals
+
+	/**
+	 * Creates a scorer for the player whose observations are recorded by
+	 *  an endgame solver.
+	 * @param knowledge
+	 */
+	public SuggestionScorer(EndgameSolver knowledge) {
+		if(knowledge == null)
+			throw new CluedoError("Null parameters: SuggestionScorer()");
+		this.knowledge = knowledge;
+		this.hands = new int[knowledge.opponents()][SAMPLES];
+		// no one refutes, or one of the opponents shows one of the three cards
+		int outcomes = 1 + knowledge.opponents() * 3;
+		this.counts = new int[outcomes][CluedoGame.NUM_CARDS];
+		this.totals = new int[outcomes];
+	}
+
+	/**
+	 * Deals new random hands agreeing with everything seen so far.
+	 *  Returns false if none could be found.
+	 * @param random
+	 * @return
+	 */
+	public boolean deal(Random random) {
+		deals = knowledge.sample(random, solutions, hands);
+		// the solution is the same whatever is suggested, so its uncertainty is worked out once
+		int[] cards = counts[0];
+		Arrays.fill(cards, 0);
+		for(int d = 0; d < deals; d++){
+			for(int s = solutions[d]; s != 0; s &= s - 1){
+				cards[Integer.numberOfTrailingZeros(s)] += SHARES;
+			}
+		}
+		before = 0;
+		if(deals > 0){
+			before = 3 * N_LOG_N[deals * SHARES];
+			for(int n : cards){
+				before -= N_LOG_N[n];
+			}
+			before /= deals * SHARES;
+		}
+		return deals > 0;
+	}
+
+	/**
+	 * Returns the number of deals being scored against.
+	 * @return
+	 */
+	public int deals() {
+		return deals;
+	}
+
+	/**
+	 * Scores every suspect and weapon pair in a room against the current deals.
+	 *  The score of a pair is at index suspect * 6 + weapon, by ordinal.
+	 *  The array returned is reused by the next call.
+	 * @param room
+	 * @return
+	 */
+	public double[] score(Room room) {
+		int roomBit = 1 << room.id();
+		for(int s = 0; s < SUSPECTS; s++){
+			for(int w = 0; w < WEAPONS; w++){
+				int suspectBit = 1 << s;
+				int weaponBit = 1 << (CluedoGame.FIRST_WEAPON + w);
+				scores[s * WEAPONS + w] = score(suspectBit, roomBit, weaponBit);
+			}
+		}
+		return scores;
+	}
+
+	/**
+	 * Returns the pair expected to tell the most, breaking ties at random,
+	 *  as suspect, room and weapon cards. Deals new hands first, and returns
+	 *  null if there are none.
+	 * @param room
+	 * @param random
+	 * @return
+	 */
+	public Card[] best(Room room, Random random) {
+		if(!deal(random))
+			return null;
+		double[] scores = score(room);
+		int best = 0, ties = 0;
+		for(int i = 0; i < PAIRS; i++){
+			if(scores[i] > scores[best] + 1e-12){
+				best = i;
+				ties = 1;
+			} else if(Math.abs(scores[i] - scores[best]) <= 1e-12 && random.nextInt(++ties) == 0){
+				best = i;
+			}
+		}
+		return new Card[]{ CluedoGame.getCard(best / WEAPONS), room, 
+				CluedoGame.getCard(CluedoGame.FIRST_WEAPON + best % WEAPONS) };
+	}
+
+	/**
+	 * Returns the expected bits learnt from suggesting the given cards.
+	 */
+	private double score(int suspectBit, int roomBit, int weaponBit) {
+		int suggestion = suspectBit | roomBit | weaponBit;
+		for(int[] row : counts){
+			Arrays.fill(row, 0);
+		}
+		Arrays.fill(totals, 0);
+		for(int d = 0; d < deals; d++){
+			int outcome = 0;
+			int shown = 0;
+			for(int i = 0; i < hands.length; i++){
+				shown = hands[i][d] & suggestion;
+				if(shown != 0){
+					outcome = 1 + i * 3;
+					break;
+				}
+			}
+			int solution = solutions[d];
+			if(shown == 0){
+				record(0, solution, SHARES);
+				continue;
+			}
+			// the refuter shows each card they hold equally often
+			int share = SHARES / Integer.bitCount(shown);
+			if((shown & suspectBit) != 0)
+				record(outcome, solution, share);
+			if((shown & roomBit) != 0)
+				record(outcome + 1, solution, share);
+			if((shown & weaponBit) != 0)
+				record(outcome + 2, solution, share);
+		}
+		// uncertainty before, less the uncertainty expected after, where the suspect, room
+		//  and weapon counts each summing to t have uncertainty (3 t log t - sum of n log n) / t
+		double after = 0;
+		for(int o = 0; o < totals.length; o++){
+			if(totals[o] == 0)
+				continue;
+			after += 3 * N_LOG_N[totals[o]];
+			for(int n : counts[o]){
+				after -= N_LOG_N[n];
+			}
+		}
+		return before - after / (deals * SHARES);
+	}
+
+	/**
+	 * Counts the cards of a deal's solution towards an outcome.
+	 */
+	private void record(int outcome, int solution, int weight) {
+		totals[outcome] += weight;
+		int[] row = counts[outcome];
+		for(int s = solution; s != 0; s &= s - 1){
+			row[Integer.numberOfTrailingZeros(s)] += weight;
+		}
+	}
+
+}
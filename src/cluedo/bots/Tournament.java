@@ -0,0 +1,342 @@
+package cluedo.bots;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import cluedo.control.CluedoError;
+import cluedo.metrics.Heatmap;
+
+/**
+ * Plays a league of bot policies against each other on a pool of threads.
+ *  Games are scheduled either round robin, where every group of policies 
+ *  plays together each round, or Swiss, where policies with similar 
+ *  ratings play together. Ratings are Elo, updated as each game finishes,
+ *  and each result is written as a line of CSV as soon as it is known.
+ * 
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class Tournament {
+	
+	public static final double INITIAL_RATING = 1500;
+	public static final double K_FACTOR = 24;
+	
+	private final String boardFile;
+	private final List<String> policies;
+	private final int seats;
+	private final long timeoutMillis;
+	private final Writer results;
+	private final ExecutorService pool;
+	private final Map<String, Double> ratings = new LinkedHashMap<String, Double>();
+	private final Random random = new Random();
+	private int gamesPlayed = 0;
+	private Heatmap heatmap; // counts every game, may be null
+	
+	/**
+	 * Creates a tournament.
+	 * @param boardFile
+	 * @param policies the names of the bot policies taking part
+	 * @param seats the number of bots in each game, three to six
+	 * @param threads the number of games played at once
+	 * @param timeoutMillis the longest a single game may take
+	 * @param results where the CSV results are written, may be null
+	 */
+	public Tournament(String boardFile, List<String> policies, int seats, int threads, 
+			long timeoutMillis, Writer results) throws IOException {
+		if(seats < 3 || seats > 6)
+			throw new CluedoError("Games need three to six seats");
+		if(policies == null || policies.isEmpty())
+			throw new CluedoError("No bot policies given");
+		for(String policy : policies){
+			Bots.create(policy, random); // checks the policy exists
+			ratings.put(policy, INITIAL_RATING);
+		}
+		this.boardFile = boardFile;
+		this.policies = new ArrayList<String>(ratings.keySet()); // without repeats
+		this.seats = seats;
+		this.timeoutMillis = timeoutMillis;
+		this.results = results;
+		this.pool = Executors.newFixedThreadPool(threads);
+		if(results != null){
+			results.write("game,round,policies,winner,turns,millis,timed_out\n");
+			results.flush();
+		}
+	}
+	
+	/**
+	 * Plays a number of round robin rounds. In each round every group of
+	 *  policies plays one game, with the seat order turned each round.
+	 * @param rounds
+	 */
+	public void roundRobin(int rounds) throws IOException {
+		List<List<String>> groups = new ArrayList<List<String>>();
+		combinations(Math.min(seats, policies.size()), 0, new ArrayList<String>(), groups);
+		List<Match> matches = new ArrayList<Match>();
+		for(int round = 0; round < rounds; round++){
+			for(List<String> group : groups){
+				List<String> lineup = fill(group);
+				Collections.rotate(lineup, round);
+				matches.add(new Match(round, lineup));
+			}
+		}
+		play(matches);
+	}
+	
+	/**
+	 * Plays a number of Swiss rounds. Before each round the policies are
+	 *  ordered by rating and split into games of neighbouring policies.
+	 * @param rounds
+	 */
+	public void swiss(int rounds) throws IOException {
+		for(int round = 0; round < rounds; round++){
+			List<String> order = new ArrayList<String>(policies);
+			Collections.shuffle(order, random); // breaks ties between equal ratings
+			Collections.sort(order, new Comparator<String>() {
+				public int compare(String a, String b) {
+					return Double.compare(ratings.get(b), ratings.get(a));
+				}
+			});
+			List<Match> matches = new ArrayList<Match>();
+			for(int i = 0; i < order.size(); i += seats){
+				List<String> group = order.subList(i, Math.min(i + seats, order.size()));
+				// a short last group is joined to the one before if there is room
+				if(group.size() < 3 && !matches.isEmpty() 
+						&& matches.get(matches.size() - 1).lineup.size() + group.size() <= 6){
+					matches.get(matches.size() - 1).lineup.addAll(group);
+					continue;
+				}
+				matches.add(new Match(round, fill(group)));
+			}
+			play(matches);
+		}
+	}
+	
+	/**
+	 * Counts every game played from now on into a heatmap of the board.
+	 * @param heatmap may be null to stop counting
+	 */
+	public void setHeatmap(Heatmap heatmap) {
+		if(heatmap != null && !heatmap.boardFile().equals(boardFile))
+			throw new CluedoError("Heatmap is not for board " + boardFile);
+		this.heatmap = heatmap;
+	}
+	
+	/**
+	 * Returns the current rating of each policy.
+	 * @return
+	 */
+	public Map<String, Double> ratings() {
+		return new LinkedHashMap<String, Double>(ratings);
+	}
+	
+	/**
+	 * Stops the worker threads once all games are finished.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+	
+	/**
+	 * Plays the given games on the pool, rating and recording each result 
+	 *  as it finishes.
+	 * @param matches
+	 */
+	private void play(List<Match> matches) throws IOException {
+		CompletionService<Match> done = new ExecutorCompletionService<Match>(pool);
+		for(final Match m : matches){
+			done.submit(new Callable<Match>() {
+				public Match call() {
+					m.play();
+					return m;
+				}
+			});
+		}
+		for(int i = 0; i < matches.size(); i++){
+			Match m;
+			try {
+				m = done.take().get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CluedoError("Tournament interrupted");
+			} catch (ExecutionException e) {
+				throw new CluedoError("Game failed: " + e.getCause());
+			}
+			rate(m);
+			record(m);
+		}
+	}
+	
+	/**
+	 * Updates the Elo ratings after a game. The winner is counted as beating
+	 *  every other seat, and an unsolved game as a draw between all seats.
+	 * @param m
+	 */
+	private void rate(Match m) {
+		if(m.result.timedOut())
+			return;
+		List<String> lineup = m.lineup;
+		int winner = m.result.winner();
+		Map<String, Double> change = new HashMap<String, Double>();
+		double k = K_FACTOR / (lineup.size() - 1);
+		for(int a = 0; a < lineup.size(); a++){
+			for(int b = a + 1; b < lineup.size(); b++){
+				String pa = lineup.get(a);
+				String pb = lineup.get(b);
+				if(pa.equals(pb))
+					continue; // a policy does not play itself
+				double expected = 1 / (1 + Math.pow(10, (ratings.get(pb) - ratings.get(pa)) / 400));
+				double score = winner == a ? 1 : winner == b ? 0 : 0.5;
+				if(winner >= 0 && winner != a && winner != b)
+					continue; // two losers tell us nothing about each other
+				double delta = k * (score - expected);
+				add(change, pa, delta);
+				add(change, pb, -delta);
+			}
+		}
+		for(Map.Entry<String, Double> e : change.entrySet()){
+			ratings.put(e.getKey(), ratings.get(e.getKey()) + e.getValue());
+		}
+	}
+	
+	/**
+	 * Writes the result of a game as a line of CSV.
+	 * @param m
+	 */
+	private void record(Match m) throws IOException {
+		gamesPlayed++;
+		if(results == null)
+			return;
+		StringBuilder line = new StringBuilder();
+		line.append(gamesPlayed).append(',').append(m.round).append(',');
+		for(int i = 0; i < m.lineup.size(); i++){
+			if(i > 0)
+				line.append(';');
+			line.append(m.lineup.get(i));
+		}
+		line.append(',').append(m.result.winner() >= 0 ? m.lineup.get(m.result.winner()) : "")
+			.append(',').append(m.result.turns())
+			.append(',').append(m.millis)
+			.append(',').append(m.result.timedOut())
+			.append('\n');
+		results.write(line.toString());
+		results.flush();
+	}
+	
+	/**
+	 * Fills a group of policies up to the number of seats by repeating them.
+	 */
+	private List<String> fill(List<String> group) {
+		List<String> lineup = new ArrayList<String>(group);
+		for(int i = 0; lineup.size() < seats; i++){
+			lineup.add(group.get(i % group.size()));
+		}
+		return lineup;
+	}
+	
+	/**
+	 * Collects every combination of the given size of the policies.
+	 */
+	private void combinations(int size, int start, List<String> current, List<List<String>> out) {
+		if(current.size() == size){
+			out.add(new ArrayList<String>(current));
+			return;
+		}
+		for(int i = start; i < policies.size(); i++){
+			current.add(policies.get(i));
+			combinations(size, i + 1, current, out);
+			current.remove(current.size() - 1);
+		}
+	}
+	
+	private static void add(Map<String, Double> map, String key, double value) {
+		Double old = map.get(key);
+		map.put(key, old == null ? value : old + value);
+	}
+	
+	/**
+	 * A single game of the tournament.
+	 */
+	private class Match {
+		final int round;
+		final List<String> lineup;
+		BotGame.Result result;
+		long millis;
+		
+		Match(int round, List<String> lineup) {
+			this.round = round;
+			this.lineup = lineup;
+		}
+		
+		void play() {
+			long start = System.nanoTime();
+			Random r = new Random();
+			List<Bot> bots = new ArrayList<Bot>();
+			for(String policy : lineup){
+				bots.add(Bots.create(policy, r));
+			}
+			BotGame game = new BotGame(boardFile, bots, r);
+			if(heatmap != null)
+				game.game().addListener(heatmap.recorder(game.game()));
+			result = game.play(start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+			millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		// check number of arguments
+		if (args.length < 2) {
+			System.out.println("command: java Tournament gameBoard.txt policy,policy,... " 
+					+ "[seats] [rounds] [roundrobin|swiss] [results.csv] [heatmap.csv]");
+			System.out.println("policies: " + Bots.policies());
+			System.exit(1);
+		}
+		String boardFile = args[0];
+		List<String> policies = Arrays.asList(args[1].split(","));
+		int seats = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+		int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+		boolean swiss = args.length > 4 && args[4].equals("swiss");
+		Writer out = args.length > 5 ? new FileWriter(args[5]) : new OutputStreamWriter(System.out);
+		
+		int threads = Runtime.getRuntime().availableProcessors();
+		Tournament t = new Tournament(boardFile, policies, seats, threads, 10000, out);
+		Heatmap heatmap = args.length > 6 ? new Heatmap(boardFile) : null;
+		t.setHeatmap(heatmap);
+		long start = System.nanoTime();
+		if(swiss)
+			t.swiss(rounds);
+		else
+			t.roundRobin(rounds);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		t.shutdown();
+		out.flush();
+		if(heatmap != null){
+			Writer map = new FileWriter(args[6]);
+			heatmap.write(map);
+			map.close();
+		}
+		
+		System.err.println(String.format("%d games in %.2f s on %d threads (%.1f games/sec)", 
+				t.gamesPlayed, seconds, threads, t.gamesPlayed / seconds));
+		for(Map.Entry<String, Double> e : t.ratings().entrySet()){
+			System.err.println(String.format("%-12s %7.1f", e.getKey(), e.getValue()));
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package cluedo.control;
+
+import cluedo.board.Direction;
+import cluedo.control.CluedoGame.Room;
+import cluedo.tokens.CharacterToken;
+import cluedo.tokens.GameToken;
+
+/**
+ * Something a client asks to be done to a game, such as a step or a move
+ *  into a room. Actions are queued on a {@link GameLoop}, which checks and
+ *  applies them one at a time on its own thread.
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public interface Action {
+
+	/**
+	 * Returns true if the action can be applied to the game as it stands.
+	 * @param game
+	 * @return
+	 */
+	public boolean valid(CluedoGame game);
+
+	/**
+	 * Applies the action to the game. Only called when valid.
+	 * @param game
+	 */
+	public void apply(CluedoGame game);
+
+	/**
+	 * Returns an action moving a player one step in a direction.
+	 * @param player
+	 * @param dir
+	 * @return
+	 */
+	public static Action step(final CharacterToken player, final Direction dir) {
+		if(player == null || dir == null)
+			throw new CluedoError("Null parameters: step()");
+		return new Action() {
+			public boolean valid(CluedoGame game) {
+				return game.positions().holds(player) && game.board().canMove(player, dir);
+			}
+			public void apply(CluedoGame game) {
+				game.board().move(player, dir);
+			}
+		};
+	}
+
+	/**
+	 * Returns an action moving a token into a room, as when a suggestion is made.
+	 * @param token
+	 * @param room
+	 * @return
+	 */
+	public static Action intoRoom(final GameToken token, final Room room) {
+		if(token == null || room == null)
+			throw new CluedoError("Null parameters: intoRoom()");
+		return new Action() {
+			public boolean valid(CluedoGame game) {
+				return game.positions().holds(token) && game.board().hasFreeSquare(room);
+			}
+			public void apply(CluedoGame game) {
+				game.board().moveIntoRoom(token, room);
+			}
+		};
+	}
+}
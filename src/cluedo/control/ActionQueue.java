@@ -0,0 +1,84 @@
+package cluedo.control;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A queue of actions which any number of threads may add to and one thread
+ *  takes from, without locks. Each action added is put at the tail by
+ *  swapping the tail for it in one atomic step, then linked on from the
+ *  one before, so adding never waits on other threads adding and actions
+ *  from each thread are taken in the order that thread added them.
+ *
+ * For a moment after the swap the new action is at the tail but not yet
+ *  linked on, so the taking thread may find an action is coming but not
+ *  there; it waits for the link rather than miss it.
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class ActionQueue {
+
+	private final AtomicReference<Node> tail;
+	private Node head; // the last node taken, only used by the taking thread
+
+	/**
+	 * Creates an empty queue.
+	 */
+	public ActionQueue() {
+		this.head = new Node(null);
+		this.tail = new AtomicReference<Node>(head);
+	}
+
+	/**
+	 * Adds an action at the tail. Can be called from any thread.
+	 * @param action
+	 */
+	public void offer(Action action) {
+		if(action == null)
+			throw new CluedoError("Null parameters: offer()");
+		Node node = new Node(action);
+		Node before = tail.getAndSet(node);
+		before.next = node;
+	}
+
+	/**
+	 * Takes actions from the head into an array, as many as there are
+	 *  up to its length, returning how many were taken. Must only be
+	 *  called by one thread.
+	 * @param batch
+	 * @return
+	 */
+	public int drain(Action[] batch) {
+		int n = 0;
+		while(n < batch.length && head != tail.get()){
+			Node next = head.next;
+			while(next == null){
+				// added but not yet linked on
+				Thread.yield();
+				next = head.next;
+			}
+			batch[n++] = next.action;
+			next.action = null; // the new head holds nothing
+			head = next;
+		}
+		return n;
+	}
+
+	/**
+	 * Returns true if there is nothing to take. Must only be called by
+	 *  the taking thread.
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return head == tail.get();
+	}
+
+	private static class Node {
+		Action action;
+		volatile Node next;
+
+		Node(Action action) {
+			this.action = action;
+		}
+	}
+}
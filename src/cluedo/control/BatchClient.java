@@ -0,0 +1,73 @@
+package cluedo.control;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+import cluedo.metrics.Metrics;
+
+/**
+ * Plays games through the text client from a script rather than a player.
+ *  Each game in the script is played in turn, the whole script can be 
+ *  repeated, and the throughput is reported once every game is finished.
+ * 
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class BatchClient {
+
+	public static void main(String[] args) throws IOException {
+		// check number of arguments
+		if (args.length < 2 || args.length > 3) {
+			System.out.println("command: java BatchClient gameBoard.txt script.txt [repeat]");
+			System.exit(1);
+		}
+		String boardName = args[0];
+		File script = new File(args[1]);
+		if (!script.exists()) {
+			System.out.println(args[1] + " does not exist.");
+			System.exit(2);
+		}
+		int repeat = 1;
+		try {
+			if (args.length == 3)
+				repeat = Integer.parseInt(args[2]);
+		} catch (NumberFormatException e) {
+			System.out.println("Invalid repeat count: " + args[2]);
+			System.exit(3);
+		}
+		
+		// games are played without displaying anything
+		TextClient client = new TextClient();
+		client.setOutput(new NullSink());
+		
+		int games = 0;
+		long turns = 0;
+		long start = System.nanoTime();
+		for(int i = 0; i < repeat; i++){
+			ScriptReader reader = new ScriptReader(new FileReader(script));
+			client.setInput(reader);
+			try {
+				while(reader.nextGame()){
+					turns += TextClient.playGame(boardName);
+					games++;
+				}
+			} catch (CluedoError e) {
+				System.out.println("Game " + (games + 1) + " stopped at line " 
+						+ reader.lineNumber() + " of " + args[1] + ": " + e.getMessage());
+				System.exit(4);
+			} finally {
+				reader.close();
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		
+		System.out.println("games played: " + games);
+		System.out.println("turns played: " + turns);
+		System.out.println(String.format("elapsed: %.3f s", seconds));
+		System.out.println(String.format("games/sec: %.1f", games / seconds));
+		System.out.println(String.format("turns/sec: %.1f", turns / seconds));
+		System.out.println();
+		System.out.print(Metrics.summary());
+	}
+}
@@ -0,0 +1,79 @@
+package cluedo.control;
+
+import java.io.PrintStream;
+
+/**
+ * An output sink which collects text in a buffer and writes it out
+ *  in one go when flushed. Without a stream the text is simply kept
+ *  in memory, which is useful for tests and headless games.
+ * 
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class BufferedSink implements OutputSink {
+
+	private final PrintStream stream; // may be null for an in-memory sink
+	private final StringBuilder buffer = new StringBuilder(4096);
+	
+	/**
+	 * Creates a sink which writes to the given stream when flushed.
+	 * @param stream
+	 */
+	public BufferedSink(PrintStream stream) {
+		if(stream == null)
+			throw new CluedoError("Null stream: BufferedSink()");
+		this.stream = stream;
+	}
+	
+	/**
+	 * Creates a sink which keeps all text in memory.
+	 */
+	public BufferedSink() {
+		this.stream = null;
+	}
+
+	@Override
+	public void print(String s) {
+		buffer.append(s);
+	}
+
+	@Override
+	public void print(char c) {
+		buffer.append(c);
+	}
+
+	@Override
+	public void println(String s) {
+		buffer.append(s).append('\n');
+	}
+
+	@Override
+	public void println() {
+		buffer.append('\n');
+	}
+
+	@Override
+	public void flush() {
+		// in-memory sinks keep their text until cleared
+		if(stream == null || buffer.length() == 0)
+			return;
+		stream.print(buffer);
+		stream.flush();
+		buffer.setLength(0);
+	}
+	
+	/**
+	 * Discards any text held by this sink.
+	 */
+	public void clear(){
+		buffer.setLength(0);
+	}
+	
+	/**
+	 * Returns the text currently held by this sink.
+	 */
+	@Override
+	public String toString(){
+		return buffer.toString();
+	}
+}
@@ -4,10 +4,15 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import cluedo.board.Board;
+import cluedo.events.GameEventPublisher;
+import cluedo.metrics.GameCreatedEvent;
 import cluedo.tokens.Card;
 import cluedo.tokens.CharacterToken;
+import cluedo.tokens.PositionStore;
 import cluedo.tokens.WeaponToken;
 
 /**
@@ -18,18 +23,48 @@ import cluedo.tokens.WeaponToken;
  */
 public class CluedoGame {
 	
+	// card ids, shared by all three kinds of card
+	public static final int FIRST_WEAPON = 6;
+	public static final int FIRST_ROOM = 12;
+	public static final int NUM_CARDS = 21;
+	private static final Card[] CARDS_BY_ID = new Card[NUM_CARDS];
 	
+	private static final AtomicLong nextId = new AtomicLong(); // used to give each game an id
+	private static final NameIndex<Card> CARDS = new NameIndex<Card>(32); // every card by name
+	static {
+		List<Card> cards = new ArrayList<Card>();
+		cards.addAll(Arrays.asList(Character.values()));
+		cards.addAll(Arrays.asList(Weapon.values()));
+		cards.addAll(Arrays.asList(Room.values()));
+		for(Card c : cards){
+			CARDS.put(c.toString(), c);
+			CARDS_BY_ID[c.id()] = c;
+		}
+	}
+	
+	private final long id = nextId.incrementAndGet(); // unique id of this game
 	private int numberOfPlayers; // number of players in game
 	private List<CharacterToken> activePlayers; // players still active in game
-	private static List<WeaponToken> weapons; // all weapons in game
-	private static List<Room> rooms; // all rooms in the game
-	private static List<Character> characters;
+	private List<WeaponToken> weapons; // all weapons in game
+	private List<Room> rooms; // all rooms in the game
+	private List<Character> characters;
+	
+	private List<Card> deck; // represents the deck of all cards
+	private List<Card> unusedCards; // unused cards left after deal
+	private Card[] solution; // random game solution
+	
+	private Board gameBoard; // the game board
+	private String boardFile; // the file the board was read from
+	private int turn; // index into players() of whose turn it is
 	
-	private static List<Card> deck; // represents the deck of all cards
-	private static List<Card> unusedCards; // unused cards left after deal
-	private static Card[] solution; // random game solution
+	private volatile NameIndex<CharacterToken> playersByName; // players found by name, made when first needed
+	private volatile RefutationEngine refutations; // made when first needed, once the cards are dealt
+	private GameEventPublisher events; // made when first subscribed to
+	private final PositionStore positions = new PositionStore(); // where every token is
+	private volatile Dice dice = Dice.ONE_D6; // rolled to move, not saved with the game
 	
-	private static Board gameBoard; // the game board
+	private final List<GameListener> listeners = new CopyOnWriteArrayList<GameListener>(); // told of every change
+	private final SpectatorChannel spectators = new SpectatorChannel(this); // broadcasts changes to viewers
 
 	/**
 	 * Creates a new cluedo game and deals cards to the appropriate players.
@@ -38,18 +73,83 @@ public class CluedoGame {
 	 * @param boardFile
 	 */
 	public CluedoGame(int nPlayers, List<CharacterToken> players, String boardFile) {
+		GameCreatedEvent event = new GameCreatedEvent();
+		event.begin();
 		if(boardFile==null|boardFile.length()<1)
 			throw new CluedoError("Invalid board arguments");
 		this.numberOfPlayers = nPlayers;
 		this.activePlayers = players;
-		CluedoGame.characters = getCharacters();
-		CluedoGame.weapons = getWeapons();
-		CluedoGame.rooms = getRooms();
-		CluedoGame.solution = getSolution();
-		CluedoGame.gameBoard = new Board(this, boardFile);
-		CluedoGame.deck = getDeck();
+		addListener(spectators);
+		this.characters = getCharacters();
+		this.weapons = getWeapons();
+		bindPositions();
+		this.rooms = getRooms();
+		this.solution = getSolution();
+		this.boardFile = boardFile;
+		this.gameBoard = new Board(this, boardFile);
+		this.deck = getDeck();
 		dealCards();
 		placeWeapons();
+		event.gameId = id;
+		event.players = nPlayers;
+		event.commit();
+	}
+	
+	/**
+	 * Recreates a saved game from its players and cards, without dealing.
+	 *  The players' hands are already filled in, and the tokens are left
+	 *  on their starting squares for the caller to move back into place.
+	 * @param nPlayers
+	 * @param players
+	 * @param boardFile
+	 * @param solution
+	 * @param unusedCards
+	 * @param deck
+	 */
+	CluedoGame(int nPlayers, List<CharacterToken> players, String boardFile, 
+			Card[] solution, List<Card> unusedCards, List<Card> deck) {
+		if(boardFile==null||boardFile.length()<1)
+			throw new CluedoError("Invalid board arguments");
+		this.numberOfPlayers = nPlayers;
+		this.activePlayers = players;
+		addListener(spectators);
+		this.characters = getCharacters();
+		this.weapons = getWeapons();
+		bindPositions();
+		this.rooms = getRooms();
+		this.solution = solution;
+		this.boardFile = boardFile;
+		this.gameBoard = new Board(this, boardFile);
+		this.deck = deck;
+		this.unusedCards = unusedCards;
+	}
+	
+	/**
+	 * Returns the store holding the position of every token in this game.
+	 * @return
+	 */
+	public PositionStore positions(){
+		return positions;
+	}
+	
+	/**
+	 * Keeps the position of every character and weapon in this game's store.
+	 */
+	private void bindPositions(){
+		for(CharacterToken c : activePlayers){
+			positions.bind(c);
+		}
+		for(WeaponToken w : weapons){
+			positions.bind(w);
+		}
+	}
+	
+	/**
+	 * Returns the unique id of this game.
+	 * @return
+	 */
+	public long id(){
+		return id;
 	}
 
 	/**
@@ -72,7 +172,7 @@ public class CluedoGame {
 	 * Returns the list of all weapons.
 	 * @return
 	 */
-	public static List<WeaponToken> weapons(){
+	public List<WeaponToken> weapons(){
 		return weapons;
 	}
 	
@@ -80,7 +180,7 @@ public class CluedoGame {
 	 * Returns the list of all rooms.
 	 * @return
 	 */
-	public static List<Room> rooms(){
+	public List<Room> rooms(){
 		return rooms;
 	}
 	
@@ -88,7 +188,7 @@ public class CluedoGame {
 	 * Returns the list of all characters.
 	 * @return
 	 */
-	public static List<Character> characters(){
+	public List<Character> characters(){
 		return characters;
 	}
 	
@@ -96,7 +196,7 @@ public class CluedoGame {
 	 * Returns the list of all cards in the deck.
 	 * @return
 	 */
-	public static List<Card> deck(){
+	public List<Card> deck(){
 		return deck;
 	}
 	
@@ -104,10 +204,103 @@ public class CluedoGame {
 	 * Retur the board.
 	 * @return
 	 */
-	public static Board board(){
+	public Board board(){
 		return gameBoard;
 	}
 	
+	/**
+	 * Returns the name of the file the board was read from.
+	 * @return
+	 */
+	public String boardFile(){
+		return boardFile;
+	}
+	
+	/**
+	 * Returns the index in players() of the player whose turn it is.
+	 * @return
+	 */
+	public int turn(){
+		return turn;
+	}
+	
+	/**
+	 * Sets the index in players() of the player whose turn it is.
+	 * @param index
+	 */
+	public void setTurn(int index){
+		this.turn = index;
+	}
+	
+	/**
+	 * Returns the spectator channel of this game.
+	 * @return
+	 */
+	public SpectatorChannel spectators(){
+		return spectators;
+	}
+	
+	/**
+	 * Adds a listener to be told of changes to this game.
+	 * @param listener
+	 */
+	public void addListener(GameListener listener){
+		if(listener == null)
+			throw new CluedoError("Null parameters: addListener()");
+		listeners.add(listener);
+	}
+	
+	/**
+	 * Stops a listener being told of changes to this game.
+	 * @param listener
+	 */
+	public void removeListener(GameListener listener){
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * Returns the listeners of this game.
+	 * @return
+	 */
+	public List<GameListener> listeners(){
+		return listeners;
+	}
+	
+	/**
+	 * Tells the listeners a player has rolled the dice.
+	 * @param player
+	 * @param roll
+	 */
+	public void diceRolled(CharacterToken player, int roll){
+		for(GameListener listener : listeners){
+			listener.diceRolled(player, roll);
+		}
+	}
+	
+	/**
+	 * Tells the listeners a suggestion has been made.
+	 * @param suggester
+	 * @param suggestion
+	 * @param refuted
+	 */
+	public void suggestionMade(CharacterToken suggester, Card[] suggestion, boolean refuted){
+		for(GameListener listener : listeners){
+			listener.suggestionMade(suggester, suggestion, refuted);
+		}
+	}
+	
+	/**
+	 * Tells the listeners an accusation has been made.
+	 * @param accuser
+	 * @param accusation
+	 * @param correct
+	 */
+	public void accusationMade(CharacterToken accuser, Card[] accusation, boolean correct){
+		for(GameListener listener : listeners){
+			listener.accusationMade(accuser, accusation, correct);
+		}
+	}
+	
 	/**
 	 * Returns the list of extra cards.
 	 * @return
@@ -170,12 +363,82 @@ public class CluedoGame {
 	 * @return
 	 */
 	public CharacterToken getCharacter(String name){
-		CharacterToken charToken = null;
-		for(CharacterToken character: activePlayers){
-			if(character.getName().equalsIgnoreCase(name))
-				charToken = character;
+		NameIndex<CharacterToken> index = playersByName;
+		if(index == null){
+			// later players win if two share a name, as the computer players do
+			index = new NameIndex<CharacterToken>(activePlayers.size());
+			for(CharacterToken character: activePlayers){
+				index.put(character.getName(), character);
+			}
+			playersByName = index;
+		}
+		return index.get(name);
+	}
+	
+	/**
+	 * Returns the dice rolled to move in this game.
+	 * @return
+	 */
+	public Dice dice(){
+		return dice;
+	}
+	
+	/**
+	 * Changes the dice rolled to move in this game.
+	 * @param dice
+	 */
+	public void setDice(Dice dice){
+		if(dice == null)
+			throw new CluedoError("Null parameters: setDice()");
+		this.dice = dice;
+	}
+	
+	/**
+	 * Returns the engine which refutes suggestions in this game. Refuters
+	 *  show the first matching card in their hand unless its policy is changed.
+	 * @return
+	 */
+	public RefutationEngine refutations(){
+		RefutationEngine engine = refutations;
+		if(engine == null){
+			engine = new RefutationEngine(activePlayers, RefuterPolicy.HAND_ORDER);
+			refutations = engine;
+		}
+		return engine;
+	}
+	
+	/**
+	 * Returns the stream of events for the changes to this game, adding it to
+	 *  the listeners the first time.
+	 * @return
+	 */
+	public synchronized GameEventPublisher events(){
+		if(events == null){
+			events = new GameEventPublisher(this);
+			addListener(events);
 		}
-		return charToken;
+		return events;
+	}
+	
+	/**
+	 * Returns the character, weapon or room card with a given name,
+	 *  or null if there is none.
+	 * @param name
+	 * @return
+	 */
+	public static Card getCard(String name){
+		return CARDS.get(name);
+	}
+	
+	/**
+	 * Returns the character, weapon or room card with a given id.
+	 * @param id
+	 * @return
+	 */
+	public static Card getCard(int id){
+		if(id < 0 || id >= NUM_CARDS)
+			throw new CluedoError("No card with id " + id);
+		return CARDS_BY_ID[id];
 	}
 
 	/** 
@@ -200,12 +463,9 @@ public class CluedoGame {
 	 * @return
 	 */
 	public WeaponToken getWeapon(String name){
-		WeaponToken weaponToken = null;
-		for(WeaponToken weapon: weapons){
-			if(weapon.getName().equalsIgnoreCase(name))
-				weaponToken = weapon;
-		}
-		return weaponToken;
+		Weapon w = Weapon.parse(name);
+		// the weapon tokens are made in the order of the weapons
+		return w == null ? null : weapons.get(w.ordinal());
 	}
 	
 	/**
@@ -227,12 +487,7 @@ public class CluedoGame {
 	 * 	or null if no match.
 	 */
 	public static Room getRoom(String name){
-		for(Room room : getRooms()){
-			if(room.toString().equalsIgnoreCase(name)){
-				return room;
-			}
-		}
-		return null; // room not found
+		return Room.parse(name);
 	}
 	
 	/**
@@ -285,14 +540,15 @@ public class CluedoGame {
 	private void placeWeapons(){
 		List<Room> hasWeapon = new ArrayList<Room>();
 		// places each weapon in a room
-		for(WeaponToken weapon: getWeapons()){
-			for(Room r: getRooms()){
+		for(WeaponToken weapon: weapons){
+			for(Room r: rooms){
 				// finds a room with no weapon in it
-				if(!hasWeapon.contains(r))
+				if(!hasWeapon.contains(r)){
 					// moves the weapon into that room
 					board().moveIntoRoom(weapon, r);
 					hasWeapon.add(r);
 					break;
+				}
 			}
 		}
 	}
@@ -308,6 +564,15 @@ public class CluedoGame {
 		MRS_PEACOCK,
 		PROFESSOR_PLUM;
 
+		private static final NameIndex<Character> byName = new NameIndex<Character>(values().length);
+		static {
+			for(Character v : values()){
+				byName.put(v.name(), v);
+			}
+		}
+
+		private final String displayName = name().replace('_', ' '); // shown to players
+
 		/**
 		 * Returns a random card.
 		 * @return
@@ -316,9 +581,24 @@ public class CluedoGame {
 			return values()[(int) (Math.random() * values().length)];
 		}
 
+		/**
+		 * Returns the character with a given name, ignoring case and 
+		 *  accepting spaces or underscores, or null if there is none.
+		 * @param name
+		 * @return
+		 */
+		public static Character parse(String name) {
+			return byName.get(name);
+		}
+
+		@Override
+		public int id() {
+			return ordinal();
+		}
+
 		@Override
 		public String toString() {
-			return this.name().replaceAll("_", " ");
+			return displayName;
 		}
 	}
 
@@ -333,6 +613,15 @@ public class CluedoGame {
 		ROPE,
 		SPANNER;
 
+		private static final NameIndex<Weapon> byName = new NameIndex<Weapon>(values().length);
+		static {
+			for(Weapon v : values()){
+				byName.put(v.name(), v);
+			}
+		}
+
+		private final String displayName = name().replace('_', ' '); // shown to players
+
 		/**
 		 * Returns a random weapon.
 		 * @return
@@ -341,9 +630,24 @@ public class CluedoGame {
 			return values()[(int) (Math.random() * values().length)];
 		}
 
+		/**
+		 * Returns the weapon with a given name, ignoring case and 
+		 *  accepting spaces or underscores, or null if there is none.
+		 * @param name
+		 * @return
+		 */
+		public static Weapon parse(String name) {
+			return byName.get(name);
+		}
+
+		@Override
+		public int id() {
+			return FIRST_WEAPON + ordinal();
+		}
+
 		@Override
 		public String toString() {
-			return this.name().replaceAll("_", " ");
+			return displayName;
 		}
 	}
 
@@ -361,6 +665,15 @@ public class CluedoGame {
 		LOUNGE,
 		DINING_ROOM;
 
+		private static final NameIndex<Room> byName = new NameIndex<Room>(values().length);
+		static {
+			for(Room v : values()){
+				byName.put(v.name(), v);
+			}
+		}
+
+		private final String displayName = name().replace('_', ' '); // shown to players
+
 		/**
 		 * Returns a random room.
 		 * @return
@@ -369,9 +682,24 @@ public class CluedoGame {
 			return values()[(int) (Math.random() * values().length)];
 		}
 
+		/**
+		 * Returns the room with a given name, ignoring case and 
+		 *  accepting spaces or underscores, or null if there is none.
+		 * @param name
+		 * @return
+		 */
+		public static Room parse(String name) {
+			return byName.get(name);
+		}
+
+		@Override
+		public int id() {
+			return FIRST_ROOM + ordinal();
+		}
+
 		@Override
 		public String toString() {
-			return this.name().replaceAll("_", " ");
+			return displayName;
 		}
 	}
 }
@@ -0,0 +1,181 @@
+package cluedo.control;
+
+import java.util.Random;
+
+/**
+ * The dice rolled to move, as a table of the chance of each total.
+ *  A roll picks from a table made when the dice are created, holding
+ *  each total as many times as its weight, so rolling takes one random
+ *  number however many dice there are.
+ *
+ * Dice are written as "1d6" for one six sided die, "2d6" for the two dice
+ *  of standard Cluedo, and so on, or as the weight of each total from 0
+ *  upwards, so "0,1,1,1" rolls 1, 2 or 3 equally often.
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class Dice {
+
+	public static final Dice ONE_D6 = dice(1, 6);
+	public static final Dice TWO_D6 = dice(2, 6);
+	private static final int MAX_TABLE = 1 << 16; // most entries in a roll table
+
+	private final String name;
+	private final double[] odds; // chance of each total
+	private final double[] atLeast; // chance of each total or more
+	private final int[] table; // totals, each as many times as its weight
+	private final int min;
+
+	/**
+	 * Creates dice which roll each total with the given weight.
+	 */
+	private Dice(String name, long[] weights) {
+		this.name = name;
+		long sum = 0, gcd = 0;
+		for(long w : weights){
+			if(w < 0)
+				throw new CluedoError("Dice weights cannot be negative: " + name);
+			sum += w;
+			gcd = gcd(gcd, w);
+		}
+		if(sum == 0)
+			throw new CluedoError("Dice must roll something: " + name);
+		if(sum / gcd > MAX_TABLE)
+			throw new CluedoError("Too many outcomes for dice: " + name);
+		this.odds = new double[weights.length];
+		this.atLeast = new double[weights.length + 1];
+		this.table = new int[(int)(sum / gcd)];
+		int next = 0, least = -1;
+		for(int total = 0; total < weights.length; total++){
+			odds[total] = (double)weights[total] / sum;
+			for(long k = weights[total] / gcd; k > 0; k--){
+				table[next++] = total;
+			}
+			if(least < 0 && weights[total] > 0)
+				least = total;
+		}
+		for(int total = weights.length - 1; total >= 0; total--){
+			atLeast[total] = atLeast[total + 1] + odds[total];
+		}
+		this.min = least;
+	}
+
+	/**
+	 * Returns a number of dice with a given number of sides each.
+	 * @param count
+	 * @param sides
+	 * @return
+	 */
+	public static Dice dice(int count, int sides) {
+		if(count < 1 || sides < 1)
+			throw new CluedoError("Invalid dice: " + count + "d" + sides);
+		// add one die at a time to the ways of rolling each total
+		long[] ways = { 1 };
+		for(int d = 0; d < count; d++){
+			long[] next = new long[ways.length + sides];
+			for(int total = 0; total < ways.length; total++){
+				for(int face = 1; face <= sides; face++){
+					next[total + face] += ways[total];
+				}
+			}
+			ways = next;
+		}
+		return new Dice(count + "d" + sides, ways);
+	}
+
+	/**
+	 * Returns dice which roll each total, from 0 upwards, with a given weight.
+	 * @param weights
+	 * @return
+	 */
+	public static Dice weighted(int... weights) {
+		if(weights == null || weights.length == 0)
+			throw new CluedoError("Null parameters: weighted()");
+		long[] w = new long[weights.length];
+		StringBuilder name = new StringBuilder();
+		for(int i = 0; i < weights.length; i++){
+			w[i] = weights[i];
+			name.append(i == 0 ? "" : ",").append(weights[i]);
+		}
+		return new Dice(name.toString(), w);
+	}
+
+	/**
+	 * Returns the dice described by a string such as "2d6" or "0,1,1,1".
+	 * @param mode
+	 * @return
+	 */
+	public static Dice parse(String mode) {
+		if(mode == null)
+			throw new CluedoError("Null parameters: parse()");
+		String m = mode.trim().toLowerCase();
+		try {
+			int d = m.indexOf('d');
+			if(d >= 0)
+				return dice(d == 0 ? 1 : Integer.parseInt(m.substring(0, d)), Integer.parseInt(m.substring(d + 1)));
+			String[] parts = m.split(",");
+			int[] weights = new int[parts.length];
+			for(int i = 0; i < parts.length; i++){
+				weights[i] = Integer.parseInt(parts[i].trim());
+			}
+			return weighted(weights);
+		} catch(NumberFormatException e) {
+			throw new CluedoError("Unknown dice: " + mode);
+		}
+	}
+
+	/**
+	 * Rolls the dice.
+	 * @param random
+	 * @return
+	 */
+	public int roll(Random random) {
+		return table[random.nextInt(table.length)];
+	}
+
+	/**
+	 * Returns the chance of rolling a given total.
+	 * @param total
+	 * @return
+	 */
+	public double probability(int total) {
+		return total < 0 || total >= odds.length ? 0 : odds[total];
+	}
+
+	/**
+	 * Returns the chance of rolling a given total or more.
+	 * @param total
+	 * @return
+	 */
+	public double atLeast(int total) {
+		if(total <= 0)
+			return 1;
+		return total >= atLeast.length ? 0 : atLeast[total];
+	}
+
+	/**
+	 * Returns the lowest total which can be rolled.
+	 * @return
+	 */
+	public int min() {
+		return min;
+	}
+
+	/**
+	 * Returns the highest total which can be rolled.
+	 * @return
+	 */
+	public int max() {
+		return table[table.length - 1];
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+	private static long gcd(long a, long b) {
+		return b == 0 ? a : gcd(b, a % b);
+	}
+}
@@ -0,0 +1,237 @@
+package cluedo.control;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import cluedo.metrics.Metrics;
+
+/**
+ * Keeps recently used games in memory within a heap budget, and saves the
+ *  least recently used ones to a file on disk when the budget is exceeded.
+ *  A saved game is restored the next time it is asked for.
+ *
+ * Games are kept under the id they had when first put in the cache,
+ *  as a restored game is given a new id. Callers should get() a game before
+ *  each action rather than hold on to it, as changes made to a game after
+ *  it has been saved to disk are lost.
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class GameCache implements Closeable {
+
+	public static final long GAME_BYTES = 48 * 1024; // rough heap used by a game with its 625 tiles
+
+	private final int capacity; // games kept in memory
+	private final LinkedHashMap<Long, CluedoGame> resident = new LinkedHashMap<Long, CluedoGame>(16, 0.75f, true);
+	private final Map<Long, long[]> saved = new HashMap<Long, long[]>(); // key -> {offset, length}
+	private final File file;
+	private RandomAccessFile log; // append only, until compacted
+	private long end; // length of the log
+	private long liveBytes; // bytes of the log still in use
+
+	/**
+	 * Creates a cache which keeps as many games in memory as fit in
+	 *  a heap budget, saving the rest to a file.
+	 * @param budgetBytes
+	 * @param file
+	 */
+	public GameCache(long budgetBytes, File file) {
+		if(file == null || budgetBytes < GAME_BYTES)
+			throw new CluedoError("Game cache needs a file and room for at least one game");
+		this.capacity = (int)Math.min(Integer.MAX_VALUE, budgetBytes / GAME_BYTES);
+		this.file = file;
+		try {
+			this.log = new RandomAccessFile(file, "rw");
+			log.setLength(0);
+		} catch(IOException e) {
+			throw new CluedoError("Cannot open game cache file: " + file);
+		}
+	}
+
+	/**
+	 * Adds a game to the cache, returning the key to get it back with.
+	 * @param game
+	 * @return
+	 */
+	public synchronized long put(CluedoGame game) {
+		if(game == null)
+			throw new CluedoError("Null parameters: put()");
+		long key = game.id();
+		drop(key);
+		resident.put(key, game);
+		evict();
+		return key;
+	}
+
+	/**
+	 * Returns the game with a given key, restoring it from disk if needed,
+	 *  or null if there is no such game.
+	 * @param key
+	 * @return
+	 */
+	public synchronized CluedoGame get(long key) {
+		CluedoGame game = resident.get(key);
+		if(game != null){
+			Metrics.increment(Metrics.CACHE_HITS);
+			return game;
+		}
+		long[] entry = saved.get(key);
+		if(entry == null)
+			return null;
+		Metrics.increment(Metrics.CACHE_MISSES);
+		long start = Metrics.now();
+		byte[] data = new byte[(int)entry[1]];
+		try {
+			log.seek(entry[0]);
+			log.readFully(data);
+		} catch(IOException e) {
+			throw new CluedoError("Cannot read game cache file: " + e.getMessage());
+		}
+		game = GameCodec.decode(data);
+		// only forget the saved copy once the game is back, so a failed read loses nothing
+		saved.remove(key);
+		liveBytes -= data.length;
+		Metrics.CACHE_RESTORE.recordSince(start);
+		resident.put(key, game);
+		evict();
+		return game;
+	}
+
+	/**
+	 * Removes a game, such as one which has finished.
+	 * @param key
+	 */
+	public synchronized void remove(long key) {
+		drop(key);
+	}
+
+	/**
+	 * Returns the number of games in the cache.
+	 * @return
+	 */
+	public synchronized int size() {
+		return resident.size() + saved.size();
+	}
+
+	/**
+	 * Returns the most games which are held in memory.
+	 * @return
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns the number of games held in memory.
+	 * @return
+	 */
+	public synchronized int resident() {
+		return resident.size();
+	}
+
+	/**
+	 * Returns the size of the file on disk.
+	 * @return
+	 */
+	public synchronized long fileBytes() {
+		return end;
+	}
+
+	@Override
+	public synchronized void close() {
+		try {
+			log.close();
+		} catch(IOException e) {
+			// nothing more to do
+		}
+		file.delete();
+	}
+
+	/**
+	 * Forgets a game, wherever it is kept.
+	 */
+	private void drop(long key) {
+		resident.remove(key);
+		long[] entry = saved.remove(key);
+		if(entry != null)
+			liveBytes -= entry[1];
+	}
+
+	/**
+	 * Saves the least recently used games to disk until the rest fit in memory.
+	 */
+	private void evict() {
+		if(resident.size() <= capacity)
+			return;
+		try {
+			Iterator<Map.Entry<Long, CluedoGame>> it = resident.entrySet().iterator();
+			while(resident.size() > capacity){
+				Map.Entry<Long, CluedoGame> eldest = it.next();
+				byte[] data = GameCodec.encode(eldest.getValue());
+				log.seek(end);
+				log.write(data);
+				saved.put(eldest.getKey(), new long[]{ end, data.length });
+				end += data.length;
+				liveBytes += data.length;
+				it.remove();
+				Metrics.increment(Metrics.CACHE_EVICTIONS);
+			}
+			// rewrite the file once most of it is games which have since been restored
+			if(end > 1 << 20 && liveBytes < end / 2)
+				compact();
+		} catch(IOException e) {
+			throw new CluedoError("Cannot write game cache file: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Copies the games still on disk to the start of a new file, which then
+	 *  replaces the log. If anything fails the log and the places of the
+	 *  games in it are left as they were.
+	 */
+	private void compact() throws IOException {
+		File temp = new File(file.getPath() + ".compact");
+		Map<Long, long[]> moved = new HashMap<Long, long[]>(saved.size() * 2);
+		try {
+			RandomAccessFile out = new RandomAccessFile(temp, "rw");
+			try {
+				out.setLength(0);
+				byte[] data = new byte[256];
+				for(Map.Entry<Long, long[]> e : saved.entrySet()){
+					long[] entry = e.getValue();
+					if(data.length < entry[1])
+						data = new byte[(int)entry[1]];
+					log.seek(entry[0]);
+					log.readFully(data, 0, (int)entry[1]);
+					moved.put(e.getKey(), new long[]{ out.getFilePointer(), entry[1] });
+					out.write(data, 0, (int)entry[1]);
+				}
+			} finally {
+				out.close();
+			}
+			// the log has to be closed to be replaced on some systems
+			log.close();
+			try {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			} catch(IOException e) {
+				log = new RandomAccessFile(file, "rw");
+				throw e;
+			}
+		} catch(IOException e) {
+			temp.delete();
+			throw e;
+		}
+		saved.putAll(moved);
+		end = liveBytes;
+		log = new RandomAccessFile(file, "rw");
+	}
+}
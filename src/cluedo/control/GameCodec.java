@@ -0,0 +1,182 @@
+package cluedo.control;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import cluedo.board.Board;
+import cluedo.board.Tile;
+import cluedo.control.CluedoGame.Character;
+import cluedo.control.CluedoGame.Weapon;
+import cluedo.tokens.Card;
+import cluedo.tokens.CharacterToken;
+import cluedo.tokens.WeaponToken;
+
+/**
+ * Saves a game in progress to a compact binary form and restores it again,
+ *  so that idle games can be moved out of memory. A saved game is a few
+ *  hundred bytes: the board file name, the solution, every character's
+ *  hand, flags and square, the weapons' squares and the undealt cards.
+ *  Cards are stored as one byte each, by their id.
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class GameCodec {
+
+	private static final int MAGIC = 0xC1ED; // marks a saved cluedo game
+	public static final int VERSION = 1;
+
+	private static final int PLAYER = 1;
+	private static final int SUGGESTED = 2;
+
+	/**
+	 * Encodes a game as bytes.
+	 * @param game
+	 * @return
+	 */
+	public static byte[] encode(CluedoGame game) {
+		if(game == null)
+			throw new CluedoError("Null parameters: encode()");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeShort(MAGIC);
+			out.writeByte(VERSION);
+			out.writeUTF(game.boardFile());
+			out.writeByte(game.numPlayers());
+			out.writeByte(game.turn());
+			writeCards(out, game.Solution());
+			// characters, in seat order
+			out.writeByte(game.players().size());
+			for(CharacterToken c : game.players()){
+				out.writeUTF(c.getName());
+				out.writeByte(c.getToken().ordinal());
+				out.writeByte(c.getUid());
+				out.writeByte((c.isPlayer() ? PLAYER : 0) | (c.hasSuggested() ? SUGGESTED : 0));
+				out.writeByte(c.getRemainingSteps());
+				out.writeByte(c.getXPos());
+				out.writeByte(c.getYPos());
+				writeCards(out, c.getHand());
+			}
+			// weapons are always the six weapons, in order
+			for(WeaponToken w : game.weapons()){
+				out.writeByte(w.getXPos());
+				out.writeByte(w.getYPos());
+			}
+			writeCards(out, game.unusedCards());
+			writeCards(out, game.deck());
+			out.flush();
+		} catch(IOException e) {
+			throw new CluedoError("Error saving game: " + e.getMessage());
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Restores a game from bytes made by encode(). The restored game has a
+	 *  new id and no listeners other than its own spectator channel.
+	 * @param data
+	 * @return
+	 */
+	public static CluedoGame decode(byte[] data) {
+		if(data == null)
+			throw new CluedoError("Null parameters: decode()");
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		try {
+			if(in.readUnsignedShort() != MAGIC)
+				throw new CluedoError("Not a saved game");
+			int version = in.readUnsignedByte();
+			if(version != VERSION)
+				throw new CluedoError("Unsupported saved game version: " + version);
+			String boardFile = in.readUTF();
+			int nPlayers = in.readUnsignedByte();
+			int turn = in.readUnsignedByte();
+			List<Card> solution = readCards(in);
+
+			int count = in.readUnsignedByte();
+			List<CharacterToken> players = new ArrayList<CharacterToken>(count);
+			int[] squares = new int[count * 2];
+			for(int i = 0; i < count; i++){
+				String name = in.readUTF();
+				Character token = Character.values()[in.readUnsignedByte()];
+				int uid = in.readUnsignedByte();
+				int flags = in.readUnsignedByte();
+				CharacterToken c = new CharacterToken(name, token, (flags & PLAYER) != 0, uid);
+				c.suggested((flags & SUGGESTED) != 0);
+				c.setRemainingSteps(in.readByte());
+				squares[i * 2] = in.readUnsignedByte();
+				squares[i * 2 + 1] = in.readUnsignedByte();
+				for(Card card : readCards(in)){
+					c.addCard(card);
+				}
+				players.add(c);
+			}
+			int[] weaponSquares = new int[Weapon.values().length * 2];
+			for(int i = 0; i < weaponSquares.length; i++){
+				weaponSquares[i] = in.readUnsignedByte();
+			}
+			List<Card> unused = readCards(in);
+			List<Card> deck = readCards(in);
+
+			CluedoGame game = new CluedoGame(nPlayers, players, boardFile,
+					solution.toArray(new Card[solution.size()]), unused, deck);
+			game.setTurn(turn);
+			// take the characters off their starting squares, then put every token back
+			Board board = game.board();
+			for(CharacterToken c : players){
+				Tile t = board.getTile(c.getXPos(), c.getYPos());
+				if(t != null && t.getToken() == c)
+					t.setToken(null);
+			}
+			for(int i = 0; i < count; i++){
+				board.place(players.get(i), squares[i * 2], squares[i * 2 + 1]);
+			}
+			List<WeaponToken> weapons = game.weapons();
+			for(int i = 0; i < weapons.size(); i++){
+				board.place(weapons.get(i), weaponSquares[i * 2], weaponSquares[i * 2 + 1]);
+			}
+			return game;
+		} catch(IOException e) {
+			throw new CluedoError("Error restoring game: " + e.getMessage());
+		} catch(ArrayIndexOutOfBoundsException e) {
+			throw new CluedoError("Corrupt saved game");
+		}
+	}
+
+	/**
+	 * Writes a count followed by the cards.
+	 */
+	private static void writeCards(DataOutputStream out, List<Card> cards) throws IOException {
+		out.writeByte(cards.size());
+		for(Card c : cards){
+			out.writeByte(c.id());
+		}
+	}
+
+	/**
+	 * Writes a count followed by the cards.
+	 */
+	private static void writeCards(DataOutputStream out, Card[] cards) throws IOException {
+		out.writeByte(cards.length);
+		for(Card c : cards){
+			out.writeByte(c.id());
+		}
+	}
+
+	/**
+	 * Reads a count followed by that many cards.
+	 */
+	private static List<Card> readCards(DataInputStream in) throws IOException {
+		int n = in.readUnsignedByte();
+		List<Card> cards = new ArrayList<Card>(n);
+		for(int i = 0; i < n; i++){
+			cards.add(CluedoGame.getCard(in.readUnsignedByte()));
+		}
+		return cards;
+	}
+}
@@ -0,0 +1,47 @@
+package cluedo.control;
+
+import cluedo.tokens.Card;
+import cluedo.tokens.CharacterToken;
+import cluedo.tokens.GameToken;
+
+/**
+ * Receives the changes made to a game as they happen.
+ *  Listeners are added to a game with {@link CluedoGame#addListener(GameListener)}
+ *  and only need to override the changes they are interested in.
+ * 
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public interface GameListener {
+
+	/**
+	 * Called after a token has been moved to a new position on the board.
+	 * @param token
+	 * @param x
+	 * @param y
+	 */
+	public default void tokenMoved(GameToken token, int x, int y) {}
+	
+	/**
+	 * Called after a player has rolled the dice, before they move.
+	 * @param player
+	 * @param roll
+	 */
+	public default void diceRolled(CharacterToken player, int roll) {}
+	
+	/**
+	 * Called after a suggestion has been checked against the other players.
+	 * @param suggester
+	 * @param suggestion the suspect, room and weapon suggested
+	 * @param refuted
+	 */
+	public default void suggestionMade(CharacterToken suggester, Card[] suggestion, boolean refuted) {}
+	
+	/**
+	 * Called after an accusation has been checked against the solution.
+	 * @param accuser
+	 * @param accusation the suspect, room and weapon accused
+	 * @param correct
+	 */
+	public default void accusationMade(CharacterToken accuser, Card[] accusation, boolean correct) {}
+}
@@ -0,0 +1,153 @@
+package cluedo.control;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Applies the actions sent to one game, in the order they arrive, on a
+ *  single thread. Clients on any thread submit actions to a lock-free
+ *  queue, and the loop takes them off in batches, checking and applying
+ *  each one in turn. As only the loop's thread ever changes the game and
+ *  its board, and listeners are told of the changes from that thread,
+ *  none of it needs a lock.
+ *
+ * The loop can be run on a thread of its own with {@link #run()}, which
+ *  sleeps while there is nothing to do, or driven a batch at a time with
+ *  {@link #drain()}, but only ever from one thread.
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class GameLoop implements Runnable {
+
+	public static final int BATCH = 64; // most actions taken off the queue at once
+	private static final Logger log = Logger.getLogger("cluedo.control");
+	private static final long IDLE_NANOS = 1000000; // longest sleep, in case a wake up is missed
+
+	private final CluedoGame game;
+	private final ActionQueue queue = new ActionQueue();
+	private final Action[] batch = new Action[BATCH];
+	private volatile Thread sleeper; // the loop's thread while it sleeps, else null
+	private volatile boolean stopped;
+	private volatile long applied; // only written by the loop's thread
+	private volatile long rejected;
+	private volatile long failed;
+
+	/**
+	 * Creates a loop for a game.
+	 * @param game
+	 */
+	public GameLoop(CluedoGame game) {
+		if(game == null)
+			throw new CluedoError("Null parameters: GameLoop()");
+		this.game = game;
+	}
+
+	/**
+	 * Queues an action to be applied to the game. Can be called from any thread.
+	 * @param action
+	 */
+	public void submit(Action action) {
+		queue.offer(action);
+		Thread t = sleeper;
+		if(t != null)
+			LockSupport.unpark(t);
+	}
+
+	/**
+	 * Applies the actions waiting in the queue, up to a batch of them,
+	 *  returning how many were taken. Invalid actions, and actions which
+	 *  the game turns down with a CluedoError, are counted as rejected.
+	 *  Any other exception, such as from a listener told of the change,
+	 *  is counted as failed and logged, and the rest of the batch goes on.
+	 * @return
+	 */
+	public int drain() {
+		int n = queue.drain(batch);
+		long ok = 0, bad = 0;
+		for(int i = 0; i < n; i++){
+			Action action = batch[i];
+			batch[i] = null;
+			try {
+				if(action.valid(game)){
+					action.apply(game);
+					ok++;
+				}
+			} catch(CluedoError e) {
+				// the action was wrong for the game, not the loop
+			} catch(RuntimeException e) {
+				// the game may be partly changed, but the loop must keep going
+				bad++;
+				log.log(Level.WARNING, "Action failed in game " + game.id(), e);
+			}
+		}
+		applied += ok;
+		failed += bad;
+		rejected += n - ok - bad;
+		return n;
+	}
+
+	/**
+	 * Applies actions as they arrive until stopped, then applies any left.
+	 */
+	@Override
+	public void run() {
+		Thread self = Thread.currentThread();
+		while(!stopped){
+			if(drain() > 0)
+				continue;
+			// say the loop is asleep before the last look, so an action added after it wakes the loop
+			sleeper = self;
+			if(queue.isEmpty() && !stopped)
+				LockSupport.parkNanos(this, IDLE_NANOS);
+			sleeper = null;
+		}
+		while(drain() > 0){
+			// finish what was sent before stopping
+		}
+	}
+
+	/**
+	 * Tells the loop to stop once it has applied the actions already queued.
+	 */
+	public void stop() {
+		stopped = true;
+		Thread t = sleeper;
+		if(t != null)
+			LockSupport.unpark(t);
+	}
+
+	/**
+	 * Returns the game the loop applies actions to.
+	 * @return
+	 */
+	public CluedoGame game() {
+		return game;
+	}
+
+	/**
+	 * Returns the number of actions applied.
+	 * @return
+	 */
+	public long applied() {
+		return applied;
+	}
+
+	/**
+	 * Returns the number of actions rejected as invalid.
+	 * @return
+	 */
+	public long rejected() {
+		return rejected;
+	}
+
+	/**
+	 * Returns the number of actions which threw an exception other than a
+	 *  CluedoError while being checked or applied.
+	 * @return
+	 */
+	public long failed() {
+		return failed;
+	}
+}
@@ -0,0 +1,125 @@
+package cluedo.control;
+
+/**
+ * Finds things by name in constant time without creating any objects,
+ *  for names typed by players or sent by clients. Names match ignoring
+ *  the case of letters, and an underscore matches a space, so "lead pipe",
+ *  "LEAD_PIPE" and "Lead Pipe" are the same name.
+ *
+ * Names are kept in an open addressed hash table. An index can be read from
+ *  many threads once it has been filled, but not while it is being filled.
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ * @param <T>
+ */
+public class NameIndex<T> {
+
+	private final char[][] keys; // names with case folded
+	private final Object[] values;
+	private final int mask;
+	private int size;
+
+	/**
+	 * Creates an index with room for a given number of names.
+	 * @param capacity
+	 */
+	public NameIndex(int capacity) {
+		int n = 4;
+		while(n < capacity * 2) // at most half full, keeping probes short
+			n <<= 1;
+		this.keys = new char[n][];
+		this.values = new Object[n];
+		this.mask = n - 1;
+	}
+
+	/**
+	 * Adds a name, replacing any thing already known by that name.
+	 * @param name
+	 * @param value
+	 */
+	public void put(CharSequence name, T value) {
+		if(name == null || value == null)
+			throw new CluedoError("Null parameters: put()");
+		int i = hash(name) & mask;
+		while(keys[i] != null){
+			if(matches(keys[i], name)){
+				values[i] = value;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		if(size + 1 > keys.length / 2)
+			throw new CluedoError("Name index is full");
+		char[] key = new char[name.length()];
+		for(int j = 0; j < key.length; j++){
+			key[j] = fold(name.charAt(j));
+		}
+		keys[i] = key;
+		values[i] = value;
+		size++;
+	}
+
+	/**
+	 * Returns the thing with a given name, or null if there is none.
+	 * @param name
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(CharSequence name) {
+		if(name == null)
+			return null;
+		int i = hash(name) & mask;
+		while(keys[i] != null){
+			if(matches(keys[i], name))
+				return (T)values[i];
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the number of names in this index.
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns true if a folded key is the same name as a given one.
+	 */
+	private static boolean matches(char[] key, CharSequence name) {
+		if(key.length != name.length())
+			return false;
+		for(int j = 0; j < key.length; j++){
+			if(key[j] != fold(name.charAt(j)))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the hash of a name with its case folded.
+	 */
+	private static int hash(CharSequence name) {
+		int h = 0;
+		for(int j = 0; j < name.length(); j++){
+			h = 31 * h + fold(name.charAt(j));
+		}
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Returns a character as it is compared, in lower case with underscores as spaces.
+	 */
+	private static char fold(char c) {
+		if(c >= 'A' && c <= 'Z')
+			return (char)(c + ('a' - 'A'));
+		if(c == '_')
+			return ' ';
+		if(c < 128)
+			return c;
+		return java.lang.Character.toLowerCase(c);
+	}
+}
@@ -0,0 +1,26 @@
+package cluedo.control;
+
+/**
+ * An output sink which discards everything written to it.
+ *  Used for games played without a console.
+ * 
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class NullSink implements OutputSink {
+
+	@Override
+	public void print(String s) {}
+
+	@Override
+	public void print(char c) {}
+
+	@Override
+	public void println(String s) {}
+
+	@Override
+	public void println() {}
+
+	@Override
+	public void flush() {}
+}
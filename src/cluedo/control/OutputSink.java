@@ -0,0 +1,41 @@
+package cluedo.control;
+
+/**
+ * A destination for the text displayed to the players.
+ *  Sinks may hold on to the text until they are flushed, so the
+ *  text client flushes once before every prompt rather than after
+ *  every line.
+ * 
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public interface OutputSink {
+
+	/**
+	 * Writes a string without a line break.
+	 * @param s
+	 */
+	public void print(String s);
+	
+	/**
+	 * Writes a single character.
+	 * @param c
+	 */
+	public void print(char c);
+	
+	/**
+	 * Writes a string followed by a line break.
+	 * @param s
+	 */
+	public void println(String s);
+	
+	/**
+	 * Writes a line break.
+	 */
+	public void println();
+	
+	/**
+	 * Sends any held text to its destination.
+	 */
+	public void flush();
+}
@@ -0,0 +1,157 @@
+package cluedo.control;
+
+import java.util.List;
+
+import cluedo.tokens.Card;
+import cluedo.tokens.CharacterToken;
+
+/**
+ * Works out who refutes a suggestion and which card they show, by the rules:
+ *  the players are asked in turn clockwise from the one who made the
+ *  suggestion, and the first who holds any of the suggested cards shows
+ *  one of them, chosen by a {@link RefuterPolicy}. Players who have made
+ *  a wrong accusation still refute, and characters with no cards never do.
+ *
+ * Seats go clockwise in the order of the game's players. Each hand is kept
+ *  as a bitmask of card ids and the order of asking from each seat is worked
+ *  out once, so refuting makes no objects. Hands are read when the engine
+ *  is made, so it must be made after the cards are dealt.
+ *
+ * A refutation is returned as an int holding the refuter's seat and the id
+ *  of the card shown; see {@link #seat(int)} and {@link #card(int)}.
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class RefutationEngine {
+
+	public static final int NONE = -1; // no one could refute
+
+	private final CharacterToken[] seats;
+	private final int[] hands;
+	private final int[][] order; // the other seats, clockwise from each seat
+	private volatile RefuterPolicy policy;
+
+	/**
+	 * Creates an engine for the players of a game, in seat order.
+	 * @param players
+	 * @param policy
+	 */
+	public RefutationEngine(List<CharacterToken> players, RefuterPolicy policy) {
+		if(players == null || policy == null)
+			throw new CluedoError("Null parameters: RefutationEngine()");
+		int n = players.size();
+		this.seats = players.toArray(new CharacterToken[n]);
+		this.hands = new int[n];
+		this.order = new int[n][Math.max(0, n - 1)];
+		this.policy = policy;
+		for(int s = 0; s < n; s++){
+			for(Card c : seats[s].getHand()){
+				hands[s] |= 1 << c.id();
+			}
+			for(int i = 1; i < n; i++){
+				order[s][i - 1] = (s + i) % n;
+			}
+		}
+	}
+
+	/**
+	 * Changes the way refuters choose which card to show.
+	 * @param policy
+	 */
+	public void setPolicy(RefuterPolicy policy) {
+		if(policy == null)
+			throw new CluedoError("Null parameters: setPolicy()");
+		this.policy = policy;
+	}
+
+	/**
+	 * Refutes a suggestion made by a player.
+	 * @param suggester
+	 * @param suggestion
+	 * @return the refutation, or NONE
+	 */
+	public int refute(CharacterToken suggester, Card[] suggestion) {
+		int mask = 0;
+		for(Card c : suggestion){
+			mask |= 1 << c.id();
+		}
+		return refute(seatOf(suggester), mask);
+	}
+
+	/**
+	 * Refutes a suggestion made from a seat.
+	 * @param seat
+	 * @param suggestion bitmask of the ids of the suggested cards
+	 * @return the refutation, or NONE
+	 */
+	public int refute(int seat, int suggestion) {
+		RefuterPolicy policy = this.policy;
+		for(int s : order[seat]){
+			int matching = hands[s] & suggestion;
+			if(matching != 0)
+				return s << 8 | policy.choose(seats[s], matching);
+		}
+		return NONE;
+	}
+
+	/**
+	 * Returns the seat asked to refute a suggestion from a seat at a given
+	 *  place in the order of asking, from 0 for the first seat asked up to
+	 *  seats() - 2 for the last.
+	 * @param seat the seat of the suggester
+	 * @param i
+	 * @return
+	 */
+	public int asked(int seat, int i) {
+		return order[seat][i];
+	}
+
+	/**
+	 * Returns the seat of a player.
+	 * @param player
+	 * @return
+	 */
+	public int seatOf(CharacterToken player) {
+		for(int s = 0; s < seats.length; s++){
+			if(seats[s] == player)
+				return s;
+		}
+		throw new CluedoError("Not seated: " + player);
+	}
+
+	/**
+	 * Returns the player in a seat.
+	 * @param seat
+	 * @return
+	 */
+	public CharacterToken player(int seat) {
+		return seats[seat];
+	}
+
+	/**
+	 * Returns the number of seats.
+	 * @return
+	 */
+	public int seats() {
+		return seats.length;
+	}
+
+	/**
+	 * Returns the seat of the player who refuted.
+	 * @param refutation not NONE
+	 * @return
+	 */
+	public static int seat(int refutation) {
+		return refutation >>> 8;
+	}
+
+	/**
+	 * Returns the id of the card shown.
+	 * @param refutation not NONE
+	 * @return
+	 */
+	public static int card(int refutation) {
+		return refutation & 0xFF;
+	}
+}
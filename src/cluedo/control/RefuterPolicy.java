@@ -0,0 +1,62 @@
+package cluedo.control;
+
+import java.util.Random;
+
+import cluedo.tokens.Card;
+import cluedo.tokens.CharacterToken;
+
+/**
+ * Decides which card a player shows when they can refute a suggestion
+ *  with more than one card.
+ * 
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public interface RefuterPolicy {
+
+	/**
+	 * Returns the id of the card to show.
+	 * @param refuter
+	 * @param matching bitmask of the ids of the suggested cards the refuter holds, never 0
+	 * @return
+	 */
+	public int choose(CharacterToken refuter, int matching);
+	
+	/**
+	 * Shows the first matching card in the refuter's hand, as the text client always has.
+	 */
+	public static final RefuterPolicy HAND_ORDER = new RefuterPolicy() {
+		public int choose(CharacterToken refuter, int matching) {
+			for(Card c : refuter.getHand()){
+				if((matching & 1 << c.id()) != 0)
+					return c.id();
+			}
+			throw new CluedoError(refuter.getName() + " does not hold a matching card");
+		}
+	};
+	
+	/**
+	 * Shows the suspect before the weapon, and the weapon before the room.
+	 */
+	public static final RefuterPolicy LOWEST_ID = new RefuterPolicy() {
+		public int choose(CharacterToken refuter, int matching) {
+			return Integer.numberOfTrailingZeros(matching);
+		}
+	};
+	
+	/**
+	 * Returns a policy which shows any of the matching cards equally often.
+	 * @param random
+	 * @return
+	 */
+	public static RefuterPolicy random(final Random random) {
+		return new RefuterPolicy() {
+			public int choose(CharacterToken refuter, int matching) {
+				for(int k = random.nextInt(Integer.bitCount(matching)); k > 0; k--){
+					matching &= matching - 1;
+				}
+				return Integer.numberOfTrailingZeros(matching);
+			}
+		};
+	}
+}
@@ -0,0 +1,98 @@
+package cluedo.control;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads the input for one or more games from a script.
+ *  Lines starting with '#' are comments, and a line of "---" marks the 
+ *  end of a game. The reader reports the end of the input at each game 
+ *  separator until the next game is started with {@link #nextGame()}.
+ * 
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class ScriptReader extends BufferedReader {
+
+	private static final String SEPARATOR = "---";
+	
+	private boolean inGame = false; // a game has been started and not yet finished
+	private boolean endOfGame = false; // the current game's input has been used up
+	private boolean endOfScript = false;
+	private int lineNumber = 0;
+	
+	/**
+	 * Creates a script reader over the given reader.
+	 * @param in
+	 */
+	public ScriptReader(Reader in) {
+		super(in);
+	}
+	
+	/**
+	 * Returns the next line of input for the current game,
+	 *  or null if the current game has no more input.
+	 */
+	@Override
+	public String readLine() throws IOException {
+		if(endOfGame)
+			return null;
+		while(true){
+			String line = nextLine();
+			if(line == null || line.trim().equals(SEPARATOR)){
+				endOfGame = true;
+				return null;
+			}
+			if(!line.startsWith("#"))
+				return line;
+		}
+	}
+	
+	/**
+	 * Skips any unread input of the current game and moves on to the next.
+	 * @return false if the script has no more games
+	 */
+	public boolean nextGame() throws IOException {
+		// skip what is left of the current game
+		if(inGame){
+			while(readLine() != null);
+		}
+		inGame = true;
+		endOfGame = false;
+		// look ahead for anything other than comments and blank lines
+		while(true){
+			mark(8192);
+			String line = nextLine();
+			if(line == null)
+				return false;
+			if(line.trim().isEmpty() || line.startsWith("#"))
+				continue;
+			reset();
+			lineNumber--;
+			return true;
+		}
+	}
+	
+	/**
+	 * Returns the number of the last line read from the script.
+	 * @return
+	 */
+	public int lineNumber() {
+		return lineNumber;
+	}
+	
+	/**
+	 * Reads a raw line from the script.
+	 */
+	private String nextLine() throws IOException {
+		if(endOfScript)
+			return null;
+		String line = super.readLine();
+		if(line == null)
+			endOfScript = true;
+		else
+			lineNumber++;
+		return line;
+	}
+}
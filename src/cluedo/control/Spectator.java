@@ -0,0 +1,76 @@
+package cluedo.control;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A viewer of a game, subscribed to the game's {@link SpectatorChannel}.
+ *  Frames are queued up to a fixed capacity. A spectator who falls that 
+ *  far behind has its queued frames dropped and is sent a keyframe of 
+ *  the whole game on its next poll instead, so a slow viewer never holds
+ *  up the game or the other viewers.
+ * 
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class Spectator {
+
+	private final SpectatorChannel channel;
+	private final ArrayBlockingQueue<byte[]> frames;
+	private volatile boolean lagging = true; // new spectators start with a keyframe
+	private volatile long dropped = 0;
+	
+	/**
+	 * Creates a spectator of a given channel.
+	 * @param channel
+	 * @param capacity the number of frames which can be queued
+	 */
+	Spectator(SpectatorChannel channel, int capacity) {
+		this.channel = channel;
+		this.frames = new ArrayBlockingQueue<byte[]>(capacity);
+	}
+	
+	/**
+	 * Queues a frame for this spectator, falling back to a keyframe if full.
+	 * @param frame
+	 */
+	void offer(byte[] frame) {
+		// a lagging spectator will catch up from the next keyframe
+		if(lagging)
+			return;
+		if(!frames.offer(frame)){
+			lagging = true;
+			frames.clear();
+			dropped++;
+		}
+	}
+	
+	/**
+	 * Returns the next frame for this spectator, or null if it is up to date.
+	 *  The frames are shared between spectators and must not be modified.
+	 * @return
+	 */
+	public byte[] poll() {
+		if(lagging){
+			// the keyframe holds every position, so any moves queued while 
+			// it is being encoded are harmless repeats
+			lagging = false;
+			return channel.keyframe();
+		}
+		return frames.poll();
+	}
+	
+	/**
+	 * Returns the number of times this spectator fell behind.
+	 * @return
+	 */
+	public long dropped() {
+		return dropped;
+	}
+	
+	/**
+	 * Stops this spectator receiving frames.
+	 */
+	public void close() {
+		channel.unsubscribe(this);
+	}
+}
@@ -0,0 +1,190 @@
+package cluedo.control;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cluedo.control.CluedoGame.Weapon;
+import cluedo.tokens.Card;
+import cluedo.tokens.CharacterToken;
+import cluedo.tokens.GameToken;
+import cluedo.tokens.WeaponToken;
+
+/**
+ * Broadcasts the public changes to a game to any number of spectators.
+ *  Each change is encoded once into a small frame of bytes, and the same 
+ *  frame is shared by every spectator. Frames are:
+ *  <ul>
+ *  <li>KEYFRAME: type, count, then token, x, y for each token</li>
+ *  <li>MOVE: type, token, x, y</li>
+ *  <li>SUGGESTION: type, suggester, suspect, room, weapon, refuted (0 or 1)</li>
+ *  </ul>
+ *  Characters are numbered by their Character ordinal (0-5) and weapons
+ *  by six plus their Weapon ordinal (6-11). Rooms use their Room ordinal.
+ * 
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class SpectatorChannel implements GameListener {
+
+	public static final byte KEYFRAME = 0;
+	public static final byte MOVE = 1;
+	public static final byte SUGGESTION = 2;
+	
+	public static final int DEFAULT_CAPACITY = 64;
+	
+	private final CluedoGame game;
+	private final List<Spectator> spectators = new CopyOnWriteArrayList<Spectator>();
+	
+	private final AtomicLong version = new AtomicLong(); // bumped on every change
+	private volatile Keyframe keyframe; // most recent keyframe, may be out of date
+	
+	/**
+	 * Creates a spectator channel for a given game.
+	 * @param game
+	 */
+	public SpectatorChannel(CluedoGame game) {
+		if(game == null)
+			throw new CluedoError("Null parameters: SpectatorChannel()");
+		this.game = game;
+	}
+	
+	/**
+	 * Adds a new spectator with the default frame capacity.
+	 * @return
+	 */
+	public Spectator subscribe() {
+		return subscribe(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Adds a new spectator which can queue the given number of frames.
+	 * @param capacity
+	 * @return
+	 */
+	public Spectator subscribe(int capacity) {
+		if(capacity < 1)
+			throw new CluedoError("Invalid capacity: " + capacity);
+		Spectator s = new Spectator(this, capacity);
+		spectators.add(s);
+		return s;
+	}
+	
+	/**
+	 * Removes a spectator from this channel.
+	 * @param s
+	 */
+	public void unsubscribe(Spectator s) {
+		spectators.remove(s);
+	}
+	
+	/**
+	 * Returns the number of spectators watching.
+	 * @return
+	 */
+	public int size() {
+		return spectators.size();
+	}
+
+	@Override
+	public void tokenMoved(GameToken token, int x, int y) {
+		publish(new byte[]{ MOVE, tokenId(token), (byte)x, (byte)y });
+	}
+
+	@Override
+	public void suggestionMade(CharacterToken suggester, Card[] suggestion, boolean refuted) {
+		publish(new byte[]{ SUGGESTION, tokenId(suggester), 
+				(byte)((CluedoGame.Character)suggestion[0]).ordinal(),
+				(byte)((CluedoGame.Room)suggestion[1]).ordinal(), 
+				(byte)weaponOrdinal(suggestion[2]),
+				(byte)(refuted ? 1 : 0) });
+	}
+	
+	/**
+	 * Returns a keyframe holding the position of every token in the game.
+	 *  The keyframe is only encoded again once the game has changed.
+	 * @return
+	 */
+	byte[] keyframe() {
+		long current = version.get();
+		Keyframe k = keyframe;
+		if(k != null && k.version == current)
+			return k.frame;
+		byte[] frame = encodeKeyframe();
+		// only keep the keyframe if nothing changed while encoding it
+		if(version.get() == current)
+			keyframe = new Keyframe(current, frame);
+		return frame;
+	}
+	
+	/**
+	 * Sends a frame to every spectator.
+	 * @param frame
+	 */
+	private void publish(byte[] frame) {
+		version.incrementAndGet();
+		for(Spectator s : spectators){
+			s.offer(frame);
+		}
+	}
+	
+	/**
+	 * Encodes the position of every token in the game.
+	 * @return
+	 */
+	private byte[] encodeKeyframe() {
+		List<CharacterToken> players = game.players();
+		List<WeaponToken> weapons = game.weapons();
+		int count = players.size() + weapons.size();
+		byte[] frame = new byte[2 + count * 3];
+		frame[0] = KEYFRAME;
+		frame[1] = (byte)count;
+		int i = 2;
+		for(CharacterToken c : players){
+			frame[i++] = tokenId(c);
+			frame[i++] = (byte)c.getXPos();
+			frame[i++] = (byte)c.getYPos();
+		}
+		for(WeaponToken w : weapons){
+			frame[i++] = tokenId(w);
+			frame[i++] = (byte)w.getXPos();
+			frame[i++] = (byte)w.getYPos();
+		}
+		return frame;
+	}
+	
+	/**
+	 * Returns the number used for a token in frames.
+	 * @param token
+	 * @return
+	 */
+	private static byte tokenId(GameToken token) {
+		if(token instanceof CharacterToken)
+			return (byte)((CharacterToken)token).getToken().ordinal();
+		return (byte)(CluedoGame.Character.values().length + weaponOrdinal((WeaponToken)token));
+	}
+	
+	/**
+	 * Returns the ordinal of a weapon card or weapon token.
+	 * @param weapon
+	 * @return
+	 */
+	private static int weaponOrdinal(Card weapon) {
+		if(weapon instanceof WeaponToken)
+			return ((WeaponToken)weapon).token().ordinal();
+		return ((Weapon)weapon).ordinal();
+	}
+	
+	/**
+	 * A keyframe along with the version of the game it was encoded from.
+	 */
+	private static class Keyframe {
+		final long version;
+		final byte[] frame;
+		
+		Keyframe(long version, byte[] frame) {
+			this.version = version;
+			this.frame = frame;
+		}
+	}
+}
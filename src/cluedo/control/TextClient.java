@@ -11,7 +11,12 @@ import java.util.Random;
 import java.util.Set;
 
 import cluedo.board.Board;
+import cluedo.board.Direction;
 import cluedo.board.RoomTile;
+import cluedo.metrics.AccusationEvent;
+import cluedo.metrics.Metrics;
+import cluedo.metrics.SuggestionEvent;
+import cluedo.metrics.TurnEvent;
 import cluedo.tokens.Card;
 import cluedo.tokens.CharacterToken;
 import cluedo.tokens.WeaponToken;
@@ -33,6 +38,9 @@ public class TextClient {
 	private static boolean canUseStairs = false; // makes sure player can only use stairs at start of turn
 	private static boolean gameWon = false; // state of game
 	
+	private static OutputSink out = new BufferedSink(System.out); // where all text is displayed
+	private static BufferedReader input = new BufferedReader(new InputStreamReader(System.in)); // where all input is read
+	
 	/**
 	 * Creates a text client.
 	 */
@@ -47,48 +55,84 @@ public class TextClient {
 	}
 	
 	/**
-	 * Get an integer from System.in
+	 * Get an integer from the input
 	 * @param max 
 	 * @param min 
 	 */
 	private static int inputNumber(String msg, int min, int max) {
 		// print message
-		System.out.print(msg + " ");
+		out.print(msg + " ");
+		out.flush(); // display everything before waiting on the player
 		while (true) {
-			// create a reader on user input from System.in
-			BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
 			try {
 				// read a line of input
-				String s = in.readLine();
-				int i = Integer.parseInt(s);
-				if(i > max || i < min) return inputNumber(msg, min, max);
+				int i = Integer.parseInt(readLine().trim());
 				// return as an integer
-				return Integer.parseInt(s);
-			} catch (IOException e) {
-				System.out.println("Invalid number. Require number between " + 
-						min + " and " + max);
+				if(i <= max && i >= min) return i;
 			} catch (NumberFormatException nError){
-				System.out.println("Invalid number. Require number between " + 
-						min + " and " + max);
+				// fall through and ask again
 			}
+			out.println("Invalid number. Require number between " + 
+					min + " and " + max);
+			out.print(msg + " ");
+			out.flush();
 		}
 	}
 	
 	/**
-	 * Get an string from System.in
+	 * Get an string from the input
 	 */
 	private static String inputString(String msg) {
 		// print the message
-		System.out.print(msg + " ");
+		out.print(msg + " ");
+		out.flush(); // display everything before waiting on the player
+		return readLine();
+	}
+	
+	/**
+	 * Get one of the given options from the input, 
+	 *  either by its number or by its text.
+	 * @param msg
+	 * @param options
+	 * @return the chosen option
+	 */
+	private static String inputChoice(String msg, List<String> options) {
+		// print message
+		out.print(msg + " ");
+		out.flush(); // display everything before waiting on the player
 		while (true) {
-			// create a reader on user input from System.in
-			BufferedReader input = new BufferedReader(new InputStreamReader(System.in));
+			String s = readLine().trim();
+			// the option text can be given instead of its number
+			for(String option : options){
+				if(option.equalsIgnoreCase(s))
+					return option;
+			}
 			try {
-				// return the read string
-				return input.readLine();
-			} catch (IOException e) {
-				System.out.println("I/O Error ... please try again!");
+				int i = Integer.parseInt(s);
+				if(i <= options.size() && i >= 1) return options.get(i - 1);
+			} catch (NumberFormatException nError){
+				// fall through and ask again
 			}
+			out.println("Invalid number. Require number between 1 and " + options.size());
+			out.print(msg + " ");
+			out.flush();
+		}
+	}
+	
+	/**
+	 * Reads the next line of input.
+	 * @return
+	 */
+	private static String readLine() {
+		try {
+			long start = Metrics.now();
+			String s = input.readLine();
+			Metrics.INPUT_WAIT.recordSince(start);
+			if(s == null)
+				throw new CluedoError("Input ended before the game finished");
+			return s;
+		} catch (IOException e) {
+			throw new CluedoError("I/O Error reading input: " + e.getMessage());
 		}
 	}
 	
@@ -114,35 +158,22 @@ public class TextClient {
 			String name = inputString("Player #" + i + " name? ");
 			// list remaining tokens
 			listTokens(tokens, "remaining tokens: ");
-			// get player token
-			String token = inputString("Player #" + i + " token?").toLowerCase();
-			System.out.println();
+			// get player token, by its name with spaces or underscores
+			CluedoGame.Character player = CluedoGame.Character.parse(inputString("Player #" + i + " token?").trim());
+			out.println();
 			// retry if the player enters an invalid token
-			while (!tokens.contains(token)) {
+			while (player == null || !tokens.contains(player.toString().toLowerCase())) {
 				listTokens(tokens, "Invalid token! Must be one of: ");
-				token = inputString("Player #" + i + " token?").toLowerCase();
+				player = CluedoGame.Character.parse(inputString("Player #" + i + " token?").trim());
 			}
 			// remove the selected token
-			tokens.remove(token);
-			
-			// get the character matching the chosen token
-			CluedoGame.Character player = null;
-			for(CluedoGame.Character c : characters){
-				if(c.toString().toLowerCase().equals(token)){
-					player = c;
-				}
-			}
-			if(player == null) throw new CluedoError("Character cannot be null");
+			tokens.remove(player.toString().toLowerCase());
 			// create a new player character
 			players.add(new CharacterToken(name, player, true, ++uid));
 		}
 		// spare characterTokens
 		for(String playerName: tokens){
-			for(CluedoGame.Character c : characters){
-				if(c.toString().toLowerCase().equals(playerName)){
-					players.add(new CharacterToken("computer", c, false, ++uid));
-				}
-			}
+			players.add(new CharacterToken("computer", CluedoGame.Character.parse(playerName), false, ++uid));
 		}
 		// return the list of players
 		return players;
@@ -157,17 +188,17 @@ public class TextClient {
 	private static void listTokens(ArrayList<String> tokens, String msg){
 		boolean firstTime = true;
 		// print the message
-		System.out.print(msg + " ");
+		out.print(msg + " ");
 		// loop over each token and print
 		for (String t : tokens) {
 			if (!firstTime) {
-				System.out.print(", ");
+				out.print(", ");
 			}
 			firstTime = false;
 			// print the token in camel case
-			System.out.print("\"" + toCamelCase(t) + "\"");
+			out.print("\"" + toCamelCase(t) + "\"");
 		}
-		System.out.println();
+		out.println();
 	}
 	
 	/** This method is used to convert strings into camel case
@@ -201,11 +232,11 @@ public class TextClient {
 	 */
 	private static void readyNextPlayer(){
 		for(int i = 0; i < 100; i++)
-			System.out.println("\n");
-		System.out.println("\t\t\t+-+-+-+-+ +-+-+-+-+-+-+");
-		System.out.println("\t\t\t|N|E|X|T| |P|L|A|Y|E|R|");
-		System.out.println("\t\t\t+-+-+-+-+ +-+-+-+-+-+-+");
-		System.out.println("");
+			out.println("\n");
+		out.println("\t\t\t+-+-+-+-+ +-+-+-+-+-+-+");
+		out.println("\t\t\t|N|E|X|T| |P|L|A|Y|E|R|");
+		out.println("\t\t\t+-+-+-+-+ +-+-+-+-+-+-+");
+		out.println("");
 	}
 
 	/**
@@ -223,9 +254,9 @@ public class TextClient {
 		result[2] = getWeapon().token();
 
 		// Displays the player's accusation.
-		System.out.println("You accuse " + result[0].toString() + " of committing the crime in the " + result[1].toString() +
+		out.println("You accuse " + result[0].toString() + " of committing the crime in the " + result[1].toString() +
 				" with the " + result[2].toString());
-		System.out.println("\n");
+		out.println("\n");
 		
 		return result;
 	}
@@ -239,17 +270,17 @@ public class TextClient {
 	public static boolean checkAccusation(Card[] results, CharacterToken player){
 		Card[] solution = game.Solution();
 
-		// checks each card by name
+		// checks each card by id, so a weapon token matches its weapon card
 		for(int i = 0; i < 3; i++){
 			// if any of the cards is wrong, displays an appropriate message.
-			if(!(results[i].toString().equals(solution[i].toString()))){
-				System.out.println("+-+-+-+ +-+-+-+-+ +-+-+-+ +-+-+-+-+ +-+-+-+ +-+-+-+-+ +-+-+-+ +-+-+-+-+");
-				System.out.println("|Y|O|U| |L|O|S|E| |Y|O|U| |L|O|S|E| |Y|O|U| |L|O|S|E| |Y|O|U| |L|O|S|E|");
-				System.out.println("+-+-+-+ +-+-+-+-+ +-+-+-+ +-+-+-+-+ +-+-+-+ +-+-+-+-+ +-+-+-+ +-+-+-+-+");
+			if(results[i].id() != solution[i].id()){
+				out.println("+-+-+-+ +-+-+-+-+ +-+-+-+ +-+-+-+-+ +-+-+-+ +-+-+-+-+ +-+-+-+ +-+-+-+-+");
+				out.println("|Y|O|U| |L|O|S|E| |Y|O|U| |L|O|S|E| |Y|O|U| |L|O|S|E| |Y|O|U| |L|O|S|E|");
+				out.println("+-+-+-+ +-+-+-+-+ +-+-+-+ +-+-+-+-+ +-+-+-+ +-+-+-+-+ +-+-+-+ +-+-+-+-+");
 				player.isPlayer(false);
-				System.out.println("The crime was committed by " + solution[0].toString() + 
+				out.println("The crime was committed by " + solution[0].toString() + 
 						" in the " + solution[1].toString() + " with the " + solution[2].toString());
-				System.out.println("\n");
+				out.println("\n");
 				// displays game end message if all players have lost
 				if(!game.activePlayers()){
 					viewGameEnd(player);
@@ -258,14 +289,14 @@ public class TextClient {
 			}
 		}
 		// otherwise all cards were correct, displays an appropriate message and returns true.
-		System.out.println("+-+-+-+ +-+-+-+ +-+-+-+ +-+-+-+ +-+-+-+ +-+-+-+ +-+-+-+ +-+-+-+");
-		System.out.println("|Y|O|U| |W|I|N| |Y|O|U| |W|I|N| |Y|O|U| |W|I|N| |Y|O|U| |W|I|N|");
-		System.out.println("+-+-+-+ +-+-+-+ +-+-+-+ +-+-+-+ +-+-+-+ +-+-+-+ +-+-+-+ +-+-+-+");
-		System.out.println("\n");
+		out.println("+-+-+-+ +-+-+-+ +-+-+-+ +-+-+-+ +-+-+-+ +-+-+-+ +-+-+-+ +-+-+-+");
+		out.println("|Y|O|U| |W|I|N| |Y|O|U| |W|I|N| |Y|O|U| |W|I|N| |Y|O|U| |W|I|N|");
+		out.println("+-+-+-+ +-+-+-+ +-+-+-+ +-+-+-+ +-+-+-+ +-+-+-+ +-+-+-+ +-+-+-+");
+		out.println("\n");
 		// Displays the correct answer.
-		System.out.println("The crime was committed by " + solution[0].toString() + 
+		out.println("The crime was committed by " + solution[0].toString() + 
 				" in the " + solution[1].toString() + " with the " + solution[2].toString());
-		System.out.println("\n");
+		out.println("\n");
 		
 		gameWon = true;
 		viewGameEnd(player);
@@ -278,7 +309,7 @@ public class TextClient {
 	private static Card[] makeSuggestion(CharacterToken player){
 		// crime scene
 		RoomTile crimeScene = (RoomTile)(board.getTile(player.getXPos(), player.getYPos()));
-		System.out.println("Suggested crime scene is: " + crimeScene.name());
+		out.println("Suggested crime scene is: " + crimeScene.name());
 		
 		Card[] result = new Card[3];
 		
@@ -287,7 +318,7 @@ public class TextClient {
 		result[0] = suspect.getToken();
 		
 		// get the room as a card
-		result[1] = (Card)CluedoGame.getRoom(crimeScene.name().toString());
+		result[1] = crimeScene.name();
 		
 		// gets the murder weapon
 		WeaponToken weapon = getWeapon();
@@ -298,7 +329,7 @@ public class TextClient {
 		board.moveIntoRoom(weapon, crimeScene.name());
 				
 		// prints the player's suggestion
-		System.out.println("You suggest the crime was committed in the " + result[1] +
+		out.println("You suggest the crime was committed in the " + result[1] +
 				" by " + result[0].toString() + " with the " + result[2].toString());
 		return result;
 	}
@@ -310,21 +341,20 @@ public class TextClient {
 	 * @return
 	 */
 	public static boolean checkSuggestion(Card[] suggestion, CharacterToken player){
-		for (CharacterToken p : board.players()) {
-			// checks each card in the players' hands
-			if(p.isPlayer() && !p.equals(player)){
-				for(Card c : p.getHand()){
-					for(int i=0; i<suggestion.length; i++){
-						if(c.equals(suggestion[i])){
-							System.out.println(p.getName() + " has the card "
-									+ c.toString());
-							return true;
-						}
-					}
-				}
-			}
+		long start = Metrics.now();
+		Metrics.increment(Metrics.SUGGESTIONS);
+		// the players are asked clockwise from the suggester
+		RefutationEngine engine = game.refutations();
+		int refutation = engine.refute(player, suggestion);
+		if(refutation != RefutationEngine.NONE){
+			out.println(engine.player(RefutationEngine.seat(refutation)).getName() + " has the card "
+					+ CluedoGame.getCard(RefutationEngine.card(refutation)).toString());
+			Metrics.increment(Metrics.REFUTATIONS);
+			Metrics.SUGGESTION.recordSince(start);
+			return true;
 		}
-		System.out.println("Noone can refute your suggestion");
+		out.println("Noone can refute your suggestion");
+		Metrics.SUGGESTION.recordSince(start);
 		return false;
 	}
 	
@@ -337,10 +367,10 @@ public class TextClient {
 		ArrayList<CluedoGame.Room> crimeScenes = new ArrayList<CluedoGame.Room>();
 		
 		// adding all characters to the suspects list
-		System.out.print("Rooms: ");
+		out.print("Rooms: ");
 		int count = 1;
-		for(CluedoGame.Room r : CluedoGame.rooms()){
-			System.out.print(count + ") " + toCamelCase(r.toString()) + " ");
+		for(CluedoGame.Room r : game.rooms()){
+			out.print(count + ") " + toCamelCase(r.toString()) + " ");
 			crimeScenes.add(r);
 			count++;
 		}
@@ -360,10 +390,10 @@ public class TextClient {
 		// set up the tokens
 		ArrayList<WeaponToken> weapons = new ArrayList<WeaponToken>();	
 		// adding all characters to the tokens list
-		System.out.print("Weapons: ");
+		out.print("Weapons: ");
 		int count = 1;
-		for(WeaponToken w : CluedoGame.weapons()){
-			System.out.print(count + ") " + toCamelCase(w.toString()) + " ");
+		for(WeaponToken w : game.weapons()){
+			out.print(count + ") " + toCamelCase(w.toString()) + " ");
 			weapons.add(w);
 			count++;
 		}
@@ -380,10 +410,10 @@ public class TextClient {
 		ArrayList<CharacterToken> suspects = new ArrayList<CharacterToken>();
 		
 		// adding all characters to the suspects list
-		System.out.print("Suspects: ");
+		out.print("Suspects: ");
 		int count = 1;
 		for(CharacterToken c : game.players()){
-			System.out.print(count + ") " + toCamelCase(c.getToken().toString()) + " ");
+			out.print(count + ") " + toCamelCase(c.getToken().toString()) + " ");
 			suspects.add(c);
 			count++;
 		}
@@ -400,43 +430,69 @@ public class TextClient {
 	 * @param board
 	 */
 	private static void executeChoice(String choice, CharacterToken player){
+		long start = Metrics.now();
 		switch(choice){
 			case "Move North.":
 				player.setRemainingSteps(player.getRemainingSteps() - 1);
 				board.moveNorth(player);
-				board.toString(); // displays the board
+				board.printBoard(out); // displays the board
 				break;
 			case "Move East.":
 				player.setRemainingSteps(player.getRemainingSteps() - 1);
 				board.moveEast(player);
-				board.toString();
+				board.printBoard(out);
 				break;
 			case "Move South.":
 				player.setRemainingSteps(player.getRemainingSteps() - 1);
 				board.moveSouth(player);
-				board.toString();
+				board.printBoard(out);
 				break;
 			case "Move West.":
 				player.setRemainingSteps(player.getRemainingSteps() - 1);
 				board.moveWest(player);
-				board.toString();
+				board.printBoard(out);
+				break;
+			case "Move to room.":
+				moveToRoom(player);
+				break;
+			case "Move to square.":
+				moveToSquare(player);
 				break;
 			case "Look at hand.":
-				System.out.println("Your hand: " + player.getHand().toString());
+				out.println("Your hand: " + player.getHand().toString());
 				break;
 			case "Look at clues.":
-				System.out.println("Clues: " + game.unusedCards().toString());
+				out.println("Clues: " + game.unusedCards().toString());
 				break;
 			case "Use stairs.":
 				board.useStairs(player); // moves player to opposite corner room
 				player.setRemainingSteps(0); // player cannot move after using stairs
 				break;
 			case "Make suggestion.":
-				if(checkSuggestion(makeSuggestion(player), player)) // if refuted, player's turn ends
+				SuggestionEvent suggestionEvent = new SuggestionEvent();
+				suggestionEvent.begin();
+				Card[] suggestion = makeSuggestion(player);
+				boolean refuted = checkSuggestion(suggestion, player);
+				game.suggestionMade(player, suggestion, refuted); // tells any spectators
+				suggestionEvent.gameId = game.id();
+				suggestionEvent.playerUid = player.getUid();
+				suggestionEvent.refuted = refuted;
+				suggestionEvent.commit();
+				if(refuted) // if refuted, player's turn ends
 					endTurn = true;
 				player.suggested(true); // player cannot suggest again without leaving room
 				break;
 			case "Make accusation.":
+				Metrics.increment(Metrics.ACCUSATIONS);
+				AccusationEvent accusationEvent = new AccusationEvent();
+				accusationEvent.begin();
+				// player either wins or is out of the game
+				Card[] accusation = makeAccusation(player);
+				accusationEvent.correct = checkAccusation(accusation, player);
+				game.accusationMade(player, accusation, accusationEvent.correct);
+				accusationEvent.gameId = game.id();
+				accusationEvent.playerUid = player.getUid();
+				accusationEvent.commit();
 				endTurn = true;
 				break;
 			case "View help":
@@ -450,24 +506,77 @@ public class TextClient {
 				throw new CluedoError("Error: Choice not recognised");
 		}
 		canUseStairs = false;
+		Metrics.CHOICE.recordSince(start);
 	}
 
+	/**
+	 * Lists the rooms a player can reach with their remaining steps and moves
+	 *  them into the one they choose, taking the shortest way.
+	 * @param player
+	 */
+	private static void moveToRoom(CharacterToken player){
+		List<CluedoGame.Room> rooms = new ArrayList<CluedoGame.Room>();
+		List<List<Direction>> paths = new ArrayList<List<Direction>>();
+		for(CluedoGame.Room r : CluedoGame.Room.values()){
+			List<Direction> path = board.pathToRoom(player, r, player.getRemainingSteps());
+			if(path != null && !path.isEmpty()){
+				rooms.add(r);
+				paths.add(path);
+			}
+		}
+		if(rooms.isEmpty()){
+			out.println("You cannot reach any room this turn.");
+			return;
+		}
+		for(int i = 0; i < rooms.size(); i++){
+			out.println((i + 1) + ") " + toCamelCase(rooms.get(i).toString()) + " (" + paths.get(i).size() + " steps)");
+		}
+		int choice = inputNumber("Select room number", 1, rooms.size()) - 1;
+		follow(player, paths.get(choice));
+	}
+	
+	/**
+	 * Asks a player for a square and moves them there, taking the shortest way,
+	 *  if they can reach it with their remaining steps.
+	 * @param player
+	 */
+	private static void moveToSquare(CharacterToken player){
+		int x = inputNumber("Enter column (1-" + board.width() + ")", 1, board.width()) - 1;
+		int y = inputNumber("Enter row (1-" + board.height() + ")", 1, board.height()) - 1;
+		List<Direction> path = board.pathTo(player, x, y, player.getRemainingSteps());
+		if(path == null || path.isEmpty()){
+			out.println("You cannot reach that square this turn.");
+			return;
+		}
+		follow(player, path);
+	}
+	
+	/**
+	 * Moves a player along a path, using up a step for each square,
+	 *  and shows the board once they get there.
+	 */
+	private static void follow(CharacterToken player, List<Direction> path){
+		board.follow(player, path);
+		player.setRemainingSteps(player.getRemainingSteps() - path.size());
+		board.printBoard(out);
+	}
+	
 	/**
 	 * Displays a list of options for the player and returns the desired move to execute.
 	 * @param player
 	 * @param board
 	 */
 	private static String getPlayerChoice(CharacterToken player) {
-		System.out.println("\n (player " + player.getUid() + ": " + player.getToken() + ") you have " 
+		out.println("\n (player " + player.getUid() + ": " + player.getToken() + ") you have " 
 				+ player.getRemainingSteps() + " step(s) remaining");
-		System.out.println("Please make a choice: ");
+		out.println("Please make a choice: ");
 		// get player options
 		List<String> options = playerOptions(player);
 		for(int i=0; i<options.size(); i++){
-			System.out.println((i+1) + ") " + options.get(i));
+			out.println((i+1) + ") " + options.get(i));
 		}
 		// return player choice
-		return options.get(inputNumber("Select option number", 1, options.size()) - 1);
+		return inputChoice("Select option number", options);
 	}
 	
 	/**
@@ -477,6 +586,7 @@ public class TextClient {
 	 * @return list of options
 	 */
 	private static List<String> playerOptions(CharacterToken player){
+		long start = Metrics.now();
 		List<String> options = new ArrayList<String>();
 		// checks which directions the player can move
 		if(player.getRemainingSteps() > 0){
@@ -492,6 +602,9 @@ public class TextClient {
 			if(board.canMoveWest(player)){
 				options.add("Move West.");
 			}
+			// whole moves, planned by the board
+			options.add("Move to room.");
+			options.add("Move to square.");
 		}
 		if(board.inRoom(player)){
 			// if the player begins the turn in a corner room
@@ -507,6 +620,7 @@ public class TextClient {
 		options.add("Look at clues."); // shows unused cards
 		options.add("View help");
 		options.add("End turn.");
+		Metrics.OPTIONS.recordSince(start);
 		return options;
 	}
 	
@@ -515,61 +629,63 @@ public class TextClient {
 	 * @param player
 	 */
 	private static void viewGameEnd(CharacterToken player){
-			  System.out.println("______  _______ _______ _______       _____  _        _ _______  _____");
-			  System.out.println("|       |     | |  |  | |            |     |  \\      /  |       |     \\");
-			  System.out.println("|  ____ |_____| |  |  | |______      |     |   \\    /   |______ |_____/");
-			  System.out.println("|     | |     | |  |  | |            |     |    \\  /    |       |    \\");
-			  System.out.println("|_____| |     | |  |  | |______      |_____|     \\/     |______ |     \\_");      
+			  out.println("______  _______ _______ _______       _____  _        _ _______  _____");
+			  out.println("|       |     | |  |  | |            |     |  \\      /  |       |     \\");
+			  out.println("|  ____ |_____| |  |  | |______      |     |   \\    /   |______ |_____/");
+			  out.println("|     | |     | |  |  | |            |     |    \\  /    |       |    \\");
+			  out.println("|_____| |     | |  |  | |______      |_____|     \\/     |______ |     \\_");      
 		if(gameWon){   
-			System.out.println("\t\t\t" + player.getName() + " solved the crime!");
+			out.println("\t\t\t" + player.getName() + " solved the crime!");
 		}
 		else{
-			System.out.println("\t\t\tThe crime goes unsolved");
+			out.println("\t\t\tThe crime goes unsolved");
 		}
 		gameWon = true; // to end the game
+		out.flush();
 	}
 	
 	/**
 	 * Prints out a helper guide for the player
 	 */
 	public static void viewHelp(){
-		System.out.println("----------------- CLUEDO GUIDE -------------------");
-		System.out.println("Players' tokens are represented by unqiue ID numbers");
-		System.out.println();
-		System.out.println("'x' represents a wall tile");
-		System.out.println();
-		System.out.println("CAPITAL LETTERS represent a room, where: ");
-		System.out.println("- 'K' represents (K)itchen");
-		System.out.println("- 'B' represents (B)all Room");
-		System.out.println("- 'C' represents (C)onservatory");
-		System.out.println("- 'I' represents B(I)lliard Room");
-		System.out.println("- 'L' represents (L)ibrary");
-		System.out.println("- 'S' represents (S)tudy");
-		System.out.println("- 'H' represents (H)all");
-		System.out.println("- 'O' represents L(O)unge");
-		System.out.println("- 'N' represents Di(N)ing Room");
-		System.out.println();
-		System.out.println("'n', 's', 'w' and 'e' represent a doorway to a room, where: ");
-		System.out.println("- 'n' means only a \"Move North\" can enter the room");
-		System.out.println("- 's' means only a \"Move South\" can enter the room");
-		System.out.println("- 'w' means only a \"Move West\" can enter the room");
-		System.out.println("- 'e' means only a \"Move East\" can enter the room");
-		System.out.println();
-		System.out.println("Weapons are represented by symbols, where: ");
-		System.out.println("- '+' represents Candlestick");
-		System.out.println("- '-' represents Dagger");
-		System.out.println("- '/' represents Lead Pipe");
-		System.out.println("- '*' represents Revolver");
-		System.out.println("- '=' represents Rope");
-		System.out.println("- '?' represents Spanner");
-		System.out.println("------------------------------------------------------");
-		System.out.println();
+		out.println("----------------- CLUEDO GUIDE -------------------");
+		out.println("Players' tokens are represented by unqiue ID numbers");
+		out.println();
+		out.println("'x' represents a wall tile");
+		out.println();
+		out.println("CAPITAL LETTERS represent a room, where: ");
+		out.println("- 'K' represents (K)itchen");
+		out.println("- 'B' represents (B)all Room");
+		out.println("- 'C' represents (C)onservatory");
+		out.println("- 'I' represents B(I)lliard Room");
+		out.println("- 'L' represents (L)ibrary");
+		out.println("- 'S' represents (S)tudy");
+		out.println("- 'H' represents (H)all");
+		out.println("- 'O' represents L(O)unge");
+		out.println("- 'N' represents Di(N)ing Room");
+		out.println();
+		out.println("'n', 's', 'w' and 'e' represent a doorway to a room, where: ");
+		out.println("- 'n' means only a \"Move North\" can enter the room");
+		out.println("- 's' means only a \"Move South\" can enter the room");
+		out.println("- 'w' means only a \"Move West\" can enter the room");
+		out.println("- 'e' means only a \"Move East\" can enter the room");
+		out.println();
+		out.println("Weapons are represented by symbols, where: ");
+		out.println("- '+' represents Candlestick");
+		out.println("- '-' represents Dagger");
+		out.println("- '/' represents Lead Pipe");
+		out.println("- '*' represents Revolver");
+		out.println("- '=' represents Rope");
+		out.println("- '?' represents Spanner");
+		out.println("------------------------------------------------------");
+		out.println();
 	}
 
 	public static void main(String[] args){
 		// check number of arguments
 		if (args.length != 1) {
-			System.out.println("command: java TextClient gameBoard.txt");
+			out.println("command: java TextClient gameBoard.txt");
+			out.flush();
 			System.exit(1);
 		}
 
@@ -579,59 +695,85 @@ public class TextClient {
 
 		// check the file exists
 		if (!file.exists()) {
-			System.out.println(boardName + " does not exist in current directory.");
+			out.println(boardName + " does not exist in current directory.");
+			out.flush();
 			System.exit(2);
 		}
 
 		// check file type
 		if (!boardName.toLowerCase().endsWith(".txt")) {
-			System.out.println("Only .txt file is accepted.");
+			out.println("Only .txt file is accepted.");
+			out.flush();
 			System.exit(3);
 		}	                                   
 		                                   
 		// Print banner
-		System.out.println(" \t_______ ___     __   __ _______ ______  _______   _______ _______ ____ ___ ");
-		System.out.println("\t|     __|   |   |  | |  |       |      ||       | |       |  _    |    |   |");
-		System.out.println("\t|    |  |   |   |  | |  |    ___|  _    |   _   | |____   | | |   ||   |   |_ _"); 
-		System.out.println("\t|    |  |   |   |  |_|  |   |___| | |   |  | |  |  ____|  | | |   ||   |    _  |");
-		System.out.println("\t|    |  |   |___|       |    ___| |_|   |  |_|  | | ______| |_|   ||   |   | | |");
-		System.out.println("\t|    |__|       |       |   |___|       |       | | |_____|       ||   |   |_| |");
-		System.out.println("\t|_______|_______|_______|_______|______||_______| |_______|_______||___|_______|");
-		System.out.println("\t          +-+-+-+-+-+-+-+ +-+-+-+-+-+ +-+ +-+-+-+-+-+ +-+-+-+-+-+-+-+");
-		System.out.println("\t          |P|a|t|r|i|c|k| |E|v|a|n|s| |&| |M|a|r|i|a| |L|e|g|a|s|p|i|");
-		System.out.println("\t          +-+-+-+-+-+-+-+ +-+-+-+-+-+ +-+ +-+-+-+-+-+ +-+-+-+-+-+-+-+");
-		System.out.println(" ");
+		out.println(" \t_______ ___     __   __ _______ ______  _______   _______ _______ ____ ___ ");
+		out.println("\t|     __|   |   |  | |  |       |      ||       | |       |  _    |    |   |");
+		out.println("\t|    |  |   |   |  | |  |    ___|  _    |   _   | |____   | | |   ||   |   |_ _"); 
+		out.println("\t|    |  |   |   |  |_|  |   |___| | |   |  | |  |  ____|  | | |   ||   |    _  |");
+		out.println("\t|    |  |   |___|       |    ___| |_|   |  |_|  | | ______| |_|   ||   |   | | |");
+		out.println("\t|    |__|       |       |   |___|       |       | | |_____|       ||   |   |_| |");
+		out.println("\t|_______|_______|_______|_______|______||_______| |_______|_______||___|_______|");
+		out.println("\t          +-+-+-+-+-+-+-+ +-+-+-+-+-+ +-+ +-+-+-+-+-+ +-+-+-+-+-+-+-+");
+		out.println("\t          |P|a|t|r|i|c|k| |E|v|a|n|s| |&| |M|a|r|i|a| |L|e|g|a|s|p|i|");
+		out.println("\t          +-+-+-+-+-+-+-+ +-+-+-+-+-+ +-+ +-+-+-+-+-+ +-+-+-+-+-+-+-+");
+		out.println(" ");
+		
+		// expose the metrics for monitoring
+		Metrics.registerMBean();
+		long period = Long.getLong("cluedo.metrics.period", 0);
+		if(period > 0)
+			Metrics.startLogging(period);
+		
+		playGame(boardName);
+	}
+	
+	/**
+	 * Reads the players from the input and plays a game 
+	 *  on the given board until it is won or every player has lost.
+	 * @param boardName
+	 * @return the number of turns played
+	 */
+	public static int playGame(String boardName){
+		// reset any state left over from a previous game
+		uid = 0;
+		endTurn = false;
+		canUseStairs = false;
+		gameWon = false;
 		
 		// get number of players in game
 		int nplayers = inputNumber("Enter number of players (3-6)", 3, 6);
 		// get player information
 		ArrayList<CharacterToken> players = inputPlayers(nplayers);
 		// print player information
-		System.out.println("Player infomation: ");
+		out.println("Player infomation: ");
 		for(CharacterToken c: players){
-			System.out.println("player " + c.getUid() + ": " + c.getToken() + " played by " + c.getName());
+			out.println("player " + c.getUid() + ": " + c.getToken() + " played by " + c.getName());
 		}
 			
 		// create a new cluedo game
 		game = new CluedoGame(nplayers, players, boardName);
-		board = CluedoGame.board();
+		game.setDice(Dice.parse(System.getProperty("cluedo.dice", "1d6")));
+		board = game.board();
 		
-		System.out.println("\nCards have been dealt, the game begins!");
+		out.println("\nCards have been dealt, the game begins!");
 		// print out any unused cards
 		if(!game.unusedCards().isEmpty()){
-			System.out.print(" Extra cards: ");
+			out.print(" Extra cards: ");
 			boolean firstTime = true;
 			for(Card c : game.unusedCards()){
 				if (!firstTime) {
-					System.out.print(", ");
+					out.print(", ");
 				}
 				firstTime = false;
-				System.out.print(toCamelCase(c.toString()));
+				out.print(toCamelCase(c.toString()));
 			}
 		}
-		System.out.println(" ");
+		out.println(" ");
 		
 		// now the game begins
+		int turns = 0;
 		Random die = new Random();
 		// loop until game ends
 		while(!gameWon){
@@ -639,15 +781,21 @@ public class TextClient {
 				// only give turns to players
 				if(!player.isPlayer())
 					continue;
+				turns++;
+				game.setTurn(game.players().indexOf(player));
+				Metrics.increment(Metrics.TURNS);
+				TurnEvent turnEvent = new TurnEvent();
+				turnEvent.begin();
 				// displays banner and clears console for next player
 				readyNextPlayer();
 				// roll the dice
-				int roll = die.nextInt(6) + 1;
+				int roll = game.dice().roll(die);
 				player.setRemainingSteps(roll);
-				board.toString(); // print the board
-				System.out.println();
+				game.diceRolled(player, roll);
+				board.printBoard(out); // print the board
+				out.println();
 				// print players roll
-				System.out.print("(player " + player.getUid() + ": " + player.getToken() + ") rolls a " + roll);
+				out.print("(player " + player.getUid() + ": " + player.getToken() + ") rolls a " + roll);
 				player.suggested(false); // resets players suggestion field
 				// executes player's move
 				while(player.getRemainingSteps() >= 0 && !endTurn){
@@ -656,9 +804,18 @@ public class TextClient {
 				// resets for next player
 				canUseStairs = true;
 				endTurn = false;
-				System.out.println();
+				out.println();
+				turnEvent.gameId = game.id();
+				turnEvent.playerUid = player.getUid();
+				turnEvent.roll = roll;
+				turnEvent.commit();
+				// no more turns once the game is over
+				if(gameWon)
+					break;
 			}
 		}
+		out.flush();
+		return turns;
 	}
 
 	//============================//
@@ -696,4 +853,40 @@ public class TextClient {
 	public Board board(){
 		return TextClient.board;
 	}
+	
+	/**
+	 * Sets where this text client displays its text.
+	 * @param sink
+	 */
+	public void setOutput(OutputSink sink) {
+		if(sink == null)
+			throw new CluedoError("Null parameters: setOutput()");
+		out = sink;
+	}
+	
+	/**
+	 * Returns where this text client displays its text.
+	 * @return
+	 */
+	public OutputSink output() {
+		return TextClient.out;
+	}
+	
+	/**
+	 * Sets where this text client reads its input from.
+	 * @param reader
+	 */
+	public void setInput(BufferedReader reader) {
+		if(reader == null)
+			throw new CluedoError("Null parameters: setInput()");
+		input = reader;
+	}
+	
+	/**
+	 * Returns where this text client reads its input.
+	 * @return
+	 */
+	public BufferedReader input() {
+		return TextClient.input;
+	}
 }
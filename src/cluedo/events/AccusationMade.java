@@ -0,0 +1,73 @@
+package cluedo.events;
+
+import cluedo.tokens.Card;
+import cluedo.tokens.CharacterToken;
+
+/**
+ * A player accused a suspect, room and weapon, and it was checked against the solution.
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public final class AccusationMade extends GameEvent {
+
+	private final CharacterToken accuser;
+	private final Card suspect;
+	private final Card room;
+	private final Card weapon;
+	private final boolean correct;
+
+	AccusationMade(long gameId, long sequence, CharacterToken accuser, Card[] accusation, boolean correct) {
+		super(gameId, sequence);
+		this.accuser = accuser;
+		this.suspect = accusation[0];
+		this.room = accusation[1];
+		this.weapon = accusation[2];
+		this.correct = correct;
+	}
+
+	/**
+	 * Returns the player who made the accusation.
+	 * @return
+	 */
+	public CharacterToken accuser() {
+		return accuser;
+	}
+
+	/**
+	 * Returns the suspect accused.
+	 * @return
+	 */
+	public Card suspect() {
+		return suspect;
+	}
+
+	/**
+	 * Returns the room accused.
+	 * @return
+	 */
+	public Card room() {
+		return room;
+	}
+
+	/**
+	 * Returns the weapon accused.
+	 * @return
+	 */
+	public Card weapon() {
+		return weapon;
+	}
+
+	/**
+	 * Returns true if the accusation was the solution.
+	 * @return
+	 */
+	public boolean correct() {
+		return correct;
+	}
+
+	@Override
+	public String toString() {
+		return accuser.getName() + " accused " + suspect + " in the " + room + " with the " + weapon + (correct ? ", correct" : ", not correct");
+	}
+}
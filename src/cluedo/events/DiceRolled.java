@@ -0,0 +1,42 @@
+package cluedo.events;
+
+import cluedo.tokens.CharacterToken;
+
+/**
+ * A player rolled the dice at the start of their turn.
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public final class DiceRolled extends GameEvent {
+
+	private final CharacterToken player;
+	private final int roll;
+
+	DiceRolled(long gameId, long sequence, CharacterToken player, int roll) {
+		super(gameId, sequence);
+		this.player = player;
+		this.roll = roll;
+	}
+
+	/**
+	 * Returns the player who rolled.
+	 * @return
+	 */
+	public CharacterToken player() {
+		return player;
+	}
+
+	/**
+	 * Returns the total rolled.
+	 * @return
+	 */
+	public int roll() {
+		return roll;
+	}
+
+	@Override
+	public String toString() {
+		return player.getName() + " rolled " + roll;
+	}
+}
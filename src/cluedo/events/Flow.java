@@ -0,0 +1,78 @@
+package cluedo.events;
+
+/**
+ * The interfaces of a stream of items with back-pressure, as in the
+ *  java.util.concurrent.Flow of later versions of Java, so that streams
+ *  written against these can move over to those by changing the import.
+ *
+ * A subscriber is given a subscription when it subscribes, and is sent
+ *  no more items than it has asked for with {@link Subscription#request(long)}.
+ *  The methods of a subscriber are never called at the same time.
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public final class Flow {
+
+	private Flow() {
+	}
+
+	/**
+	 * A source of items for any number of subscribers.
+	 */
+	public static interface Publisher<T> {
+
+		/**
+		 * Adds a subscriber, which is sent a subscription before any items.
+		 * @param subscriber
+		 */
+		public void subscribe(Subscriber<? super T> subscriber);
+	}
+
+	/**
+	 * A receiver of items from a publisher.
+	 */
+	public static interface Subscriber<T> {
+
+		/**
+		 * Called once, before any other method, with the subscription
+		 *  through which items are asked for.
+		 * @param subscription
+		 */
+		public void onSubscribe(Subscription subscription);
+
+		/**
+		 * Called with each item asked for.
+		 * @param item
+		 */
+		public void onNext(T item);
+
+		/**
+		 * Called once if the stream fails, after which nothing more is sent.
+		 * @param error
+		 */
+		public void onError(Throwable error);
+
+		/**
+		 * Called once when there are no more items, after which nothing more is sent.
+		 */
+		public void onComplete();
+	}
+
+	/**
+	 * The link between a publisher and one of its subscribers.
+	 */
+	public static interface Subscription {
+
+		/**
+		 * Asks for a number more items. Long.MAX_VALUE asks for every item.
+		 * @param n
+		 */
+		public void request(long n);
+
+		/**
+		 * Asks for no more items to be sent.
+		 */
+		public void cancel();
+	}
+}
@@ -0,0 +1,36 @@
+package cluedo.events;
+
+/**
+ * A change to a game, as sent to the subscribers of its {@link GameEventPublisher}.
+ *  Each change is made into one event which every subscriber is sent, so
+ *  events cannot be changed once made.
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public abstract class GameEvent {
+
+	private final long gameId;
+	private final long sequence;
+
+	GameEvent(long gameId, long sequence) {
+		this.gameId = gameId;
+		this.sequence = sequence;
+	}
+
+	/**
+	 * Returns the id of the game which changed.
+	 * @return
+	 */
+	public long gameId() {
+		return gameId;
+	}
+
+	/**
+	 * Returns the number of the change within its game, counting from 1.
+	 * @return
+	 */
+	public long sequence() {
+		return sequence;
+	}
+}
@@ -0,0 +1,248 @@
+package cluedo.events;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cluedo.control.CluedoError;
+import cluedo.control.CluedoGame;
+import cluedo.control.GameListener;
+import cluedo.tokens.Card;
+import cluedo.tokens.CharacterToken;
+import cluedo.tokens.GameToken;
+
+/**
+ * Publishes the changes to a game as a stream of typed events. Each change is
+ *  made into one event, which is handed to every subscriber as it is, and
+ *  no event is made while there are no subscribers.
+ *
+ * Each subscriber is sent only as many events as it has asked for. Events
+ *  it has not asked for yet wait in its own backlog, up to a set size, so a
+ *  slow subscriber never holds up the game or the other subscribers. One
+ *  that falls further behind than that is sent an error and dropped.
+ *  Events are sent on the thread which changed the game, or on the thread
+ *  asking for more if they were waiting.
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class GameEventPublisher implements Flow.Publisher<GameEvent>, GameListener {
+
+	public static final int DEFAULT_BACKLOG = 256;
+
+	private final CluedoGame game;
+	private final int backlog;
+	private final List<Link> links = new CopyOnWriteArrayList<Link>();
+	private final AtomicLong sequence = new AtomicLong();
+
+	/**
+	 * Creates a publisher of the changes to a game, which must then be added
+	 *  to the game's listeners. {@link CluedoGame#events()} does both.
+	 * @param game
+	 */
+	public GameEventPublisher(CluedoGame game) {
+		this(game, DEFAULT_BACKLOG);
+	}
+
+	/**
+	 * Creates a publisher which keeps up to a given number of events waiting
+	 *  for each subscriber.
+	 * @param game
+	 * @param backlog
+	 */
+	public GameEventPublisher(CluedoGame game, int backlog) {
+		if(game == null)
+			throw new CluedoError("Null parameters: GameEventPublisher()");
+		if(backlog < 1)
+			throw new CluedoError("Invalid backlog: " + backlog);
+		this.game = game;
+		this.backlog = backlog;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super GameEvent> subscriber) {
+		if(subscriber == null)
+			throw new CluedoError("Null parameters: subscribe()");
+		Link link = new Link(subscriber);
+		subscriber.onSubscribe(link);
+		if(!link.cancelled)
+			links.add(link);
+	}
+
+	/**
+	 * Returns the number of subscribers.
+	 * @return
+	 */
+	public int subscribers() {
+		return links.size();
+	}
+
+	/**
+	 * Tells every subscriber there will be no more events, once they have
+	 *  been sent the events waiting for them.
+	 */
+	public void complete() {
+		for(Link link : links){
+			link.complete();
+		}
+		links.clear();
+	}
+
+	@Override
+	public void tokenMoved(GameToken token, int x, int y) {
+		if(!links.isEmpty())
+			publish(new TokenMoved(game.id(), sequence.incrementAndGet(), token, x, y));
+	}
+
+	@Override
+	public void diceRolled(CharacterToken player, int roll) {
+		if(!links.isEmpty())
+			publish(new DiceRolled(game.id(), sequence.incrementAndGet(), player, roll));
+	}
+
+	@Override
+	public void suggestionMade(CharacterToken suggester, Card[] suggestion, boolean refuted) {
+		if(!links.isEmpty())
+			publish(new SuggestionMade(game.id(), sequence.incrementAndGet(), suggester, suggestion, refuted));
+	}
+
+	@Override
+	public void accusationMade(CharacterToken accuser, Card[] accusation, boolean correct) {
+		if(!links.isEmpty())
+			publish(new AccusationMade(game.id(), sequence.incrementAndGet(), accuser, accusation, correct));
+	}
+
+	/**
+	 * Hands an event to every subscriber.
+	 */
+	private void publish(GameEvent event) {
+		for(Link link : links){
+			link.offer(event);
+		}
+	}
+
+	/**
+	 * The subscription of one subscriber, with the events waiting for it.
+	 *  Whichever thread adds an event or asks for more sends what it can,
+	 *  unless another thread is already sending, in which case that thread
+	 *  goes round again, so the subscriber is only ever called by one thread.
+	 */
+	private class Link implements Flow.Subscription {
+
+		private final Flow.Subscriber<? super GameEvent> subscriber;
+		private final Queue<GameEvent> waiting = new ConcurrentLinkedQueue<GameEvent>();
+		private final AtomicInteger size = new AtomicInteger(); // events waiting
+		private final AtomicLong requested = new AtomicLong(); // events asked for and not yet sent
+		private final AtomicInteger work = new AtomicInteger(); // times asked to send, while one thread sends
+		private volatile boolean cancelled;
+		private volatile boolean completed;
+		private volatile Throwable error;
+		private boolean done; // told of the end, only used by the sending thread
+
+		Link(Flow.Subscriber<? super GameEvent> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void request(long n) {
+			if(n <= 0){
+				fail(new CluedoError("Must request a positive number of events: " + n));
+				return;
+			}
+			long r;
+			do {
+				r = requested.get();
+				if(r == Long.MAX_VALUE)
+					break;
+			} while(!requested.compareAndSet(r, r + n < 0 ? Long.MAX_VALUE : r + n));
+			send();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			links.remove(this);
+		}
+
+		void offer(GameEvent event) {
+			if(cancelled)
+				return;
+			// when nothing is waiting and the event was asked for, send it straight away
+			if(work.get() == 0 && work.compareAndSet(0, 1)){
+				long r = requested.get();
+				if(r != 0 && !done && waiting.isEmpty()){
+					if(r != Long.MAX_VALUE)
+						requested.decrementAndGet();
+					subscriber.onNext(event);
+					int missed = work.decrementAndGet();
+					if(missed != 0)
+						sendLoop(missed); // asked to send again meanwhile
+					return;
+				}
+				int missed = work.decrementAndGet();
+				if(missed != 0)
+					sendLoop(missed);
+			}
+			if(size.incrementAndGet() > backlog){
+				fail(new CluedoError("Subscriber fell more than " + backlog + " events behind"));
+				return;
+			}
+			waiting.offer(event);
+			send();
+		}
+
+		void complete() {
+			completed = true;
+			send();
+		}
+
+		private void fail(Throwable e) {
+			error = e;
+			cancel();
+			send();
+		}
+
+		/**
+		 * Sends the events asked for, then any error or completion.
+		 */
+		private void send() {
+			if(work.getAndIncrement() == 0)
+				sendLoop(1);
+		}
+		
+		/**
+		 * Sends until no other thread has asked to send meanwhile, having
+		 *  been asked a given number of times.
+		 */
+		private void sendLoop(int missed) {
+			do {
+				if(!done){
+					long r = requested.get();
+					long sent = 0;
+					while(sent != r && error == null){
+						GameEvent e = waiting.poll();
+						if(e == null)
+							break;
+						size.decrementAndGet();
+						subscriber.onNext(e);
+						sent++;
+					}
+					if(sent != 0 && r != Long.MAX_VALUE)
+						requested.addAndGet(-sent);
+					if(error != null){
+						done = true;
+						waiting.clear();
+						subscriber.onError(error);
+					} else if(completed && waiting.isEmpty()){
+						done = true;
+						subscriber.onComplete();
+					}
+				}
+				missed = work.addAndGet(-missed);
+			} while(missed != 0);
+		}
+	}
+}
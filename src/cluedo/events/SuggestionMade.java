@@ -0,0 +1,73 @@
+package cluedo.events;
+
+import cluedo.tokens.Card;
+import cluedo.tokens.CharacterToken;
+
+/**
+ * A player suggested a suspect, room and weapon, and the other players were asked to refute it.
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public final class SuggestionMade extends GameEvent {
+
+	private final CharacterToken suggester;
+	private final Card suspect;
+	private final Card room;
+	private final Card weapon;
+	private final boolean refuted;
+
+	SuggestionMade(long gameId, long sequence, CharacterToken suggester, Card[] suggestion, boolean refuted) {
+		super(gameId, sequence);
+		this.suggester = suggester;
+		this.suspect = suggestion[0];
+		this.room = suggestion[1];
+		this.weapon = suggestion[2];
+		this.refuted = refuted;
+	}
+
+	/**
+	 * Returns the player who made the suggestion.
+	 * @return
+	 */
+	public CharacterToken suggester() {
+		return suggester;
+	}
+
+	/**
+	 * Returns the suspect suggested.
+	 * @return
+	 */
+	public Card suspect() {
+		return suspect;
+	}
+
+	/**
+	 * Returns the room suggested.
+	 * @return
+	 */
+	public Card room() {
+		return room;
+	}
+
+	/**
+	 * Returns the weapon suggested.
+	 * @return
+	 */
+	public Card weapon() {
+		return weapon;
+	}
+
+	/**
+	 * Returns true if another player showed a card.
+	 * @return
+	 */
+	public boolean refuted() {
+		return refuted;
+	}
+
+	@Override
+	public String toString() {
+		return suggester.getName() + " suggested " + suspect + " in the " + room + " with the " + weapon + (refuted ? ", refuted" : ", not refuted");
+	}
+}
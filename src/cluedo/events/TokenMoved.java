@@ -0,0 +1,52 @@
+package cluedo.events;
+
+import cluedo.tokens.GameToken;
+
+/**
+ * A token was moved to a new square, by a step, the stairs, or a suggestion.
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public final class TokenMoved extends GameEvent {
+
+	private final GameToken token;
+	private final int x;
+	private final int y;
+
+	TokenMoved(long gameId, long sequence, GameToken token, int x, int y) {
+		super(gameId, sequence);
+		this.token = token;
+		this.x = x;
+		this.y = y;
+	}
+
+	/**
+	 * Returns the token moved.
+	 * @return
+	 */
+	public GameToken token() {
+		return token;
+	}
+
+	/**
+	 * Returns the column moved to.
+	 * @return
+	 */
+	public int x() {
+		return x;
+	}
+
+	/**
+	 * Returns the row moved to.
+	 * @return
+	 */
+	public int y() {
+		return y;
+	}
+
+	@Override
+	public String toString() {
+		return token.getName() + " moved to " + x + ", " + y;
+	}
+}
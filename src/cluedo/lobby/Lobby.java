@@ -0,0 +1,226 @@
+package cluedo.lobby;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import cluedo.control.CluedoError;
+import cluedo.control.CluedoGame;
+import cluedo.metrics.Metrics;
+
+/**
+ * Collects waiting players into games of three to six players.
+ *  Players are queued in a number of shards, each with its own lock,
+ *  so that players joining from different threads rarely wait on each other.
+ *  A shard makes a match as soon as it holds a full game, and flush()
+ *  gathers up the players left over in every shard into smaller games.
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class Lobby {
+
+	public static final int MIN_PLAYERS = 3;
+	public static final int MAX_PLAYERS = 6;
+
+	private final Shard[] shards;
+	private final int mask;
+	private final int gameSize;
+	private final MatchListener listener;
+	private final AtomicLong nextTicket = new AtomicLong();
+
+	/**
+	 * Creates a lobby.
+	 * @param shards the number of queues, rounded up to a power of two
+	 * @param gameSize the number of players in a full game
+	 * @param listener told of every match
+	 */
+	public Lobby(int shards, int gameSize, MatchListener listener) {
+		if(gameSize < MIN_PLAYERS || gameSize > MAX_PLAYERS)
+			throw new CluedoError("A game needs three to six players");
+		if(listener == null)
+			throw new CluedoError("Lobby needs a match listener");
+		int n = 1;
+		while(n < shards)
+			n <<= 1;
+		this.shards = new Shard[n];
+		for(int i = 0; i < n; i++){
+			this.shards[i] = new Shard(gameSize);
+		}
+		this.mask = n - 1;
+		this.gameSize = gameSize;
+		this.listener = listener;
+	}
+
+	/**
+	 * Adds a player to the lobby, returning their ticket.
+	 *  The player is given the character they prefer if no one
+	 *  else in their match asked for it first.
+	 * @param name
+	 * @param preference may be null
+	 * @return
+	 */
+	public long join(String name, CluedoGame.Character preference) {
+		if(name == null)
+			throw new CluedoError("Player name cannot be null");
+		Waiting w = new Waiting(name, preference, nextTicket.incrementAndGet(), Metrics.now());
+		// each thread sticks to one shard, keeping the locks uncontended
+		Shard shard = shards[(int)Thread.currentThread().getId() & mask];
+		List<Waiting> full = shard.add(w);
+		if(full != null)
+			matched(full);
+		return w.ticket;
+	}
+
+	/**
+	 * Puts every waiting player into matches, full games first and then
+	 *  a smaller one if there are at least three players left.
+	 *  Fewer than three players are put back to wait for more.
+	 * @return the number of matches made
+	 */
+	public int flush() {
+		List<Waiting> all = new ArrayList<Waiting>();
+		for(Shard shard : shards){
+			shard.drainTo(all);
+		}
+		// the longest waiting players are matched first
+		Collections.sort(all, new Comparator<Waiting>() {
+			public int compare(Waiting a, Waiting b) {
+				return Long.compare(a.ticket, b.ticket);
+			}
+		});
+		int matches = 0;
+		int i = 0;
+		while(all.size() - i >= MIN_PLAYERS){
+			int n = Math.min(gameSize, all.size() - i);
+			matched(new ArrayList<Waiting>(all.subList(i, i + n)));
+			i += n;
+			matches++;
+		}
+		// put back the players left over
+		for(; i < all.size(); i++){
+			List<Waiting> full = shards[i & mask].add(all.get(i));
+			if(full != null){
+				matched(full);
+				matches++;
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * Returns the number of players waiting for a match.
+	 * @return
+	 */
+	public int waiting() {
+		int n = 0;
+		for(Shard shard : shards){
+			n += shard.size();
+		}
+		return n;
+	}
+
+	/**
+	 * Returns the number of shards.
+	 * @return
+	 */
+	public int shards() {
+		return shards.length;
+	}
+
+	/**
+	 * Records how long the players waited and hands the match to the listener.
+	 */
+	private void matched(List<Waiting> waiting) {
+		if(Metrics.ENABLED){
+			long now = Metrics.now();
+			for(Waiting w : waiting){
+				Metrics.LOBBY_WAIT.record(now - w.joined);
+			}
+			Metrics.MATCHES.increment();
+		}
+		listener.matched(new Match(waiting));
+	}
+
+	/**
+	 * A player waiting in the lobby.
+	 */
+	static class Waiting {
+
+		final String name;
+		final CluedoGame.Character preference;
+		final long ticket;
+		final long joined; // Metrics.now(), only for the wait metric
+
+		Waiting(String name, CluedoGame.Character preference, long ticket, long joined) {
+			this.name = name;
+			this.preference = preference;
+			this.ticket = ticket;
+			this.joined = joined;
+		}
+	}
+
+	/**
+	 * One queue of waiting players, guarded by its own lock.
+	 *  Holds at most one game's worth of players.
+	 */
+	private static class Shard {
+
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Waiting[] queue;
+		private int size;
+
+		Shard(int gameSize) {
+			this.queue = new Waiting[gameSize];
+		}
+
+		/**
+		 * Adds a player, returning the players of a full game if this filled it.
+		 */
+		List<Waiting> add(Waiting w) {
+			lock.lock();
+			try {
+				queue[size++] = w;
+				if(size < queue.length)
+					return null;
+				List<Waiting> full = new ArrayList<Waiting>(size);
+				for(int i = 0; i < size; i++){
+					full.add(queue[i]);
+					queue[i] = null;
+				}
+				size = 0;
+				return full;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Removes every waiting player, adding them to a list.
+		 */
+		void drainTo(List<Waiting> out) {
+			lock.lock();
+			try {
+				for(int i = 0; i < size; i++){
+					out.add(queue[i]);
+					queue[i] = null;
+				}
+				size = 0;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		int size() {
+			lock.lock();
+			try {
+				return size;
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+}
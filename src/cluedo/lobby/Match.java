@@ -0,0 +1,100 @@
+package cluedo.lobby;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import cluedo.control.CluedoGame;
+import cluedo.tokens.CharacterToken;
+
+/**
+ * A group of waiting players which the lobby has put together for one game,
+ *  each given a different character.
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class Match {
+
+	private final long[] tickets;
+	private final List<CharacterToken> players;
+	private final int size;
+
+	/**
+	 * Assigns characters to the waiting players of a match. Players get the
+	 *  character they asked for in the order they joined, unless it has
+	 *  already been taken, then the rest get the first characters left over.
+	 * @param waiting
+	 */
+	Match(List<Lobby.Waiting> waiting) {
+		this.size = waiting.size();
+		this.tickets = new long[size];
+		CluedoGame.Character[] assigned = new CluedoGame.Character[size];
+		Set<CluedoGame.Character> free = EnumSet.allOf(CluedoGame.Character.class);
+		for(int i = 0; i < size; i++){
+			Lobby.Waiting w = waiting.get(i);
+			tickets[i] = w.ticket;
+			if(w.preference != null && free.remove(w.preference))
+				assigned[i] = w.preference;
+		}
+		for(int i = 0; i < size; i++){
+			if(assigned[i] == null){
+				assigned[i] = free.iterator().next();
+				free.remove(assigned[i]);
+			}
+		}
+		// the players followed by the spare characters, as the game expects
+		List<CharacterToken> players = new ArrayList<CharacterToken>(6);
+		int uid = 0;
+		for(int i = 0; i < size; i++){
+			players.add(new CharacterToken(waiting.get(i).name, assigned[i], true, ++uid));
+		}
+		for(CluedoGame.Character c : free){
+			players.add(new CharacterToken("computer", c, false, ++uid));
+		}
+		this.players = Collections.unmodifiableList(players);
+	}
+
+	/**
+	 * Returns the number of players in this match.
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the lobby ticket of the player in a given seat.
+	 * @param seat
+	 * @return
+	 */
+	public long ticket(int seat) {
+		return tickets[seat];
+	}
+
+	/**
+	 * Returns all six character tokens, the players first in seat order.
+	 *  These describe the seats of the match, and are not in any game.
+	 * @return
+	 */
+	public List<CharacterToken> players() {
+		return players;
+	}
+
+	/**
+	 * Starts a new game for this match on a given board, with new tokens
+	 *  for the seats, as a token can only be in one game. A match can be
+	 *  started any number of times.
+	 * @param boardFile
+	 * @return
+	 */
+	public CluedoGame start(String boardFile) {
+		List<CharacterToken> tokens = new ArrayList<CharacterToken>(players.size());
+		for(CharacterToken p : players){
+			tokens.add(new CharacterToken(p.getName(), p.getToken(), p.isPlayer(), p.getUid()));
+		}
+		return new CluedoGame(size, tokens, boardFile);
+	}
+}
@@ -0,0 +1,14 @@
+package cluedo.lobby;
+
+/**
+ * Called by the lobby whenever it has put together a match.
+ *  Called on the thread of the player who completed the match,
+ *  so it should hand off any slow work such as starting the game.
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public interface MatchListener {
+
+	public void matched(Match match);
+}
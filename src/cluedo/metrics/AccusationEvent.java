@@ -0,0 +1,29 @@
+package cluedo.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event timing an accusation.
+ * 
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+@Name("cluedo.Accusation")
+@Label("Accusation")
+@Category("Cluedo")
+@Description("An accusation being made and checked against the solution")
+public class AccusationEvent extends Event {
+
+	@Label("Game")
+	public long gameId;
+
+	@Label("Player")
+	public int playerUid;
+
+	@Label("Correct")
+	public boolean correct;
+}
@@ -0,0 +1,26 @@
+package cluedo.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event timing the creation of a game.
+ * 
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+@Name("cluedo.GameCreated")
+@Label("Game Created")
+@Category("Cluedo")
+@Description("A new game being set up: the solution chosen, the board parsed and the cards dealt")
+public class GameCreatedEvent extends Event {
+
+	@Label("Game")
+	public long gameId;
+
+	@Label("Players")
+	public int players;
+}
@@ -0,0 +1,327 @@
+package cluedo.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import cluedo.board.MoveTable;
+import cluedo.board.RoomTile;
+import cluedo.control.CluedoError;
+import cluedo.control.CluedoGame;
+import cluedo.control.CluedoGame.Room;
+import cluedo.control.GameListener;
+import cluedo.tokens.Card;
+import cluedo.tokens.CharacterToken;
+import cluedo.tokens.GameToken;
+
+/**
+ * Counts, over many games on one board, how often players step on each
+ *  square, go into and suggest in each room, and which rooms each roll of
+ *  the dice could reach from the square it was rolled on. Used to see how
+ *  balanced a custom board is.
+ *
+ * Games are fed in by adding the listener from {@link #recorder(CluedoGame)}
+ *  to each one, whether it is being played by bots or replayed from a save.
+ *  Each thread counts into its own arrays, so any number of games can be
+ *  recorded at once without the threads waiting on each other, and the
+ *  arrays are added up when the counts are read. Counts read while games
+ *  are still being recorded may be slightly behind.
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class Heatmap {
+
+	private static final Room[] ROOMS = Room.values();
+
+	private final String boardFile;
+	private final MoveTable table;
+	private final int width;
+	private final int height;
+	private final LongAdder games = new LongAdder();
+	private final Queue<Counts> all = new ConcurrentLinkedQueue<Counts>(); // every thread's counts
+	private final ThreadLocal<Counts> local = new ThreadLocal<Counts>() {
+		@Override
+		protected Counts initialValue() {
+			Counts c = new Counts(width * height);
+			all.add(c);
+			return c;
+		}
+	};
+
+	/**
+	 * Creates an empty heatmap for a board file.
+	 * @param boardFile
+	 */
+	public Heatmap(String boardFile) {
+		if(boardFile == null)
+			throw new CluedoError("Null parameters: Heatmap()");
+		this.boardFile = boardFile;
+		this.table = MoveTable.of(boardFile);
+		this.width = table.width();
+		this.height = table.height();
+	}
+
+	/**
+	 * Returns a listener which counts the moves, rolls and suggestions of a game.
+	 *  The game must be played on this heatmap's board.
+	 * @param game
+	 * @return
+	 */
+	public GameListener recorder(CluedoGame game) {
+		if(game == null)
+			throw new CluedoError("Null parameters: recorder()");
+		if(!boardFile.equals(game.boardFile()))
+			throw new CluedoError("Game is not on board " + boardFile + ": " + game.boardFile());
+		games.increment();
+		return new Recorder(game);
+	}
+
+	/**
+	 * Returns the board file the heatmap is for.
+	 * @return
+	 */
+	public String boardFile() {
+		return boardFile;
+	}
+
+	/**
+	 * Returns the number of games recorded.
+	 * @return
+	 */
+	public long games() {
+		return games.sum();
+	}
+
+	/**
+	 * Returns the number of times a player has stepped onto a square.
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public long visits(int x, int y) {
+		int square = square(x, y);
+		long sum = 0;
+		for(Counts c : all){
+			sum += c.visits[square];
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the number of times the dice have been rolled on a square.
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public long rolls(int x, int y) {
+		int square = square(x, y);
+		long sum = 0;
+		for(Counts c : all){
+			sum += c.rolls[square];
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the number of rolls on a square which could have reached a room,
+	 *  not counting rolls made in that room.
+	 * @param x
+	 * @param y
+	 * @param room
+	 * @return
+	 */
+	public long reached(int x, int y, Room room) {
+		int index = square(x, y) * ROOMS.length + room.ordinal();
+		long sum = 0;
+		for(Counts c : all){
+			sum += c.reached[index];
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the number of times a player has gone into a room from outside it.
+	 * @param room
+	 * @return
+	 */
+	public long entries(Room room) {
+		long sum = 0;
+		for(Counts c : all){
+			sum += c.entries[room.ordinal()];
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the number of suggestions made in a room.
+	 * @param room
+	 * @return
+	 */
+	public long suggestions(Room room) {
+		long sum = 0;
+		for(Counts c : all){
+			sum += c.suggestions[room.ordinal()];
+		}
+		return sum;
+	}
+
+	/**
+	 * Writes the counts as CSV: a table of each room's entries, suggestions and
+	 *  share of rolls which could reach it, then a grid of the squares for the
+	 *  visits, the rolls, and the share of rolls reaching each room.
+	 * @param out
+	 */
+	public void write(Writer out) throws IOException {
+		// add up every thread's counts once
+		Counts total = new Counts(width * height);
+		for(Counts c : all){
+			add(total.visits, c.visits);
+			add(total.rolls, c.rolls);
+			add(total.reached, c.reached);
+			add(total.entries, c.entries);
+			add(total.suggestions, c.suggestions);
+		}
+		long rolls = 0;
+		for(long r : total.rolls){
+			rolls += r;
+		}
+		out.write("board," + boardFile + "\n");
+		out.write("games," + games() + "\n");
+		out.write("rolls," + rolls + "\n");
+		out.write("\nroom,entries,suggestions,reachable\n");
+		for(Room room : ROOMS){
+			long reached = 0;
+			for(int s = 0; s < width * height; s++){
+				reached += total.reached[s * ROOMS.length + room.ordinal()];
+			}
+			out.write(room.name() + "," + total.entries[room.ordinal()] + "," + total.suggestions[room.ordinal()]
+					+ "," + share(reached, rolls) + "\n");
+		}
+		out.write("\nvisits\n");
+		StringBuilder line = new StringBuilder();
+		for(int y = 0; y < height; y++){
+			line.setLength(0);
+			for(int x = 0; x < width; x++){
+				line.append(x == 0 ? "" : ",").append(total.visits[y * width + x]);
+			}
+			out.write(line.append('\n').toString());
+		}
+		out.write("\nrolls\n");
+		for(int y = 0; y < height; y++){
+			line.setLength(0);
+			for(int x = 0; x < width; x++){
+				line.append(x == 0 ? "" : ",").append(total.rolls[y * width + x]);
+			}
+			out.write(line.append('\n').toString());
+		}
+		for(Room room : ROOMS){
+			out.write("\nreachable " + room.name() + "\n");
+			for(int y = 0; y < height; y++){
+				line.setLength(0);
+				for(int x = 0; x < width; x++){
+					int s = y * width + x;
+					line.append(x == 0 ? "" : ",");
+					if(total.rolls[s] > 0) // blank where no one rolled
+						line.append(share(total.reached[s * ROOMS.length + room.ordinal()], total.rolls[s]));
+				}
+				out.write(line.append('\n').toString());
+			}
+		}
+		out.flush();
+	}
+
+	/**
+	 * Returns the index of a square, checking it is on the board.
+	 */
+	private int square(int x, int y) {
+		if(x < 0 || x >= width || y < 0 || y >= height)
+			throw new CluedoError("Square off the board: " + x + ", " + y);
+		return y * width + x;
+	}
+
+	private static void add(long[] total, long[] counts) {
+		for(int i = 0; i < total.length; i++){
+			total[i] += counts[i];
+		}
+	}
+
+	private static String share(long part, long whole) {
+		return whole == 0 ? "0" : String.format("%.4f", (double)part / whole);
+	}
+
+	/**
+	 * The counts made by one thread. Only that thread writes to them.
+	 */
+	private static class Counts {
+		final long[] visits;
+		final long[] rolls;
+		final long[] reached; // by square, then room
+		final long[] entries = new long[ROOMS.length];
+		final long[] suggestions = new long[ROOMS.length];
+
+		Counts(int squares) {
+			this.visits = new long[squares];
+			this.rolls = new long[squares];
+			this.reached = new long[squares * ROOMS.length];
+		}
+	}
+
+	/**
+	 * Counts the changes to one game into the counts of whichever thread
+	 *  is playing it.
+	 */
+	private class Recorder implements GameListener {
+
+		private final CluedoGame game;
+		private final int[] rooms = new int[CluedoGame.Character.values().length]; // room each character is in, or -1
+
+		Recorder(CluedoGame game) {
+			this.game = game;
+			for(CharacterToken c : game.players()){
+				rooms[c.getToken().ordinal()] = roomAt(c.getXPos(), c.getYPos());
+			}
+		}
+
+		@Override
+		public void tokenMoved(GameToken token, int x, int y) {
+			if(!(token instanceof CharacterToken))
+				return;
+			Counts c = local.get();
+			c.visits[y * width + x]++;
+			int character = ((CharacterToken)token).getToken().ordinal();
+			int room = roomAt(x, y);
+			if(room >= 0 && room != rooms[character])
+				c.entries[room]++;
+			rooms[character] = room;
+		}
+
+		@Override
+		public void diceRolled(CharacterToken player, int roll) {
+			Counts c = local.get();
+			int x = player.getXPos(), y = player.getYPos();
+			int square = y * width + x;
+			c.rolls[square]++;
+			// the room already stood in is not reached by the roll
+			int mask = table.roomsWithin(x, y, roll) & ~table.roomsWithin(x, y, 0);
+			for(; mask != 0; mask &= mask - 1){
+				c.reached[square * ROOMS.length + Integer.numberOfTrailingZeros(mask)]++;
+			}
+		}
+
+		@Override
+		public void suggestionMade(CharacterToken suggester, Card[] suggestion, boolean refuted) {
+			local.get().suggestions[((Room)suggestion[1]).ordinal()]++;
+		}
+
+		/**
+		 * Returns the ordinal of the room on a square, or -1.
+		 */
+		private int roomAt(int x, int y) {
+			return game.board().getTile(x, y) instanceof RoomTile
+					? ((RoomTile)game.board().getTile(x, y)).name().ordinal() : -1;
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package cluedo.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies in nanoseconds with buckets of roughly equal 
+ *  relative size, in the style of an HDR histogram. Each power of two is 
+ *  split into 16 buckets, so recorded values are kept to within about 6%, 
+ *  and recording is a few atomic increments with no allocation.
+ * 
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BITS = 4; // 16 buckets per power of two
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	private static final int MAGNITUDES = 64 - SUB_BITS;
+	
+	private final String name;
+	private final AtomicLongArray buckets = new AtomicLongArray((MAGNITUDES + 1) * SUB_COUNT);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+	
+	/**
+	 * Creates an empty histogram.
+	 * @param name
+	 */
+	public LatencyHistogram(String name) {
+		this.name = name;
+	}
+	
+	/**
+	 * Returns the name of this histogram.
+	 * @return
+	 */
+	public String name() {
+		return name;
+	}
+	
+	/**
+	 * Records a latency.
+	 * @param nanos
+	 */
+	public void record(long nanos) {
+		if(nanos < 0)
+			nanos = 0;
+		buckets.incrementAndGet(bucket(nanos));
+		count.increment();
+		total.add(nanos);
+		long m = max.get();
+		while(nanos > m && !max.compareAndSet(m, nanos)){
+			m = max.get();
+		}
+	}
+	
+	/**
+	 * Records the time since a given System.nanoTime(), if metrics are enabled.
+	 * @param startNanos
+	 */
+	public void recordSince(long startNanos) {
+		if(Metrics.ENABLED)
+			record(System.nanoTime() - startNanos);
+	}
+	
+	/**
+	 * Returns the number of latencies recorded.
+	 * @return
+	 */
+	public long count() {
+		return count.sum();
+	}
+	
+	/**
+	 * Returns the mean latency in nanoseconds.
+	 * @return
+	 */
+	public double mean() {
+		long n = count.sum();
+		return n == 0 ? 0 : (double)total.sum() / n;
+	}
+	
+	/**
+	 * Returns the largest latency recorded in nanoseconds.
+	 * @return
+	 */
+	public long max() {
+		return max.get();
+	}
+	
+	/**
+	 * Returns the latency in nanoseconds below which the given 
+	 *  percentage of the recorded latencies fall.
+	 * @param percentile between 0 and 100
+	 * @return
+	 */
+	public long percentile(double percentile) {
+		long n = 0;
+		for(int i = 0; i < buckets.length(); i++){
+			n += buckets.get(i);
+		}
+		if(n == 0)
+			return 0;
+		long target = (long)Math.ceil(n * percentile / 100.0);
+		if(target < 1)
+			target = 1;
+		long seen = 0;
+		for(int i = 0; i < buckets.length(); i++){
+			seen += buckets.get(i);
+			if(seen >= target)
+				return Math.min(upperBound(i), max());
+		}
+		return max();
+	}
+	
+	/**
+	 * Clears all recorded latencies.
+	 */
+	public void reset() {
+		for(int i = 0; i < buckets.length(); i++){
+			buckets.set(i, 0);
+		}
+		count.reset();
+		total.reset();
+		max.set(0);
+	}
+	
+	/**
+	 * Returns the bucket a latency is counted in.
+	 * @param nanos
+	 * @return
+	 */
+	static int bucket(long nanos) {
+		// small values each get their own bucket
+		if(nanos < SUB_COUNT)
+			return (int)nanos;
+		int magnitude = 63 - Long.numberOfLeadingZeros(nanos); // at least SUB_BITS
+		int sub = (int)(nanos >>> (magnitude - SUB_BITS)) & (SUB_COUNT - 1);
+		return (magnitude - SUB_BITS + 1) * SUB_COUNT + sub;
+	}
+	
+	/**
+	 * Returns the largest latency counted in a bucket.
+	 * @param bucket
+	 * @return
+	 */
+	static long upperBound(int bucket) {
+		if(bucket < SUB_COUNT)
+			return bucket;
+		int magnitude = bucket / SUB_COUNT + SUB_BITS - 1;
+		long sub = bucket % SUB_COUNT;
+		long lower = (1L << magnitude) | (sub << (magnitude - SUB_BITS));
+		return lower + (1L << (magnitude - SUB_BITS)) - 1;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%-12s count=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus", 
+				name, count(), mean() / 1000.0, percentile(50) / 1000.0, 
+				percentile(99) / 1000.0, max() / 1000.0);
+	}
+}
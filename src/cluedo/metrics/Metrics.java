@@ -0,0 +1,275 @@
+package cluedo.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms for the parts of a turn, kept for the 
+ *  whole program. They can be read over JMX as "cluedo:type=Metrics" and 
+ *  logged periodically. Metrics are on unless the system property 
+ *  "cluedo.metrics.disabled" is set.
+ * 
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class Metrics {
+	
+	public static final boolean ENABLED = !Boolean.getBoolean("cluedo.metrics.disabled");
+
+	private static final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<String, LatencyHistogram>();
+	private static final Map<String, LongAdder> counters = new ConcurrentHashMap<String, LongAdder>();
+	private static final Logger log = Logger.getLogger("cluedo.metrics");
+	
+	private static final int SAMPLE_MASK = 15; // one call in sixteen is sampled
+	private static final ThreadLocal<int[]> samples = new ThreadLocal<int[]>() {
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	}; // calls to sample() on each thread
+	
+	private static ScheduledExecutorService logger; // periodic log dump, may be null
+	private static boolean registered = false;
+	
+	// latencies of each part of a turn
+	public static final LatencyHistogram INPUT_WAIT = latency("input");
+	public static final LatencyHistogram CHOICE = latency("choice");
+	public static final LatencyHistogram OPTIONS = latency("options");
+	public static final LatencyHistogram RENDER = latency("render");
+	public static final LatencyHistogram SUGGESTION = latency("suggestion");
+	public static final LatencyHistogram MOVE = latency("move");
+	public static final LatencyHistogram LOBBY_WAIT = latency("lobby");
+	public static final LatencyHistogram CACHE_RESTORE = latency("cache.restore");
+	
+	// counts of game actions
+	public static final LongAdder TURNS = counter("turns");
+	public static final LongAdder MOVES = counter("moves");
+	public static final LongAdder SUGGESTIONS = counter("suggestions");
+	public static final LongAdder REFUTATIONS = counter("refutations");
+	public static final LongAdder ACCUSATIONS = counter("accusations");
+	public static final LongAdder MATCHES = counter("matches");
+	public static final LongAdder CACHE_HITS = counter("cache.hits");
+	public static final LongAdder CACHE_MISSES = counter("cache.misses");
+	public static final LongAdder CACHE_EVICTIONS = counter("cache.evictions");
+	
+	/**
+	 * Returns the latency histogram with a given name, creating it if needed.
+	 * @param name
+	 * @return
+	 */
+	public static LatencyHistogram latency(String name) {
+		LatencyHistogram h = latencies.get(name);
+		if(h == null){
+			latencies.putIfAbsent(name, new LatencyHistogram(name));
+			h = latencies.get(name);
+		}
+		return h;
+	}
+	
+	/**
+	 * Returns the counter with a given name, creating it if needed.
+	 * @param name
+	 * @return
+	 */
+	public static LongAdder counter(String name) {
+		LongAdder c = counters.get(name);
+		if(c == null){
+			counters.putIfAbsent(name, new LongAdder());
+			c = counters.get(name);
+		}
+		return c;
+	}
+	
+	/**
+	 * Returns the time to measure a latency from with {@link LatencyHistogram#recordSince(long)},
+	 *  or 0 without reading the clock if metrics are disabled.
+	 * @return
+	 */
+	public static long now() {
+		return ENABLED ? System.nanoTime() : 0;
+	}
+	
+	/**
+	 * Returns true for one call in every sixteen on each thread, if metrics
+	 *  are enabled, to time actions cheaper than reading the clock. Calls
+	 *  are counted for the whole thread, so the actions of short games are
+	 *  sampled as often as those of long ones.
+	 * @return
+	 */
+	public static boolean sample() {
+		if(!ENABLED)
+			return false;
+		int[] calls = samples.get();
+		return (++calls[0] & SAMPLE_MASK) == 0;
+	}
+	
+	/**
+	 * Adds one to a counter, if metrics are enabled.
+	 * @param counter
+	 */
+	public static void increment(LongAdder counter) {
+		if(ENABLED)
+			counter.increment();
+	}
+	
+	/**
+	 * Returns all latency histograms by name.
+	 * @return
+	 */
+	public static Map<String, LatencyHistogram> latencies() {
+		return new TreeMap<String, LatencyHistogram>(latencies);
+	}
+	
+	/**
+	 * Returns the value of every counter by name.
+	 * @return
+	 */
+	public static Map<String, Long> counters() {
+		Map<String, Long> values = new TreeMap<String, Long>();
+		for(Map.Entry<String, LongAdder> e : counters.entrySet()){
+			values.put(e.getKey(), e.getValue().sum());
+		}
+		return values;
+	}
+	
+	/**
+	 * Clears every counter and histogram.
+	 */
+	public static void reset() {
+		for(LatencyHistogram h : latencies.values()){
+			h.reset();
+		}
+		for(LongAdder c : counters.values()){
+			c.reset();
+		}
+	}
+	
+	/**
+	 * Returns a summary of every counter and histogram.
+	 * @return
+	 */
+	public static String summary() {
+		StringBuilder sb = new StringBuilder("cluedo metrics\n");
+		for(Map.Entry<String, Long> e : counters().entrySet()){
+			sb.append(String.format("%-12s %d%n", e.getKey(), e.getValue()));
+		}
+		for(LatencyHistogram h : latencies().values()){
+			sb.append(h).append('\n');
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Registers the metrics with the platform MBean server.
+	 */
+	public static synchronized void registerMBean() {
+		if(registered)
+			return;
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(new MetricsBean(), new ObjectName("cluedo:type=Metrics"));
+			registered = true;
+		} catch (JMException e) {
+			log.warning("Could not register metrics MBean: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Logs a summary of the metrics every given number of seconds.
+	 * @param periodSeconds
+	 */
+	public static synchronized void startLogging(long periodSeconds) {
+		if(logger != null)
+			return;
+		logger = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "cluedo-metrics");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		logger.scheduleAtFixedRate(new Runnable() {
+			public void run() {
+				log.info(summary());
+			}
+		}, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * Stops logging the metrics.
+	 */
+	public static synchronized void stopLogging() {
+		if(logger == null)
+			return;
+		logger.shutdown();
+		logger = null;
+	}
+	
+	/**
+	 * The JMX view of the metrics.
+	 */
+	private static class MetricsBean implements MetricsMXBean {
+
+		@Override
+		public Map<String, Long> getCounters() {
+			return counters();
+		}
+
+		@Override
+		public Map<String, Long> getCounts() {
+			Map<String, Long> values = new TreeMap<String, Long>();
+			for(LatencyHistogram h : latencies.values()){
+				values.put(h.name(), h.count());
+			}
+			return values;
+		}
+
+		@Override
+		public Map<String, Double> getMeanMicros() {
+			Map<String, Double> values = new TreeMap<String, Double>();
+			for(LatencyHistogram h : latencies.values()){
+				values.put(h.name(), h.mean() / 1000.0);
+			}
+			return values;
+		}
+
+		@Override
+		public Map<String, Double> getP50Micros() {
+			return percentiles(50);
+		}
+
+		@Override
+		public Map<String, Double> getP99Micros() {
+			return percentiles(99);
+		}
+
+		@Override
+		public Map<String, Double> getMaxMicros() {
+			return percentiles(100);
+		}
+
+		@Override
+		public void reset() {
+			Metrics.reset();
+		}
+		
+		private Map<String, Double> percentiles(double p) {
+			Map<String, Double> values = new TreeMap<String, Double>();
+			for(LatencyHistogram h : latencies.values()){
+				values.put(h.name(), h.percentile(p) / 1000.0);
+			}
+			return values;
+		}
+	}
+}
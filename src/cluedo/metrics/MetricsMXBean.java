@@ -0,0 +1,30 @@
+package cluedo.metrics;
+
+import java.util.Map;
+
+/**
+ * The metrics of the Cluedo Game as seen through JMX.
+ *  Latencies are given in microseconds, keyed by histogram name.
+ * 
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public interface MetricsMXBean {
+
+	public Map<String, Long> getCounters();
+	
+	public Map<String, Long> getCounts();
+	
+	public Map<String, Double> getMeanMicros();
+	
+	public Map<String, Double> getP50Micros();
+	
+	public Map<String, Double> getP99Micros();
+	
+	public Map<String, Double> getMaxMicros();
+	
+	/**
+	 * Clears every counter and histogram.
+	 */
+	public void reset();
+}
@@ -0,0 +1,36 @@
+package cluedo.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event timing a move on the board.
+ * 
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+@Name("cluedo.Move")
+@Label("Board Move")
+@Category("Cluedo")
+@Description("A token being moved to a new position on the board")
+public class MoveEvent extends Event {
+
+	@Label("Game")
+	public long gameId;
+
+	@Label("Player")
+	@Description("Uid of the character moved, or 0 for a weapon")
+	public int playerUid;
+
+	@Label("Token")
+	public String token;
+
+	@Label("X")
+	public int x;
+
+	@Label("Y")
+	public int y;
+}
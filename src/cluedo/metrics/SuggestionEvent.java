@@ -0,0 +1,29 @@
+package cluedo.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event timing a suggestion.
+ * 
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+@Name("cluedo.Suggestion")
+@Label("Suggestion")
+@Category("Cluedo")
+@Description("A suggestion being made and checked against the other players")
+public class SuggestionEvent extends Event {
+
+	@Label("Game")
+	public long gameId;
+
+	@Label("Player")
+	public int playerUid;
+
+	@Label("Refuted")
+	public boolean refuted;
+}
@@ -0,0 +1,29 @@
+package cluedo.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event timing a player's turn.
+ * 
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+@Name("cluedo.Turn")
+@Label("Turn")
+@Category("Cluedo")
+@Description("A player's whole turn, from the roll until the turn ends")
+public class TurnEvent extends Event {
+
+	@Label("Game")
+	public long gameId;
+
+	@Label("Player")
+	public int playerUid;
+
+	@Label("Roll")
+	public int roll;
+}
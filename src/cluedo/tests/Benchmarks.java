@@ -0,0 +1,1290 @@
+package cluedo.tests;
+
+import java.awt.Point;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+import cluedo.board.Board;
+import cluedo.board.BoardGenerator;
+import cluedo.board.ConcurrentBoard;
+import cluedo.board.Direction;
+import cluedo.board.MoveTable;
+import cluedo.board.PathFinder;
+import cluedo.board.Position;
+import cluedo.board.RoomTile;
+import cluedo.bots.Bot;
+import cluedo.bots.BotGame;
+import cluedo.bots.Bots;
+import cluedo.bots.EndgameSolver;
+import cluedo.bots.SuggestionScorer;
+import cluedo.control.Action;
+import cluedo.control.BufferedSink;
+import cluedo.control.CluedoGame;
+import cluedo.control.Dice;
+import cluedo.control.GameCache;
+import cluedo.control.GameCodec;
+import cluedo.control.GameListener;
+import cluedo.control.GameLoop;
+import cluedo.control.NullSink;
+import cluedo.control.OutputSink;
+import cluedo.control.RefutationEngine;
+import cluedo.control.RefuterPolicy;
+import cluedo.control.Spectator;
+import cluedo.control.TextClient;
+import cluedo.events.Flow;
+import cluedo.events.GameEvent;
+import cluedo.lobby.Lobby;
+import cluedo.lobby.Match;
+import cluedo.lobby.MatchListener;
+import cluedo.metrics.Heatmap;
+import cluedo.metrics.LatencyHistogram;
+import cluedo.metrics.Metrics;
+import cluedo.tokens.Card;
+import cluedo.tokens.CharacterToken;
+import cluedo.tokens.GameToken;
+import cluedo.tokens.PositionStore;
+import cluedo.tokens.WeaponToken;
+
+/**
+ * Simple throughput benchmarks for the Cluedo Game.
+ *  Run with the name of a benchmark, or no arguments to run them all:
+ *  java cluedo.tests.Benchmarks [output|spectators|metrics|lobby|codec|cache|boards|lookups|names|endgame|scorer|refutations|reach|planner|astar|heatmap|concurrent|loop|events|positions]
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class Benchmarks {
+	
+	private static final long WARMUP_MILLIS = 500;
+	private static final long MEASURE_MILLIS = 2000;
+	
+	private static volatile int blackhole; // keeps results from being optimised away
+	
+	public static void main(String[] args) throws Exception {
+		String name = args.length > 0 ? args[0] : "all";
+		if(name.equals("all") || name.equals("output"))
+			benchmarkOutput();
+		if(name.equals("all") || name.equals("spectators"))
+			benchmarkSpectators();
+		if(name.equals("all") || name.equals("metrics"))
+			benchmarkMetrics();
+		if(name.equals("all") || name.equals("lobby"))
+			benchmarkLobby();
+		if(name.equals("all") || name.equals("codec"))
+			benchmarkCodec();
+		if(name.equals("all") || name.equals("cache"))
+			benchmarkCache();
+		if(name.equals("all") || name.equals("boards"))
+			benchmarkBoards();
+		if(name.equals("all") || name.equals("lookups"))
+			benchmarkLookups();
+		if(name.equals("all") || name.equals("names"))
+			benchmarkNames();
+		if(name.equals("all") || name.equals("endgame"))
+			benchmarkEndgame();
+		if(name.equals("all") || name.equals("scorer"))
+			benchmarkScorer();
+		if(name.equals("all") || name.equals("refutations"))
+			benchmarkRefutations();
+		if(name.equals("all") || name.equals("reach"))
+			benchmarkReach();
+		if(name.equals("all") || name.equals("planner"))
+			benchmarkPlanner();
+		if(name.equals("all") || name.equals("astar"))
+			benchmarkPathFinder();
+		if(name.equals("all") || name.equals("heatmap"))
+			benchmarkHeatmap();
+		if(name.equals("all") || name.equals("concurrent"))
+			benchmarkConcurrentBoard();
+		if(name.equals("all") || name.equals("loop"))
+			benchmarkGameLoop();
+		if(name.equals("all") || name.equals("events"))
+			benchmarkEvents();
+		if(name.equals("all") || name.equals("positions"))
+			benchmarkPositions();
+	}
+	
+	//====================================================================================//
+	//                                  OUTPUT BENCHMARK                                  //
+	//====================================================================================//
+	
+	/**
+	 * Measures how many turns of text per second the text client can display 
+	 *  through each kind of output sink. A turn is the board, the help guide 
+	 *  and the result of a suggestion, flushed once as if before a prompt.
+	 */
+	private static void benchmarkOutput() throws IOException {
+		File file = File.createTempFile("cluedo", ".out");
+		file.deleteOnExit();
+		PrintStream stream = new PrintStream(new FileOutputStream(file), true);
+		
+		TextClient client = newClient();
+		OutputSink original = client.output();
+		System.out.println("--- output: turns/sec through the text client ---");
+		report("direct", timeTurns(client, directSink(stream)));
+		report("buffered", timeTurns(client, new BufferedSink(stream)));
+		report("memory", timeTurns(client, new BufferedSink()));
+		report("null", timeTurns(client, new NullSink()));
+		client.setOutput(original);
+		stream.close();
+	}
+	
+	/**
+	 * Returns the number of turns displayed per second through a given sink.
+	 */
+	private static double timeTurns(TextClient client, OutputSink sink) {
+		client.setOutput(sink);
+		CluedoGame game = client.game();
+		Board board = client.board();
+		CharacterToken player = game.players().get(0);
+		Card[] suggestion = game.Solution();
+		
+		// warm up before measuring
+		long warmupEnd = System.nanoTime() + WARMUP_MILLIS * 1000000L;
+		while(System.nanoTime() < warmupEnd)
+			displayTurn(sink, board, player, suggestion);
+		
+		long turns = 0;
+		long start = System.nanoTime();
+		long end = start + MEASURE_MILLIS * 1000000L;
+		long now = start;
+		while(now < end){
+			displayTurn(sink, board, player, suggestion);
+			turns++;
+			now = System.nanoTime();
+		}
+		return turns / ((now - start) / 1e9);
+	}
+	
+	/**
+	 * Displays one turn's worth of text through a sink.
+	 */
+	private static void displayTurn(OutputSink sink, Board board, CharacterToken player, Card[] suggestion) {
+		TextClient.viewHelp();
+		board.printBoard(sink);
+		TextClient.checkSuggestion(suggestion, player);
+		sink.flush();
+		if(sink instanceof BufferedSink)
+			((BufferedSink)sink).clear(); // keeps the in-memory sink from growing
+	}
+	
+	/**
+	 * Returns a sink which writes every call straight through to a stream,
+	 *  the way the text client wrote to System.out.
+	 */
+	private static OutputSink directSink(final PrintStream stream) {
+		return new OutputSink() {
+			public void print(String s) { stream.print(s); stream.flush(); }
+			public void print(char c) { stream.print(c); stream.flush(); }
+			public void println(String s) { stream.println(s); }
+			public void println() { stream.println(); }
+			public void flush() { stream.flush(); }
+		};
+	}
+	
+	//====================================================================================//
+	//                                SPECTATOR BENCHMARK                                 //
+	//====================================================================================//
+	
+	/**
+	 * Measures how many moves per second can be broadcast to increasing 
+	 *  numbers of spectators, with every tenth spectator too slow to keep up.
+	 */
+	private static void benchmarkSpectators() {
+		System.out.println("--- spectators: moves/sec broadcast to every spectator ---");
+		for(int watchers : new int[]{ 1, 100, 1000, 10000 }){
+			TextClient client = newClient();
+			CluedoGame game = client.game();
+			Board board = client.board();
+			CharacterToken player = game.players().get(0);
+			List<Spectator> spectators = new ArrayList<Spectator>();
+			for(int i = 0; i < watchers; i++){
+				spectators.add(game.spectators().subscribe());
+			}
+			Point a = new Point(player.getXPos(), player.getYPos());
+			Point b = new Point(player.getXPos(), player.getYPos() + 1);
+			
+			long moves = 0;
+			long start = System.nanoTime();
+			long end = start + MEASURE_MILLIS * 1000000L;
+			long now = start;
+			while(now < end){
+				for(int i = 0; i < 32; i++){
+					board.move((moves & 1) == 0 ? b : a, player);
+					moves++;
+				}
+				// the fast spectators drain their frames, the slow ones fall behind
+				for(int i = 0; i < spectators.size(); i++){
+					if(i % 10 != 0){
+						Spectator s = spectators.get(i);
+						while(s.poll() != null);
+					}
+				}
+				now = System.nanoTime();
+			}
+			report(watchers + " spectators", moves / ((now - start) / 1e9));
+		}
+	}
+	
+	//====================================================================================//
+	//                                 METRICS BENCHMARK                                  //
+	//====================================================================================//
+	
+	/**
+	 * Measures the cost of recording a latency, and the rate of board moves
+	 *  which count every move and time a sample of them. Run again with -Dcluedo.metrics.disabled=true 
+	 *  to compare the move rate without metrics.
+	 */
+	private static void benchmarkMetrics() {
+		System.out.println("--- metrics (enabled: " + Metrics.ENABLED + ") ---");
+		LatencyHistogram h = new LatencyHistogram("bench");
+		int n = 10000000;
+		long start = System.nanoTime();
+		for(int i = 0; i < n; i++){
+			h.record(i & 0xFFFF);
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.println(String.format("%-24s %14.1f ns", "record latency", (double)elapsed / n));
+		start = System.nanoTime();
+		for(int i = 0; i < n; i++){
+			h.recordSince(System.nanoTime());
+		}
+		elapsed = System.nanoTime() - start;
+		System.out.println(String.format("%-24s %14.1f ns", "time and record latency", (double)elapsed / n));
+		
+		TextClient client = newClient();
+		Board board = client.board();
+		CharacterToken player = client.game().players().get(0);
+		Point a = new Point(player.getXPos(), player.getYPos());
+		Point b = new Point(player.getXPos(), player.getYPos() + 1);
+		long moves = 0;
+		start = System.nanoTime();
+		long end = start + MEASURE_MILLIS * 1000000L;
+		long now = start;
+		while(now < end){
+			for(int i = 0; i < 1024; i++){
+				board.move((moves & 1) == 0 ? b : a, player);
+				moves++;
+			}
+			now = System.nanoTime();
+		}
+		report("board moves", moves / ((now - start) / 1e9));
+	}
+	
+	//====================================================================================//
+	//                                  LOBBY BENCHMARK                                   //
+	//====================================================================================//
+	
+	/**
+	 * Generates load on the lobby from increasing numbers of threads, each 
+	 *  joining players as fast as it can, with a single and a sharded lobby. 
+	 *  Reports the joins per second and how long players waited for a match.
+	 */
+	private static void benchmarkLobby() throws InterruptedException {
+		System.out.println("--- lobby: joins/sec, and wait for a match (p50/p99) ---");
+		final CluedoGame.Character[] characters = CluedoGame.Character.values();
+		int cpus = Runtime.getRuntime().availableProcessors();
+		for(int threads : new int[]{ 1, 4, 16 }){
+			for(int shards : new int[]{ 1, 2 * cpus }){
+				final LongAdder matched = new LongAdder();
+				final Lobby lobby = new Lobby(shards, 6, new MatchListener() {
+					public void matched(Match match) { matched.increment(); }
+				});
+				Metrics.LOBBY_WAIT.reset();
+				final long end = System.nanoTime() + MEASURE_MILLIS * 1000000L;
+				final LongAdder joins = new LongAdder();
+				Thread[] workers = new Thread[threads];
+				for(int t = 0; t < threads; t++){
+					workers[t] = new Thread(new Runnable() {
+						public void run() {
+							int i = 0;
+							while(System.nanoTime() < end){
+								for(int j = 0; j < 64; j++, i++){
+									lobby.join("p" + (i & 1023), characters[i % characters.length]);
+								}
+								joins.add(64);
+							}
+						}
+					});
+				}
+				long start = System.nanoTime();
+				for(Thread w : workers) w.start();
+				for(Thread w : workers) w.join();
+				double seconds = (System.nanoTime() - start) / 1e9;
+				lobby.flush();
+				System.out.println(String.format("%-24s %,14.0f /sec  %8.1f / %8.1f us", 
+						threads + " threads, " + lobby.shards() + " shards", joins.sum() / seconds,
+						Metrics.LOBBY_WAIT.percentile(50) / 1000.0, Metrics.LOBBY_WAIT.percentile(99) / 1000.0));
+			}
+		}
+	}
+	
+	//====================================================================================//
+	//                                  CODEC BENCHMARK                                   //
+	//====================================================================================//
+	
+	/**
+	 * Measures how fast a six player game can be saved and restored, 
+	 *  and how many bytes it takes.
+	 */
+	private static void benchmarkCodec() {
+		CluedoGame game = newClient().game();
+		byte[] saved = GameCodec.encode(game);
+		System.out.println("--- codec: " + saved.length + " bytes per saved game ---");
+		long end = System.nanoTime() + WARMUP_MILLIS * 1000000L;
+		while(System.nanoTime() < end){
+			GameCodec.decode(GameCodec.encode(game));
+		}
+		
+		long n = 0;
+		long start = System.nanoTime();
+		end = start + MEASURE_MILLIS * 1000000L;
+		long now = start;
+		while(now < end){
+			for(int i = 0; i < 256; i++, n++){
+				saved = GameCodec.encode(game);
+			}
+			now = System.nanoTime();
+		}
+		report("save", n / ((now - start) / 1e9));
+		
+		LatencyHistogram h = new LatencyHistogram("restore");
+		n = 0;
+		start = System.nanoTime();
+		end = start + MEASURE_MILLIS * 1000000L;
+		now = start;
+		while(now < end){
+			long t = now;
+			GameCodec.decode(saved);
+			now = System.nanoTime();
+			h.record(now - t);
+			n++;
+		}
+		report("restore", n / ((now - start) / 1e9));
+		System.out.println(String.format("%-24s %14.1f / %.1f us", "restore p50/p99", 
+				h.percentile(50) / 1000.0, h.percentile(99) / 1000.0));
+	}
+	
+	//====================================================================================//
+	//                                  CACHE BENCHMARK                                   //
+	//====================================================================================//
+	
+	/**
+	 * Fills a game cache with a million games (or -Dcluedo.bench.games) under 
+	 *  a 16MB budget, then looks games up as players would act in them: most 
+	 *  actions in the one percent of games being played, the rest anywhere.
+	 */
+	private static void benchmarkCache() throws IOException {
+		int games = Integer.getInteger("cluedo.bench.games", 1000000);
+		File file = File.createTempFile("cluedo", ".cache");
+		file.deleteOnExit();
+		GameCache cache = new GameCache(16L << 20, file);
+		System.out.println("--- cache: " + games + " games, " + cache.capacity() + " kept in memory ---");
+		long[] keys = new long[games];
+		long start = System.nanoTime();
+		for(int i = 0; i < games; i++){
+			keys[i] = cache.put(new CluedoGame(6, allCharacters(), "gameBoard.txt"));
+		}
+		report("games created", games / ((System.nanoTime() - start) / 1e9));
+		System.out.println(String.format("%-24s %,14d bytes", "file", cache.fileBytes()));
+		
+		Random random = new Random(42);
+		int hot = Math.max(1, games / 100);
+		long hits = Metrics.CACHE_HITS.sum();
+		long misses = Metrics.CACHE_MISSES.sum();
+		Metrics.CACHE_RESTORE.reset();
+		long n = 0;
+		start = System.nanoTime();
+		long end = start + MEASURE_MILLIS * 1000000L;
+		long now = start;
+		while(now < end){
+			for(int i = 0; i < 64; i++, n++){
+				int index = random.nextInt(10) < 8 ? games - 1 - random.nextInt(hot) : random.nextInt(games);
+				cache.get(keys[index]);
+			}
+			now = System.nanoTime();
+		}
+		report("actions", n / ((now - start) / 1e9));
+		hits = Metrics.CACHE_HITS.sum() - hits;
+		misses = Metrics.CACHE_MISSES.sum() - misses;
+		System.out.println(String.format("%-24s %14.1f %%", "hit rate", 100.0 * hits / Math.max(1, hits + misses)));
+		System.out.println(String.format("%-24s %14.1f / %.1f us", "restore p50/p99", 
+				Metrics.CACHE_RESTORE.percentile(50) / 1000.0, Metrics.CACHE_RESTORE.percentile(99) / 1000.0));
+		cache.close();
+	}
+	
+	//====================================================================================//
+	//                                  BOARDS BENCHMARK                                  //
+	//====================================================================================//
+	
+	/**
+	 * Runs the game on generated boards of increasing size, measuring how 
+	 *  fast games are set up, tokens are moved into rooms, and bots play turns.
+	 */
+	private static void benchmarkBoards() throws IOException {
+		System.out.println("--- boards: generated boards with nine rooms ---");
+		for(int size : new int[]{ 25, 50, 100, 200, 255 }){
+			File file = File.createTempFile("cluedo", ".txt");
+			file.deleteOnExit();
+			PrintStream out = new PrintStream(file);
+			BoardGenerator.write(BoardGenerator.generate(size, size, 9, 0.5, new Random(size)), out);
+			out.close();
+			String board = file.getPath();
+			
+			long n = 0;
+			long start = System.nanoTime();
+			long end = start + MEASURE_MILLIS * 1000000L;
+			long now = start;
+			while(now < end){
+				new CluedoGame(6, allCharacters(), board);
+				n++;
+				now = System.nanoTime();
+			}
+			report(size + "x" + size + " games", n / ((now - start) / 1e9));
+			
+			CluedoGame game = new CluedoGame(6, allCharacters(), board);
+			CharacterToken player = game.players().get(0);
+			CluedoGame.Room[] rooms = CluedoGame.Room.values();
+			n = 0;
+			start = System.nanoTime();
+			end = start + MEASURE_MILLIS * 1000000L;
+			now = start;
+			while(now < end){
+				for(int i = 0; i < 16; i++, n++){
+					game.board().moveIntoRoom(player, rooms[(int)(n % rooms.length)]);
+				}
+				now = System.nanoTime();
+			}
+			report(size + "x" + size + " room moves", n / ((now - start) / 1e9));
+			
+			Random random = new Random(1);
+			n = 0;
+			start = System.nanoTime();
+			end = start + MEASURE_MILLIS * 1000000L;
+			now = start;
+			while(now < end){
+				List<Bot> bots = new ArrayList<Bot>();
+				for(int i = 0; i < 4; i++){
+					bots.add(Bots.create("notebook", random));
+				}
+				n += new BotGame(board, bots, random).play(now + 100 * 1000000L).turns();
+				now = System.nanoTime();
+			}
+			report(size + "x" + size + " bot turns", n / ((now - start) / 1e9));
+		}
+	}
+	
+	//====================================================================================//
+	//                                  LOOKUPS BENCHMARK                                 //
+	//====================================================================================//
+	
+	/**
+	 * Measures the symbol, name and opposite room lookups used when drawing 
+	 *  and moving, against the string switches they replaced.
+	 */
+	private static void benchmarkLookups() {
+		System.out.println("--- lookups: ns per call ---");
+		final Board board = newClient().board();
+		final CluedoGame.Room[] rooms = CluedoGame.Room.values();
+		final WeaponToken[] weapons = new WeaponToken[CluedoGame.Weapon.values().length];
+		for(int i = 0; i < weapons.length; i++){
+			weapons[i] = new WeaponToken(CluedoGame.Weapon.values()[i]);
+		}
+		final RoomTile[] tiles = new RoomTile[rooms.length];
+		for(int i = 0; i < rooms.length; i++){
+			tiles[i] = new RoomTile(new Position(0, 0, 'x'), rooms[i], 'x');
+		}
+		final String[] names = { "kitchen", "Ball Room", "DINING_ROOM", "study", "nowhere" };
+		
+		timeLookup("room symbol (switch)", new Lookup() {
+			public int run(int i) { return legacyRoomSymbol(rooms[i % rooms.length]); }
+		});
+		timeLookup("room symbol", new Lookup() {
+			public int run(int i) { return board.getRoomSymbol(rooms[i % rooms.length]); }
+		});
+		timeLookup("display name (regex)", new Lookup() {
+			public int run(int i) { return rooms[i % rooms.length].name().replaceAll("_", " ").length(); }
+		});
+		timeLookup("display name", new Lookup() {
+			public int run(int i) { return rooms[i % rooms.length].toString().length(); }
+		});
+		timeLookup("weapon symbol", new Lookup() {
+			public int run(int i) { return weapons[i % weapons.length].getSymbol(); }
+		});
+		timeLookup("opposite room", new Lookup() {
+			public int run(int i) { 
+				CluedoGame.Room r = tiles[i % tiles.length].oppositeRoomPos();
+				return r == null ? 0 : r.ordinal();
+			}
+		});
+		timeLookup("parse room (scan)", new Lookup() {
+			public int run(int i) { 
+				String name = names[i % names.length];
+				for(CluedoGame.Room r : CluedoGame.Room.values()){
+					if(r.name().replaceAll("_", " ").equalsIgnoreCase(name))
+						return r.ordinal();
+				}
+				return -1;
+			}
+		});
+		timeLookup("parse room", new Lookup() {
+			public int run(int i) { 
+				CluedoGame.Room r = CluedoGame.getRoom(names[i % names.length]);
+				return r == null ? -1 : r.ordinal();
+			}
+		});
+	}
+	
+	/**
+	 * A lookup to be timed, returning something so the call is not optimised away.
+	 */
+	private interface Lookup {
+		int run(int i);
+	}
+	
+	/**
+	 * Prints the average time of a lookup.
+	 */
+	private static void timeLookup(String label, Lookup lookup) {
+		int sink = 0;
+		long end = System.nanoTime() + WARMUP_MILLIS * 1000000L;
+		for(int i = 0; System.nanoTime() < end; i++){
+			sink += lookup.run(i);
+		}
+		long n = 0;
+		long start = System.nanoTime();
+		end = start + MEASURE_MILLIS * 1000000L;
+		long now = start;
+		while(now < end){
+			for(int i = 0; i < 4096; i++, n++){
+				sink += lookup.run(i);
+			}
+			now = System.nanoTime();
+		}
+		blackhole = sink;
+		System.out.println(String.format("%-24s %14.1f ns", label, (double)(now - start) / n));
+	}
+	
+	/**
+	 * The room symbol lookup as it was, switching on the room's display name.
+	 */
+	private static char legacyRoomSymbol(CluedoGame.Room r) {
+		switch(r.name().replaceAll("_", " ")){
+			case "KITCHEN" : return 'K';
+			case "BALL ROOM": return 'B';
+			case "CONSERVATORY": return 'C';
+			case "DINING ROOM": return 'N';
+			case "BILLIARD ROOM": return 'I';
+			case "LIBRARY": return 'L';
+			case "LOUNGE": return 'O';
+			case "HALL": return 'H';
+			case "STUDY": return 'S';
+			default: return ' ';
+		}
+	}
+	
+	//====================================================================================//
+	//                                   NAMES BENCHMARK                                  //
+	//====================================================================================//
+	
+	/**
+	 * Measures finding cards and players by the names clients send, with the
+	 *  name index against scanning a list and against a map of upper case names.
+	 */
+	private static void benchmarkNames() {
+		System.out.println("--- names: ns per lookup ---");
+		final String[] names = { "miss scarlett", "Lead_Pipe", "BALL ROOM", "professor plum", 
+				"spanner", "Dining Room", "butler", "Kitchen" };
+		final List<Card> cards = new ArrayList<Card>();
+		final Map<String, Card> upper = new HashMap<String, Card>();
+		cards.addAll(Arrays.asList(CluedoGame.Character.values()));
+		cards.addAll(Arrays.asList(CluedoGame.Weapon.values()));
+		cards.addAll(Arrays.asList(CluedoGame.Room.values()));
+		for(Card c : cards){
+			upper.put(c.toString(), c);
+		}
+		final CluedoGame game = newClient().game();
+		
+		timeLookup("card (scan)", new Lookup() {
+			public int run(int i) {
+				String name = names[i % names.length];
+				for(Card c : cards){
+					if(c.toString().equalsIgnoreCase(name.replace('_', ' ')))
+						return 1;
+				}
+				return 0;
+			}
+		});
+		timeLookup("card (upper case map)", new Lookup() {
+			public int run(int i) {
+				return upper.get(names[i % names.length].replace('_', ' ').toUpperCase()) == null ? 0 : 1;
+			}
+		});
+		timeLookup("card (name index)", new Lookup() {
+			public int run(int i) {
+				return CluedoGame.getCard(names[i % names.length]) == null ? 0 : 1;
+			}
+		});
+		timeLookup("player (name index)", new Lookup() {
+			public int run(int i) {
+				return game.getCharacter((i & 1) == 0 ? "bench3" : "nobody") == null ? 0 : 1;
+			}
+		});
+	}
+	
+	//====================================================================================//
+	//                                  ENDGAME BENCHMARK                                 //
+	//====================================================================================//
+	
+	/**
+	 * Measures solving a six player endgame in which one card of each opponent's
+	 *  hand has been seen, on one thread and on every core.
+	 */
+	private static void benchmarkEndgame() {
+		System.out.println("--- endgame: solves of a six player endgame ---");
+		CluedoGame game = newClient().game();
+		List<CharacterToken> players = game.players();
+		EndgameSolver solver = new EndgameSolver(game, players.get(0));
+		for(CharacterToken p : players.subList(1, players.size())){
+			solver.shown(p, p.getHand().get(0));
+		}
+		System.out.println(solver.candidates() + " possible solutions");
+		ForkJoinPool single = new ForkJoinPool(1);
+		timeSolve("endgame (1 thread)", solver, single);
+		timeSolve("endgame (" + ForkJoinPool.commonPool().getParallelism() + " threads)", solver, 
+				ForkJoinPool.commonPool());
+		single.shutdown();
+	}
+	
+	/**
+	 * Prints the solves per second of an endgame on a given pool.
+	 */
+	private static void timeSolve(String label, EndgameSolver solver, ForkJoinPool pool) {
+		long end = System.currentTimeMillis() + WARMUP_MILLIS;
+		while(System.currentTimeMillis() < end){
+			blackhole += solver.solve(pool).size();
+		}
+		long start = System.nanoTime();
+		int n = 0;
+		end = System.currentTimeMillis() + MEASURE_MILLIS;
+		while(System.currentTimeMillis() < end){
+			blackhole += solver.solve(pool).size();
+			n++;
+		}
+		report(label, n / ((System.nanoTime() - start) / 1e9));
+	}
+	
+	//====================================================================================//
+	//                                  SCORER BENCHMARK                                  //
+	//====================================================================================//
+	
+	/**
+	 * Measures dealing random hands and scoring all 36 suggestions in a room
+	 *  against them, at the start of a six player game.
+	 */
+	private static void benchmarkScorer() {
+		System.out.println("--- scorer: us per call ---");
+		CluedoGame game = newClient().game();
+		final SuggestionScorer scorer = new SuggestionScorer(new EndgameSolver(game, game.players().get(0)));
+		final Random random = new Random(1);
+		scorer.deal(random);
+		timeCall("deal " + SuggestionScorer.SAMPLES + " hands", new Lookup() {
+			public int run(int i) {
+				return scorer.deal(random) ? 1 : 0;
+			}
+		});
+		timeCall("score 36 pairs", new Lookup() {
+			public int run(int i) {
+				return (int)scorer.score(CluedoGame.Room.KITCHEN)[i % SuggestionScorer.PAIRS];
+			}
+		});
+	}
+	
+	/**
+	 * Prints the microseconds taken by each call of a slower operation.
+	 */
+	private static void timeCall(String label, Lookup call) {
+		long end = System.currentTimeMillis() + WARMUP_MILLIS;
+		int i = 0;
+		while(System.currentTimeMillis() < end){
+			blackhole += call.run(i++);
+		}
+		long start = System.nanoTime();
+		int n = 0;
+		end = System.currentTimeMillis() + MEASURE_MILLIS;
+		while(System.currentTimeMillis() < end){
+			blackhole += call.run(n++);
+		}
+		System.out.println(String.format("%-24s %,14.1f us", label, (System.nanoTime() - start) / 1e3 / n));
+	}
+	
+	//====================================================================================//
+	//                                REFUTATIONS BENCHMARK                               //
+	//====================================================================================//
+	
+	/**
+	 * Measures refuting random suggestions in a six player game, walking the
+	 *  players' hand lists as the text client used to against the engine.
+	 */
+	private static void benchmarkRefutations() {
+		System.out.println("--- refutations: ns per suggestion ---");
+		final CluedoGame game = newClient().game();
+		final List<CharacterToken> players = game.players();
+		final Card[][] suggestions = new Card[64][];
+		final int[] masks = new int[suggestions.length];
+		Random random = new Random(1);
+		for(int i = 0; i < suggestions.length; i++){
+			suggestions[i] = new Card[]{ CluedoGame.Character.values()[random.nextInt(6)],
+					CluedoGame.Room.values()[random.nextInt(9)], CluedoGame.Weapon.values()[random.nextInt(6)] };
+			for(Card c : suggestions[i]){
+				masks[i] |= 1 << c.id();
+			}
+		}
+		timeLookup("hand lists", new Lookup() {
+			public int run(int i) {
+				Card[] suggestion = suggestions[i & 63];
+				CharacterToken suggester = players.get(i % 6);
+				for(CharacterToken p : players){
+					if(p.equals(suggester))
+						continue;
+					for(Card c : p.getHand()){
+						for(Card s : suggestion){
+							if(c.equals(s))
+								return c.id();
+						}
+					}
+				}
+				return -1;
+			}
+		});
+		final RefutationEngine engine = new RefutationEngine(players, RefuterPolicy.LOWEST_ID);
+		timeLookup("engine (cards)", new Lookup() {
+			public int run(int i) {
+				return engine.refute(players.get(i % 6), suggestions[i & 63]);
+			}
+		});
+		timeLookup("engine (bitmask)", new Lookup() {
+			public int run(int i) {
+				return engine.refute(i % 6, masks[i & 63]);
+			}
+		});
+	}
+	
+	//====================================================================================//
+	//                                   REACH BENCHMARK                                  //
+	//====================================================================================//
+	
+	/**
+	 * Measures asking how many rooms a roll of two dice is expected to reach
+	 *  from the squares of the standard board, once their tables are made.
+	 */
+	private static void benchmarkReach() {
+		System.out.println("--- reach: ns per question ---");
+		final MoveTable table = MoveTable.of("gameBoard.txt");
+		long start = System.nanoTime();
+		for(int y = 0; y < table.height(); y++){
+			for(int x = 0; x < table.width(); x++){
+				blackhole += (int)table.expectedRooms(x, y, Dice.TWO_D6);
+			}
+		}
+		System.out.println(String.format("%-24s %,14.1f ms", "tables for every square", 
+				(System.nanoTime() - start) / 1e6));
+		final int squares = table.width() * table.height();
+		timeLookup("expected rooms (2d6)", new Lookup() {
+			public int run(int i) {
+				int square = i % squares;
+				return (int)table.expectedRooms(square % table.width(), square / table.width(), Dice.TWO_D6);
+			}
+		});
+	}
+	
+	//====================================================================================//
+	//                                  PLANNER BENCHMARK                                 //
+	//====================================================================================//
+	
+	/**
+	 * Measures moving a player from their start into the nearest room, one step at
+	 *  a time with the board shown after each step as the text client did,
+	 *  against planning the whole move and showing the board once.
+	 */
+	private static void benchmarkPlanner() {
+		System.out.println("--- planner: moves into a room per second ---");
+		final TextClient client = newClient();
+		final Board board = client.board();
+		final CharacterToken player = client.game().players().get(0);
+		final int x = player.getXPos(), y = player.getYPos();
+		final OutputSink sink = new NullSink();
+		// the nearest room, and the way there
+		CluedoGame.Room nearest = null;
+		List<Direction> best = null;
+		for(CluedoGame.Room r : CluedoGame.Room.values()){
+			List<Direction> path = board.pathToRoom(player, r, 100);
+			if(path != null && (best == null || path.size() < best.size())){
+				nearest = r;
+				best = path;
+			}
+		}
+		final CluedoGame.Room room = nearest;
+		final List<Direction> steps = best;
+		System.out.println(steps.size() + " steps into the " + room);
+		timeMoves("step by step", new Runnable() {
+			public void run() {
+				for(Direction d : steps){
+					for(Direction option : Direction.values()){
+						blackhole += board.canMove(player, option) ? 1 : 0;
+					}
+					board.move(player, d);
+					board.printBoard(sink);
+				}
+				board.place(player, x, y);
+			}
+		});
+		timeMoves("planned", new Runnable() {
+			public void run() {
+				board.follow(player, board.pathToRoom(player, room, steps.size()));
+				board.printBoard(sink);
+				board.place(player, x, y);
+			}
+		});
+	}
+	
+	/**
+	 * Prints how many times a second a move can be made.
+	 */
+	private static void timeMoves(String label, Runnable move) {
+		long end = System.currentTimeMillis() + WARMUP_MILLIS;
+		while(System.currentTimeMillis() < end){
+			move.run();
+		}
+		long start = System.nanoTime();
+		int n = 0;
+		end = System.currentTimeMillis() + MEASURE_MILLIS;
+		while(System.currentTimeMillis() < end){
+			move.run();
+			n++;
+		}
+		report(label, n / ((System.nanoTime() - start) / 1e9));
+	}
+	
+	//====================================================================================//
+	//                                  A* BENCHMARK                                      //
+	//====================================================================================//
+	
+	/**
+	 * Measures how many shortest paths a second the A* path finder finds from a
+	 *  player's start to squares picked at random on the stock board and generated
+	 *  boards, into a reused array and as a list of directions.
+	 */
+	private static void benchmarkPathFinder() throws IOException {
+		System.out.println("--- astar: paths/sec from a start square ---");
+		List<String> boards = new ArrayList<String>();
+		List<String> names = new ArrayList<String>();
+		boards.add("gameBoard.txt");
+		names.add("stock");
+		for(int size : new int[]{ 100, 255 }){
+			File file = File.createTempFile("cluedo", ".txt");
+			file.deleteOnExit();
+			PrintStream out = new PrintStream(file);
+			BoardGenerator.write(BoardGenerator.generate(size, size, 9, 0.5, new Random(size)), out);
+			out.close();
+			boards.add(file.getPath());
+			names.add(size + "x" + size);
+		}
+		for(int b = 0; b < boards.size(); b++){
+			CluedoGame game = new CluedoGame(6, allCharacters(), boards.get(b));
+			final Board board = game.board();
+			CharacterToken player = game.players().get(0);
+			final int x = player.getXPos(), y = player.getYPos();
+			final int limit = board.width() * board.height();
+			// reachable squares picked at random, so paths of all lengths are asked for
+			Random random = new Random(b);
+			int[] reachable = new int[256];
+			int count = 0;
+			long total = 0;
+			for(int tries = 0; tries < 16 * reachable.length && count < reachable.length; tries++){
+				int t = random.nextInt(limit);
+				int d = PathFinder.distance(board, x, y, t % board.width(), t / board.width(), limit);
+				if(d > 0){
+					reachable[count++] = t;
+					total += d;
+				}
+			}
+			final int[] targets = Arrays.copyOf(reachable, count);
+			final byte[] steps = new byte[limit];
+			System.out.println(names.get(b) + ": " + count + " targets, " + (total / Math.max(1, count)) + " steps on average");
+			timeMoves(names.get(b) + " into array", new Runnable() {
+				int next;
+				public void run() {
+					int t = targets[next++ % targets.length];
+					blackhole += PathFinder.path(board, x, y, t % board.width(), t / board.width(), limit, steps);
+				}
+			});
+			timeMoves(names.get(b) + " as list", new Runnable() {
+				int next;
+				public void run() {
+					int t = targets[next++ % targets.length];
+					blackhole += PathFinder.path(board, x, y, t % board.width(), t / board.width(), limit).size();
+				}
+			});
+		}
+	}
+	
+	//====================================================================================//
+	//                                 HEATMAP BENCHMARK                                  //
+	//====================================================================================//
+	
+	/**
+	 * Measures bot games per second with and without a heatmap counting them,
+	 *  and how many moves and rolls a second a heatmap can count on its own.
+	 */
+	private static void benchmarkHeatmap() {
+		System.out.println("--- heatmap: games and events counted per second ---");
+		final Heatmap heatmap = new Heatmap("gameBoard.txt");
+		final Random random = new Random(1);
+		for(final boolean counted : new boolean[]{ false, true }){
+			timeMoves(counted ? "games counted" : "games uncounted", new Runnable() {
+				public void run() {
+					List<Bot> bots = new ArrayList<Bot>();
+					for(int i = 0; i < 4; i++){
+						bots.add(Bots.create("notebook", random));
+					}
+					BotGame game = new BotGame("gameBoard.txt", bots, random);
+					if(counted)
+						game.game().addListener(heatmap.recorder(game.game()));
+					blackhole += game.play(Long.MAX_VALUE).turns();
+				}
+			});
+		}
+		CluedoGame game = new CluedoGame(6, allCharacters(), "gameBoard.txt");
+		final GameListener recorder = heatmap.recorder(game);
+		final CharacterToken player = game.players().get(0);
+		final int x = player.getXPos(), y = player.getYPos();
+		timeMoves("moves", new Runnable() {
+			public void run() {
+				recorder.tokenMoved(player, x, y);
+			}
+		});
+		timeMoves("rolls", new Runnable() {
+			int roll;
+			public void run() {
+				recorder.diceRolled(player, 2 + roll++ % 11);
+			}
+		});
+		System.out.println(heatmap.games() + " games counted");
+	}
+	
+	//====================================================================================//
+	//                             CONCURRENT BOARD BENCHMARK                             //
+	//====================================================================================//
+	
+	/**
+	 * Measures steps tried per second with one to six threads each moving their
+	 *  own player at random, on a concurrent board against a board locked as
+	 *  a whole for each step.
+	 */
+	private static void benchmarkConcurrentBoard() throws InterruptedException {
+		System.out.println("--- concurrent: random steps/sec, each thread moving its own player ---");
+		for(int threads : new int[]{ 1, 2, 4, 6 }){
+			final CluedoGame lockedGame = new CluedoGame(6, allCharacters(), "gameBoard.txt");
+			final Board board = lockedGame.board();
+			report(threads + " locked", timeThreads(threads, new Mover() {
+				public boolean step(int player, Direction d) {
+					CharacterToken token = lockedGame.players().get(player);
+					synchronized(board){
+						if(!board.canMove(token, d))
+							return false;
+						board.move(token, d);
+						return true;
+					}
+				}
+			}));
+			CluedoGame game = new CluedoGame(6, allCharacters(), "gameBoard.txt");
+			final List<CharacterToken> players = game.players();
+			final ConcurrentBoard shared = new ConcurrentBoard(game);
+			report(threads + " concurrent", timeThreads(threads, new Mover() {
+				public boolean step(int player, Direction d) {
+					return shared.tryMove(players.get(player), d);
+				}
+			}));
+		}
+	}
+	
+	/**
+	 * Tries a step for a player.
+	 */
+	private interface Mover {
+		boolean step(int player, Direction d);
+	}
+	
+	/**
+	 * Returns how many steps a second a number of threads try together.
+	 */
+	private static double timeThreads(int threads, final Mover mover) throws InterruptedException {
+		final LongAdder steps = new LongAdder();
+		final long end = System.currentTimeMillis() + WARMUP_MILLIS + MEASURE_MILLIS;
+		final long measureFrom = System.currentTimeMillis() + WARMUP_MILLIS;
+		Thread[] workers = new Thread[threads];
+		for(int t = 0; t < threads; t++){
+			final int player = t;
+			workers[t] = new Thread() {
+				public void run() {
+					Random random = new Random(player);
+					Direction[] dirs = Direction.values();
+					int ok = 0;
+					long n = 0;
+					while(true){
+						for(int i = 0; i < 256; i++){
+							ok += mover.step(player, dirs[random.nextInt(dirs.length)]) ? 1 : 0;
+						}
+						long now = System.currentTimeMillis();
+						if(now >= end)
+							break;
+						if(now >= measureFrom)
+							n += 256;
+					}
+					steps.add(n);
+					blackhole += ok;
+				}
+			};
+			workers[t].start();
+		}
+		for(Thread t : workers){
+			t.join();
+		}
+		return steps.sum() / (MEASURE_MILLIS / 1000.0);
+	}
+	
+	//====================================================================================//
+	//                                 GAME LOOP BENCHMARK                                //
+	//====================================================================================//
+	
+	/**
+	 * Measures how many steps a second six threads, each moving its own player,
+	 *  get applied to one game: through a game loop's queue, against each thread
+	 *  locking the game to check and make its own steps.
+	 */
+	private static void benchmarkGameLoop() throws InterruptedException {
+		System.out.println("--- loop: steps/sec applied from 6 producers ---");
+		final int producers = 6;
+		final int perProducer = 200000;
+		for(int round = 0; round < 2; round++){ // the first round warms up
+			final CluedoGame lockedGame = new CluedoGame(6, allCharacters(), "gameBoard.txt");
+			final Action[][] lockedSteps = steps(lockedGame);
+			long start = System.nanoTime();
+			runProducers(producers, new Producer() {
+				public void produce(int player) {
+					Random random = new Random(player);
+					for(int i = 0; i < perProducer; i++){
+						Action a = lockedSteps[player][random.nextInt(4)];
+						synchronized(lockedGame){
+							if(a.valid(lockedGame))
+								a.apply(lockedGame);
+						}
+					}
+				}
+			});
+			double locked = producers * perProducer / ((System.nanoTime() - start) / 1e9);
+			
+			final GameLoop loop = new GameLoop(new CluedoGame(6, allCharacters(), "gameBoard.txt"));
+			final Action[][] loopSteps = steps(loop.game());
+			Thread consumer = new Thread(loop);
+			start = System.nanoTime();
+			consumer.start();
+			runProducers(producers, new Producer() {
+				public void produce(int player) {
+					Random random = new Random(player);
+					for(int i = 0; i < perProducer; i++){
+						loop.submit(loopSteps[player][random.nextInt(4)]);
+					}
+				}
+			});
+			loop.stop();
+			consumer.join();
+			double queued = producers * perProducer / ((System.nanoTime() - start) / 1e9);
+			if(round > 0){
+				report("synchronized", locked);
+				report("game loop", queued);
+			}
+		}
+	}
+	
+	/**
+	 * Sends actions for one player.
+	 */
+	private interface Producer {
+		void produce(int player);
+	}
+	
+	/**
+	 * Runs a producer for each of a number of players on threads of their own,
+	 *  returning once they have all finished.
+	 */
+	private static void runProducers(int players, final Producer producer) throws InterruptedException {
+		Thread[] threads = new Thread[players];
+		for(int p = 0; p < players; p++){
+			final int player = p;
+			threads[p] = new Thread() {
+				public void run() {
+					producer.produce(player);
+				}
+			};
+			threads[p].start();
+		}
+		for(Thread t : threads){
+			t.join();
+		}
+	}
+	
+	/**
+	 * Returns the step in each direction for each player of a game.
+	 */
+	private static Action[][] steps(CluedoGame game) {
+		Action[][] steps = new Action[game.players().size()][];
+		for(int p = 0; p < steps.length; p++){
+			steps[p] = new Action[Direction.values().length];
+			for(Direction d : Direction.values()){
+				steps[p][d.ordinal()] = Action.step(game.players().get(p), d);
+			}
+		}
+		return steps;
+	}
+	
+	//====================================================================================//
+	//                                   EVENTS BENCHMARK                                 //
+	//====================================================================================//
+	
+	/**
+	 * Measures steps on a board with no event stream, and with a
+	 *  stream of 0, 1 and 100 subscribers each asking for every event.
+	 */
+	private static void benchmarkEvents() {
+		System.out.println("--- events: runs of 128 steps/sec by number of subscribers ---");
+		for(int subscribers : new int[]{ -1, 0, 1, 100 }){
+			CluedoGame game = new CluedoGame(6, allCharacters(), "gameBoard.txt");
+			if(subscribers >= 0)
+				game.events();
+			for(int i = 0; i < subscribers; i++){
+				game.events().subscribe(new Flow.Subscriber<GameEvent>() {
+					public void onSubscribe(Flow.Subscription s) { s.request(Long.MAX_VALUE); }
+					public void onNext(GameEvent e) { blackhole += e.sequence() > 0 ? 1 : 0; }
+					public void onError(Throwable e) { throw new RuntimeException(e); }
+					public void onComplete() {}
+				});
+			}
+			final Board board = game.board();
+			final CharacterToken player = game.players().get(0);
+			// a step away from the start and back
+			Direction out = null;
+			for(Direction d : Direction.values()){
+				if(board.canMove(player, d))
+					out = d;
+			}
+			final Direction there = out;
+			final Direction back = Direction.values()[out.ordinal() ^ 2];
+			timeMoves(subscribers < 0 ? "no stream" : subscribers + " subscribers", new Runnable() {
+				public void run() {
+					for(int i = 0; i < 64; i++){
+						board.move(player, there);
+						board.move(player, back);
+					}
+				}
+			});
+		}
+	}
+	
+	//====================================================================================//
+	//                                 POSITIONS BENCHMARK                                //
+	//====================================================================================//
+	
+	/**
+	 * Measures finding every token on the board by looking through the
+	 *  position store, by asking each token, and by looking at every tile.
+	 */
+	private static void benchmarkPositions() {
+		System.out.println("--- positions: scans of every token/sec ---");
+		CluedoGame game = new CluedoGame(6, allCharacters(), "gameBoard.txt");
+		final Board board = game.board();
+		final PositionStore positions = game.positions();
+		final List<GameToken> tokens = new ArrayList<GameToken>();
+		tokens.addAll(game.players());
+		tokens.addAll(game.weapons());
+		timeMoves("position store", new Runnable() {
+			public void run() {
+				int sum = 0;
+				for(int m = positions.placed(); m != 0; m &= m - 1){
+					int slot = Integer.numberOfTrailingZeros(m);
+					sum += positions.x(slot) * 32 + positions.y(slot);
+				}
+				blackhole += sum;
+			}
+		});
+		timeMoves("token objects", new Runnable() {
+			public void run() {
+				int sum = 0;
+				for(GameToken t : tokens){
+					sum += t.getXPos() * 32 + t.getYPos();
+				}
+				blackhole += sum;
+			}
+		});
+		timeMoves("every tile", new Runnable() {
+			public void run() {
+				int sum = 0;
+				for(int y = 0; y < board.height(); y++){
+					for(int x = 0; x < board.width(); x++){
+						if(board.getTile(x, y).getToken() != null)
+							sum += x * 32 + y;
+					}
+				}
+				blackhole += sum;
+			}
+		});
+	}
+	
+	//====================================================================================//
+	//                                  HELPER METHODS                                    //
+	//====================================================================================//
+	
+	/**
+	 * Prints a single benchmark result.
+	 */
+	private static void report(String label, double perSecond) {
+		System.out.println(String.format("%-24s %,14.0f /sec", label, perSecond));
+	}
+	
+	/**
+	 * Creates a text client associated with a six player game and its board.
+	 * @return
+	 */
+	private static TextClient newClient(){
+		TextClient client = new TextClient();
+		CluedoGame game = new CluedoGame(6, allCharacters(), "gameBoard.txt");
+		client.setGame(game);
+		client.setBoard(game.board());
+		return client;
+	}
+	
+	/**
+	 * Returns a list of all six players.
+	 * @return
+	 */
+	private static List<CharacterToken> allCharacters(){
+		List<CharacterToken> characters = new ArrayList<CharacterToken>();
+		characters.add(new CharacterToken("bench1", CluedoGame.Character.COLONEL_MUSTARD, true, 1));
+		characters.add(new CharacterToken("bench2", CluedoGame.Character.MISS_SCARLETT, true, 2));
+		characters.add(new CharacterToken("bench3", CluedoGame.Character.MRS_PEACOCK, true, 3));
+		characters.add(new CharacterToken("bench4", CluedoGame.Character.MRS_WHITE, true, 4));
+		characters.add(new CharacterToken("bench5", CluedoGame.Character.PROFESSOR_PLUM, true, 5));
+		characters.add(new CharacterToken("bench6", CluedoGame.Character.THE_REVEREND_GREEN, true, 6));
+		return characters;
+	}
+}
@@ -5,13 +5,27 @@ import static org.junit.Assert.*;
 import org.junit.Test;
 
 import java.awt.Point;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import cluedo.board.*;
+import cluedo.bots.*;
 import cluedo.control.*;
+import cluedo.events.*;
 import cluedo.control.CluedoGame.Character;
 import cluedo.control.CluedoGame.Room;
+import cluedo.lobby.*;
+import cluedo.metrics.*;
 import cluedo.tokens.*;
 
 /**
@@ -372,6 +386,160 @@ public class Tests {
 		assertFalse(board.canMoveWest(player)); // player cannot enter room through wall
 	}
 	
+	@Test
+	public void testPositionStore(){
+		CluedoGame game = newGame();
+		Board board = game.board();
+		PositionStore positions = game.positions();
+		// every token is on the board, and each tile finds its token in the store
+		assertEquals((1 << PositionStore.SLOTS) - 1, positions.placed());
+		for(int slot = 0; slot < PositionStore.SLOTS; slot++){
+			GameToken t = positions.token(slot);
+			assertEquals(t.getXPos(), positions.x(slot));
+			assertEquals(t.getYPos(), positions.y(slot));
+			assertSame(t, board.getTile(t.getXPos(), t.getYPos()).getToken());
+		}
+		CharacterToken player = game.players().get(0);
+		int x = player.getXPos(), y = player.getYPos();
+		Direction step = null;
+		for(Direction d : Direction.values()){
+			if(board.canMove(player, d))
+				step = d;
+		}
+		board.move(player, step);
+		assertNull(board.getTile(x, y).getToken());
+		assertSame(player, board.getTile(x + step.dx(), y + step.dy()).getToken());
+		// a move onto another token fails without moving anyone
+		CharacterToken other = game.players().get(1);
+		try {
+			board.move(new Point(other.getXPos(), other.getYPos()), player);
+			fail("moved onto another token");
+		} catch(CluedoError e) {
+			assertEquals(x + step.dx(), player.getXPos());
+			assertSame(other, board.getTile(other.getXPos(), other.getYPos()).getToken());
+		}
+		// a token of no game keeps its own position
+		CharacterToken loose = getPlayer();
+		loose.setXPos(3);
+		loose.setYPos(4);
+		assertEquals(3, loose.getXPos());
+		assertEquals(4, loose.getYPos());
+		assertFalse(positions.holds(loose));
+		// and joins the store once put on the board, after which only the board moves it
+		board.moveIntoRoom(loose, Room.KITCHEN);
+		assertTrue(positions.holds(loose));
+		assertSame(loose, board.getTile(loose.getXPos(), loose.getYPos()).getToken());
+		assertEquals((1 << PositionStore.SLOTS) - 1, positions.placed() & (1 << PositionStore.SLOTS) - 1);
+		try {
+			player.setXPos(3);
+			fail("moved a token around its board");
+		} catch(CluedoError e) {
+			assertEquals(x + step.dx(), player.getXPos());
+		}
+		// a token belongs to one game only
+		try {
+			new PositionStore().bind(player);
+			fail("token bound to a second game");
+		} catch(CluedoError e) {
+			assertTrue(positions.holds(player));
+			assertSame(player, board.getTile(player.getXPos(), player.getYPos()).getToken());
+		}
+	}
+	
+	@Test
+	public void testLeaveDoorway(){
+		TextClient client = cluedoGame();
+		CluedoGame game = client.game();
+		Board board = client.board();
+		CharacterToken player = game.players().get(0);
+		board.move(new Point(19,4), player);
+		assertTrue(board.canMoveSouth(player)); // player can leave the way they came in
+		assertFalse(board.canMoveWest(player)); // but not through the side of the door
+	}
+	
+	@Test
+	public void testConcurrentBoardFollowsRules(){
+		CluedoGame game = newGame();
+		Board board = game.board();
+		CharacterToken player = game.players().get(0);
+		// the same steps are allowed as on the board, wherever the player walks
+		Random random = new Random(3);
+		for(int i = 0; i < 200; i++){
+			List<Direction> moves = new ArrayList<Direction>();
+			for(Direction d : Direction.values()){
+				// the board is untouched until synced, so each try starts from the same place
+				ConcurrentBoard shared = new ConcurrentBoard(game);
+				assertEquals(board.canMove(player, d), shared.tryMove(player, d));
+				if(board.canMove(player, d))
+					moves.add(d);
+			}
+			board.move(player, moves.get(random.nextInt(moves.size())));
+		}
+		// tokens each take their own square of a room
+		CharacterToken other = game.players().get(1);
+		ConcurrentBoard shared = new ConcurrentBoard(game);
+		assertTrue(shared.tryMoveIntoRoom(player, Room.KITCHEN));
+		assertTrue(shared.tryMoveIntoRoom(other, Room.KITCHEN));
+		assertTrue(shared.tokenAt(shared.x(player), shared.y(player)) == player);
+		assertTrue(shared.tokenAt(shared.x(other), shared.y(other)) == other);
+		shared.sync();
+		assertTrue(board.getTile(player.getXPos(), player.getYPos()).getToken() == player);
+		assertTrue(board.getTile(other.getXPos(), other.getYPos()).getToken() == other);
+	}
+	
+	@Test
+	public void testConcurrentBoardStress() throws Exception {
+		final CluedoGame game = newGame();
+		final ConcurrentBoard shared = new ConcurrentBoard(game);
+		final List<GameToken> tokens = shared.tokens();
+		final Room[] rooms = Room.values();
+		// four threads moving tokens picked at random, so the same token is fought over too
+		Runnable[] movers = new Runnable[4];
+		for(int t = 0; t < movers.length; t++){
+			final Random random = new Random(t);
+			movers[t] = new Runnable() {
+				public void run() {
+					Direction[] dirs = Direction.values();
+					for(int i = 0; i < 20000; i++){
+						GameToken token = tokens.get(random.nextInt(tokens.size()));
+						if(random.nextInt(50) == 0)
+							shared.tryMoveIntoRoom(token, rooms[random.nextInt(rooms.length)]);
+						else
+							shared.tryMove(token, dirs[random.nextInt(dirs.length)]);
+					}
+				}
+			};
+		}
+		runThreads(movers);
+		// every token is on exactly one square, and holds it
+		Board board = game.board();
+		int held = 0;
+		for(int y = 0; y < board.height(); y++){
+			for(int x = 0; x < board.width(); x++){
+				GameToken t = shared.tokenAt(x, y);
+				if(t != null){
+					held++;
+					assertEquals(x, shared.x(t));
+					assertEquals(y, shared.y(t));
+				}
+			}
+		}
+		assertEquals(tokens.size(), held);
+		shared.sync();
+		held = 0;
+		for(int y = 0; y < board.height(); y++){
+			for(int x = 0; x < board.width(); x++){
+				GameToken t = board.getTile(x, y).getToken();
+				if(t != null){
+					held++;
+					assertEquals(x, t.getXPos());
+					assertEquals(y, t.getYPos());
+				}
+			}
+		}
+		assertEquals(tokens.size(), held);
+	}
+	
 	//====================================================================================//
 	//                           ACCUSATION + SUGGESTION TESTS                            //
 	//====================================================================================//
@@ -434,6 +602,1124 @@ public class Tests {
 		assertTrue(client.gameStatus()); // All player have lost
 	}
 	
+	@Test
+	public void testAccuseWithWeaponToken(){
+		TextClient client = miniCluedoGame();
+		CluedoGame game = client.game();
+		Card[] guess = game.Solution().clone();
+		// the weapon token stands for its weapon card
+		guess[2] = game.getWeapon(guess[2].toString());
+		assertTrue(client.checkAccusation(guess, game.players().get(0)));
+	}
+	
+	@Test
+	public void testSuggestWithWeaponToken(){
+		TextClient client = cluedoGame();
+		CluedoGame game = client.game();
+		OutputSink output = client.output();
+		client.setOutput(new NullSink());
+		try {
+			// find a weapon card held by someone other than the first player
+			Card held = null;
+			for(CharacterToken p : game.players().subList(1, game.players().size())){
+				for(Card c : p.getHand()){
+					if(c instanceof CluedoGame.Weapon)
+						held = c;
+				}
+			}
+			assertNotNull(held);
+			Card[] suggestion = game.Solution().clone();
+			suggestion[2] = game.getWeapon(held.toString());
+			assertTrue(client.checkSuggestion(suggestion, game.players().get(0)));
+		} finally {
+			client.setOutput(output);
+		}
+	}
+	
+	@Test
+	public void testRefutationSeatArrangements(){
+		Card[] suggestion = { Character.values()[0], Room.values()[0], CluedoGame.Weapon.values()[0] };
+		// cards no one suggested, so that every player holds something
+		Card[] fillers = { Character.values()[1], Character.values()[2], Character.values()[3],
+				Character.values()[4], Character.values()[5], Room.values()[1] };
+		for(int n = 3; n <= 6; n++){
+			int arrangements = (n + 1) * (n + 1) * (n + 1);
+			for(int a = 0; a < arrangements; a++){
+				// the seat holding each suggested card, or n if it is in the solution
+				int[] holder = { a % (n + 1), a / (n + 1) % (n + 1), a / (n + 1) / (n + 1) };
+				List<CharacterToken> players = new ArrayList<CharacterToken>();
+				for(int p = 0; p < n; p++){
+					CharacterToken c = new CharacterToken("TEST" + (p + 1), Character.values()[p], true, p + 1);
+					c.addCard(fillers[p]);
+					for(int i = 2; i >= 0; i--){
+						if(holder[i] == p)
+							c.addCard(suggestion[i]);
+					}
+					players.add(c);
+				}
+				RefutationEngine engine = new RefutationEngine(players, RefuterPolicy.LOWEST_ID);
+				for(int suggester = 0; suggester < n; suggester++){
+					// ask clockwise, and the first holder shows their lowest card
+					int expected = RefutationEngine.NONE;
+					for(int i = 1; i < n && expected == RefutationEngine.NONE; i++){
+						int seat = (suggester + i) % n;
+						int lowest = Integer.MAX_VALUE;
+						for(int c = 0; c < 3; c++){
+							if(holder[c] == seat)
+								lowest = Math.min(lowest, suggestion[c].id());
+						}
+						if(lowest != Integer.MAX_VALUE)
+							expected = seat << 8 | lowest;
+					}
+					assertEquals(expected, engine.refute(players.get(suggester), suggestion));
+					// the order of asking the bots learn from is the order refuted in
+					for(int i = 1; i < n; i++){
+						assertEquals((suggester + i) % n, engine.asked(suggester, i - 1));
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testRefuterPolicies(){
+		CharacterToken refuter = getPlayer();
+		refuter.addCard(Room.KITCHEN);
+		refuter.addCard(Character.MISS_SCARLETT);
+		int matching = 1 << Room.KITCHEN.id() | 1 << Character.MISS_SCARLETT.id();
+		assertEquals(Room.KITCHEN.id(), RefuterPolicy.HAND_ORDER.choose(refuter, matching));
+		assertEquals(Character.MISS_SCARLETT.id(), RefuterPolicy.LOWEST_ID.choose(refuter, matching));
+		RefuterPolicy random = RefuterPolicy.random(new Random(6));
+		boolean[] shown = new boolean[CluedoGame.NUM_CARDS];
+		for(int i = 0; i < 100; i++){
+			int c = random.choose(refuter, matching);
+			assertTrue((matching & 1 << c) != 0);
+			shown[c] = true;
+		}
+		assertTrue(shown[Room.KITCHEN.id()] && shown[Character.MISS_SCARLETT.id()]);
+	}
+	
+	//====================================================================================//
+	//                                    OUTPUT TESTS                                    //
+	//====================================================================================//
+	
+	@Test
+	public void testMemoryOutput(){
+		TextClient client = cluedoGame();
+		BufferedSink sink = new BufferedSink();
+		OutputSink output = client.output();
+		client.setOutput(sink);
+		try {
+			TextClient.viewHelp();
+			sink.flush(); // in-memory sinks keep their text
+			assertTrue(sink.toString().contains("CLUEDO GUIDE"));
+			sink.clear();
+			client.board().printBoard(sink);
+			assertEquals(25, sink.toString().split("\n").length);
+		} finally {
+			client.setOutput(output);
+		}
+	}
+	
+	@Test
+	public void testNullOutput(){
+		TextClient client = cluedoGame();
+		OutputSink output = client.output();
+		client.setOutput(new NullSink());
+		try {
+			Card[] solution = client.game().Solution();
+			assertTrue(client.checkAccusation(solution, client.game().players().get(0)));
+		} finally {
+			client.setOutput(output);
+		}
+	}
+	
+	@Test
+	public void testScriptedGame() throws IOException{
+		TextClient client = new TextClient();
+		OutputSink output = client.output();
+		BufferedReader input = client.input();
+		client.setOutput(new NullSink());
+		try {
+			ScriptReader script = new ScriptReader(new StringReader(
+					"# all three players accuse straight away\n3\nA\nmiss scarlett\nB\nmrs white\nC\nmrs peacock\n" +
+					"Make accusation.\n1\n1\n1\nMake accusation.\n2\n2\n2\nMake accusation.\n3\n3\n3\n---\n"));
+			client.setInput(script);
+			assertTrue(script.nextGame());
+			int turns = TextClient.playGame("gameBoard.txt");
+			assertTrue(turns >= 1 && turns <= 3);
+			assertTrue(client.gameStatus());
+			assertFalse(script.nextGame());
+		} finally {
+			client.setOutput(output);
+			client.setInput(input);
+		}
+	}
+	
+	@Test
+	public void testScriptEndsMidGame() throws IOException{
+		TextClient client = new TextClient();
+		OutputSink output = client.output();
+		BufferedReader input = client.input();
+		client.setOutput(new NullSink());
+		try {
+			ScriptReader script = new ScriptReader(new StringReader("3\nA\nmiss scarlett\n---\n"));
+			client.setInput(script);
+			assertTrue(script.nextGame());
+			try{
+				TextClient.playGame("gameBoard.txt");
+				fail();
+			}
+			catch(CluedoError e){
+			}
+		} finally {
+			client.setOutput(output);
+			client.setInput(input);
+		}
+	}
+	
+	//====================================================================================//
+	//                                   SPECTATOR TESTS                                  //
+	//====================================================================================//
+	
+	@Test
+	public void testSpectatorFrames(){
+		TextClient client = cluedoGame();
+		CluedoGame game = client.game();
+		Board board = client.board();
+		Spectator spectator = game.spectators().subscribe(2);
+		byte[] keyframe = spectator.poll();
+		assertEquals(SpectatorChannel.KEYFRAME, keyframe[0]);
+		assertEquals(12, keyframe[1]); // six characters and six weapons
+		assertNull(spectator.poll());
+		CharacterToken player = game.players().get(0);
+		board.moveSouth(player);
+		byte[] move = spectator.poll();
+		assertEquals(SpectatorChannel.MOVE, move[0]);
+		assertEquals(player.getToken().ordinal(), move[1]);
+		assertEquals(player.getXPos(), move[2]);
+		assertEquals(player.getYPos(), move[3]);
+	}
+	
+	@Test
+	public void testSlowSpectatorGetsKeyframe(){
+		TextClient client = cluedoGame();
+		CluedoGame game = client.game();
+		Board board = client.board();
+		Spectator slow = game.spectators().subscribe(2);
+		Spectator fast = game.spectators().subscribe(8);
+		slow.poll();
+		fast.poll();
+		CharacterToken player = game.players().get(0);
+		board.moveSouth(player);
+		board.moveSouth(player);
+		board.moveSouth(player); // one more than the slow spectator can hold
+		assertEquals(1, slow.dropped());
+		assertEquals(SpectatorChannel.KEYFRAME, slow.poll()[0]);
+		assertNull(slow.poll());
+		for(int i = 0; i < 3; i++){
+			assertEquals(SpectatorChannel.MOVE, fast.poll()[0]);
+		}
+		assertEquals(0, fast.dropped());
+	}
+	
+	@Test
+	public void testEventStreamBackPressure(){
+		CluedoGame game = newGame();
+		final List<GameEvent> first = new ArrayList<GameEvent>();
+		final List<GameEvent> second = new ArrayList<GameEvent>();
+		final Flow.Subscription[] subscription = new Flow.Subscription[1];
+		// asks for one event at a time
+		game.events().subscribe(new Flow.Subscriber<GameEvent>() {
+			public void onSubscribe(Flow.Subscription s) { subscription[0] = s; s.request(1); }
+			public void onNext(GameEvent e) { first.add(e); }
+			public void onError(Throwable e) { fail(e.getMessage()); }
+			public void onComplete() {}
+		});
+		// asks for everything
+		game.events().subscribe(new Flow.Subscriber<GameEvent>() {
+			public void onSubscribe(Flow.Subscription s) { s.request(Long.MAX_VALUE); }
+			public void onNext(GameEvent e) { second.add(e); }
+			public void onError(Throwable e) { fail(e.getMessage()); }
+			public void onComplete() {}
+		});
+		assertEquals(2, game.events().subscribers());
+		CharacterToken player = game.players().get(0);
+		game.diceRolled(player, 3);
+		for(Direction d : Direction.values()){
+			if(game.board().canMove(player, d)){
+				game.board().move(player, d);
+				break;
+			}
+		}
+		game.board().moveIntoRoom(player, Room.HALL);
+		assertEquals(1, first.size());
+		assertEquals(3, second.size());
+		assertTrue(second.get(0) instanceof DiceRolled);
+		assertEquals(3, ((DiceRolled)second.get(0)).roll());
+		assertTrue(second.get(2) instanceof TokenMoved);
+		assertTrue(((TokenMoved)second.get(2)).token() == player);
+		// the waiting events are sent when asked for, in order, and are the same objects
+		subscription[0].request(5);
+		assertEquals(3, first.size());
+		for(int i = 0; i < 3; i++){
+			assertTrue(first.get(i) == second.get(i));
+			assertEquals(i + 1, first.get(i).sequence());
+		}
+		subscription[0].cancel();
+		assertEquals(1, game.events().subscribers());
+	}
+	
+	@Test
+	public void testEventStreamOverflow(){
+		CluedoGame game = newGame();
+		GameEventPublisher events = new GameEventPublisher(game, 2);
+		game.addListener(events);
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		final boolean[] completed = new boolean[1];
+		Flow.Subscriber<GameEvent> idle = new Flow.Subscriber<GameEvent>() {
+			public void onSubscribe(Flow.Subscription s) {}
+			public void onNext(GameEvent e) { fail("nothing was asked for"); }
+			public void onError(Throwable e) { errors.add(e); }
+			public void onComplete() { completed[0] = true; }
+		};
+		events.subscribe(idle);
+		CharacterToken player = game.players().get(0);
+		game.diceRolled(player, 1);
+		game.diceRolled(player, 2);
+		assertTrue(errors.isEmpty());
+		game.diceRolled(player, 3); // one more than can wait
+		assertEquals(1, errors.size());
+		assertEquals(0, events.subscribers());
+		game.diceRolled(player, 4);
+		assertEquals(1, errors.size());
+		// a subscriber which keeps up is told when the stream ends
+		events.subscribe(new Flow.Subscriber<GameEvent>() {
+			public void onSubscribe(Flow.Subscription s) { s.request(Long.MAX_VALUE); }
+			public void onNext(GameEvent e) {}
+			public void onError(Throwable e) { errors.add(e); }
+			public void onComplete() { completed[0] = true; }
+		});
+		events.complete();
+		assertTrue(completed[0]);
+		assertEquals(1, errors.size());
+	}
+	
+	//====================================================================================//
+	//                                    METRICS TESTS                                   //
+	//====================================================================================//
+	
+	@Test
+	public void testLatencyPercentiles(){
+		LatencyHistogram h = new LatencyHistogram("test");
+		for(int i = 1; i <= 1000; i++){
+			h.record(i * 1000L); // 1us to 1ms
+		}
+		assertEquals(1000, h.count());
+		assertEquals(1000000L, h.max());
+		assertEquals(500000.0, h.percentile(50), 500000 * 0.07); // within a bucket
+		assertEquals(990000.0, h.percentile(99), 990000 * 0.07);
+	}
+	
+	@Test
+	public void testMoveCounted(){
+		TextClient client = cluedoGame();
+		long moves = Metrics.MOVES.sum();
+		client.board().moveSouth(client.game().players().get(0));
+		if(Metrics.ENABLED)
+			assertEquals(moves + 1, Metrics.MOVES.sum());
+	}
+	
+	@Test
+	public void testShortGamesMovesSampled(){
+		long sampled = Metrics.MOVE.count();
+		long moves = Metrics.MOVES.sum();
+		// each game makes fewer than sixteen moves, placing the weapons and taking one step
+		for(int i = 0; i < 8; i++){
+			CluedoGame game = newGame();
+			game.board().moveSouth(game.players().get(0));
+		}
+		if(Metrics.ENABLED){
+			long made = Metrics.MOVES.sum() - moves;
+			assertTrue(made >= 32);
+			assertTrue(Metrics.MOVE.count() - sampled >= made / 16);
+		}
+	}
+	
+	@Test
+	public void testHeatmapCountsGames() throws Exception {
+		final Heatmap heatmap = new Heatmap("gameBoard.txt");
+		final long[][] expected = new long[2][3]; // moves, rolls and suggestions of each game
+		Runnable[] players = new Runnable[2];
+		for(int t = 0; t < players.length; t++){
+			final long[] counts = expected[t];
+			final Random random = new Random(t);
+			players[t] = new Runnable() {
+				public void run() {
+					List<Bot> bots = new ArrayList<Bot>();
+					for(int i = 0; i < 3; i++){
+						bots.add(Bots.create("notebook", random));
+					}
+					BotGame game = new BotGame("gameBoard.txt", bots, random);
+					game.game().addListener(heatmap.recorder(game.game()));
+					game.game().addListener(new GameListener() {
+						public void tokenMoved(GameToken token, int x, int y) {
+							if(token instanceof CharacterToken)
+								counts[0]++;
+						}
+						public void diceRolled(CharacterToken player, int roll) {
+							counts[1]++;
+						}
+						public void suggestionMade(CharacterToken suggester, Card[] suggestion, boolean refuted) {
+							counts[2]++;
+						}
+					});
+					game.play(Long.MAX_VALUE);
+				}
+			};
+		}
+		runThreads(players);
+		long visits = 0, rolls = 0, suggestions = 0, entries = 0;
+		Board board = newGame().board();
+		for(int y = 0; y < board.height(); y++){
+			for(int x = 0; x < board.width(); x++){
+				visits += heatmap.visits(x, y);
+				rolls += heatmap.rolls(x, y);
+				for(Room room : Room.values()){
+					assertTrue(heatmap.reached(x, y, room) <= heatmap.rolls(x, y));
+				}
+			}
+		}
+		for(Room room : Room.values()){
+			suggestions += heatmap.suggestions(room);
+			entries += heatmap.entries(room);
+		}
+		assertEquals(2, heatmap.games());
+		assertEquals(expected[0][0] + expected[1][0], visits);
+		assertEquals(expected[0][1] + expected[1][1], rolls);
+		assertEquals(expected[0][2] + expected[1][2], suggestions);
+		assertTrue(entries <= visits);
+		StringWriter out = new StringWriter();
+		heatmap.write(out);
+		assertTrue(out.toString().startsWith("board,gameBoard.txt\ngames,2\nrolls," + rolls + "\n"));
+	}
+	
+	//====================================================================================//
+	//                                      BOT TESTS                                     //
+	//====================================================================================//
+	
+	@Test
+	public void testBotGameEnds(){
+		List<Bot> bots = new ArrayList<Bot>();
+		Random random = new Random(1);
+		for(int i = 0; i < 4; i++){
+			bots.add(Bots.create(i % 2 == 0 ? "random" : "notebook", random));
+		}
+		BotGame.Result result = new BotGame("gameBoard.txt", bots, random).play(Long.MAX_VALUE);
+		assertFalse(result.timedOut());
+		assertTrue(result.winner() >= 0);
+		assertTrue(result.turns() > 0);
+	}
+	
+	@Test
+	public void testInfoBotGameEnds(){
+		List<Bot> bots = new ArrayList<Bot>();
+		Random random = new Random(2);
+		for(int i = 0; i < 3; i++){
+			bots.add(Bots.create(i == 0 ? "info" : "notebook", random));
+		}
+		BotGame.Result result = new BotGame("gameBoard.txt", bots, random).play(Long.MAX_VALUE);
+		assertFalse(result.timedOut());
+		assertTrue(result.winner() >= 0);
+	}
+	
+	@Test
+	public void testTournamentRatingsMove() throws IOException {
+		StringWriter results = new StringWriter();
+		Tournament t = new Tournament("gameBoard.txt", Arrays.asList("random", "notebook", "info"), 
+				3, 1, 60000, results);
+		try {
+			t.roundRobin(3);
+		} finally {
+			t.shutdown();
+		}
+		// every game was won, so the ratings are no longer all the same
+		String[] lines = results.toString().split("\n");
+		assertEquals(4, lines.length);
+		for(int i = 1; i < lines.length; i++){
+			String[] fields = lines[i].split(",");
+			assertFalse(fields[3].isEmpty());
+			assertEquals("false", fields[6]);
+		}
+		double total = 0;
+		for(double r : t.ratings().values()){
+			assertTrue(r != Tournament.INITIAL_RATING);
+			total += r;
+		}
+		assertEquals(3 * Tournament.INITIAL_RATING, total, 1e-6);
+	}
+	
+	@Test
+	public void testSuggestionScores(){
+		CluedoGame game = threePlayerGame();
+		CharacterToken player = game.players().get(0);
+		SuggestionScorer scorer = new SuggestionScorer(new EndgameSolver(game, player));
+		assertTrue(scorer.deal(new Random(4)));
+		assertEquals(SuggestionScorer.SAMPLES, scorer.deals());
+		Room room = Room.KITCHEN;
+		double[] scores = scorer.score(room);
+		assertEquals(SuggestionScorer.PAIRS, scores.length);
+		for(double s : scores){
+			assertTrue(s > -1e-9);
+		}
+		// cards the player holds tell them nothing, as no one else can show them
+		Character suspect = null;
+		CluedoGame.Weapon weapon = null;
+		for(Card c : player.getHand()){
+			if(c instanceof Character)
+				suspect = (Character)c;
+			else if(c instanceof CluedoGame.Weapon)
+				weapon = (CluedoGame.Weapon)c;
+			else if(c instanceof Room)
+				room = (Room)c;
+		}
+		if(suspect != null && weapon != null && player.getHand().contains(room)){
+			scores = scorer.score(room);
+			assertEquals(0, scores[suspect.ordinal() * 6 + weapon.ordinal()], 1e-9);
+		}
+		Card[] best = scorer.best(Room.KITCHEN, new Random(5));
+		assertEquals(Room.KITCHEN, best[1]);
+	}
+	
+	@Test
+	public void testEndgameUniform(){
+		CluedoGame game = threePlayerGame();
+		EndgameSolver solver = new EndgameSolver(game, game.players().get(0));
+		EndgameSolver.Odds odds = solver.solve();
+		// with nothing seen but a hand, every solution left is as likely as any other
+		assertEquals(solver.candidates(), odds.size());
+		double total = 0;
+		for(int i = 0; i < odds.size(); i++){
+			assertEquals(1.0 / odds.size(), odds.probability(i), 1e-9);
+			total += odds.probability(i);
+		}
+		assertEquals(1.0, total, 1e-9);
+	}
+	
+	@Test
+	public void testEndgameSolved(){
+		CluedoGame game = threePlayerGame();
+		List<CharacterToken> players = game.players();
+		EndgameSolver solver = new EndgameSolver(game, players.get(0));
+		Card[] solution = game.Solution();
+		// no one else holds any of the solution cards, so they can only be the answer
+		solver.passed(players.get(1), solution);
+		solver.passed(players.get(2), solution);
+		EndgameSolver.Odds odds = solver.solve();
+		assertEquals(1.0, odds.probability(solution[0], solution[1], solution[2]), 1e-9);
+		assertEquals(1.0, odds.bestProbability(), 1e-9);
+		assertArrayEquals(solution, odds.accuse(0.9));
+	}
+	
+	@Test
+	public void testEndgameTrueSolutionPossible(){
+		Random random = new Random(3);
+		for(int n = 0; n < 10; n++){
+			CluedoGame game = threePlayerGame();
+			List<CharacterToken> players = game.players();
+			EndgameSolver solver = new EndgameSolver(game, players.get(0));
+			// see some cards, and hear about refutations which really happened
+			for(int i = 1; i <= 2; i++){
+				CharacterToken p = players.get(i);
+				solver.shown(p, p.getHand().get(random.nextInt(p.getHand().size())));
+				Card[] suggestion = { Character.values()[random.nextInt(6)],
+						Room.values()[random.nextInt(9)], CluedoGame.Weapon.values()[random.nextInt(6)] };
+				boolean holds = false;
+				for(Card c : suggestion){
+					holds |= p.getHand().contains(c);
+				}
+				if(holds)
+					solver.refuted(p, suggestion);
+				else
+					solver.passed(p, suggestion);
+			}
+			Card[] solution = game.Solution();
+			EndgameSolver.Odds odds = solver.solve();
+			assertTrue(odds.probability(solution[0], solution[1], solution[2]) > 0);
+		}
+	}
+	
+	//====================================================================================//
+	//                                  DICE + REACH TESTS                                //
+	//====================================================================================//
+	
+	@Test
+	public void testDiceTables(){
+		Dice two = Dice.TWO_D6;
+		assertEquals(2, two.min());
+		assertEquals(12, two.max());
+		assertEquals(6.0 / 36, two.probability(7), 1e-12);
+		assertEquals(1.0, two.atLeast(2), 1e-12);
+		assertEquals(1.0 / 36, two.atLeast(12), 1e-12);
+		assertEquals(0.0, two.atLeast(13), 1e-12);
+		assertEquals("2d6", Dice.parse("2D6").toString());
+		Dice custom = Dice.parse("0,1,1,2");
+		assertEquals(0.5, custom.probability(3), 1e-12);
+		Random random = new Random(7);
+		int[] rolls = new int[13];
+		for(int i = 0; i < 36000; i++){
+			int r = two.roll(random);
+			assertTrue(r >= 2 && r <= 12);
+			rolls[r]++;
+		}
+		assertTrue(rolls[7] > rolls[2] * 3);
+	}
+	
+	@Test
+	public void testMoveTable(){
+		CluedoGame game = newMiniGame();
+		Board board = game.board();
+		CharacterToken player = game.players().get(0);
+		int startX = player.getXPos(), startY = player.getYPos();
+		MoveTable table = MoveTable.of("gameBoard.txt");
+		assertSame(table, MoveTable.of("gameBoard.txt"));
+		assertEquals(0, table.roomsWithin(startX, startY, 0));
+		assertTrue(table.expectedRooms(startX, startY, Dice.TWO_D6) >= table.expectedRooms(startX, startY, Dice.ONE_D6));
+		// no walk reaches a room in fewer steps than the table says
+		Random random = new Random(9);
+		boolean entered = false;
+		for(int step = 1; step <= 500; step++){
+			List<Direction> moves = new ArrayList<Direction>();
+			for(Direction d : Direction.values()){
+				if(board.canMove(player, d))
+					moves.add(d);
+			}
+			board.move(player, moves.get(random.nextInt(moves.size())));
+			Tile t = board.getTile(player.getXPos(), player.getYPos());
+			if(t instanceof RoomTile){
+				Room room = ((RoomTile)t).name();
+				assertTrue(table.distance(startX, startY, room) <= step);
+				assertEquals(0, table.distance(player.getXPos(), player.getYPos(), room));
+				entered = true;
+			}
+		}
+		assertTrue(entered);
+	}
+	
+	@Test
+	public void testPathToRoom(){
+		CluedoGame game = newMiniGame();
+		Board board = game.board();
+		CharacterToken player = game.players().get(0);
+		MoveTable table = MoveTable.of("gameBoard.txt");
+		for(Room room : Room.values()){
+			int least = table.distance(player.getXPos(), player.getYPos(), room);
+			List<Direction> path = board.pathToRoom(player, room, 100);
+			assertNotNull(path);
+			assertTrue(path.size() >= least);
+			assertNull(board.pathToRoom(player, room, path.size() - 1));
+		}
+		// walking the path steps into the room
+		List<Direction> path = board.pathToRoom(player, Room.KITCHEN, 100);
+		board.follow(player, path);
+		Tile t = board.getTile(player.getXPos(), player.getYPos());
+		assertTrue(t instanceof RoomTile);
+		assertEquals(Room.KITCHEN, ((RoomTile)t).name());
+		assertTrue(board.pathToRoom(player, Room.KITCHEN, 0).isEmpty());
+	}
+	
+	@Test
+	public void testPathToSquare(){
+		CluedoGame game = newGame();
+		Board board = game.board();
+		CharacterToken player = game.players().get(0);
+		int x = player.getXPos(), y = player.getYPos();
+		// a square a few steps away, found by walking
+		CharacterToken walker = player;
+		Random random = new Random(10);
+		for(int i = 0; i < 3; i++){
+			List<Direction> moves = new ArrayList<Direction>();
+			for(Direction d : Direction.values()){
+				if(board.canMove(walker, d))
+					moves.add(d);
+			}
+			board.move(walker, moves.get(random.nextInt(moves.size())));
+		}
+		int tx = player.getXPos(), ty = player.getYPos();
+		board.place(player, x, y);
+		List<Direction> path = board.pathTo(player, tx, ty, 3);
+		assertNotNull(path);
+		assertTrue(path.size() <= 3);
+		board.follow(player, path);
+		assertEquals(tx, player.getXPos());
+		assertEquals(ty, player.getYPos());
+		// walls and other tokens are never reachable
+		CharacterToken other = game.players().get(1);
+		assertNull(board.pathTo(player, other.getXPos(), other.getYPos(), 100));
+		assertNull(board.pathTo(player, 0, 0, 100));
+	}
+	
+	@Test
+	public void testPathFinderMatchesBreadthFirst(){
+		CluedoGame game = newGame();
+		Board board = game.board();
+		CharacterToken player = game.players().get(0);
+		int sx = player.getXPos(), sy = player.getYPos();
+		int width = board.width(), height = board.height();
+		// steps to every square, found by trying each move from each square in turn
+		int[] dist = new int[width * height];
+		Arrays.fill(dist, -1);
+		int[] queue = new int[width * height];
+		int head = 0, tail = 0;
+		dist[sy * width + sx] = 0;
+		queue[tail++] = sy * width + sx;
+		while(head < tail){
+			int square = queue[head++];
+			board.place(player, square % width, square / width);
+			for(Direction d : Direction.values()){
+				int next = square + d.dy() * width + d.dx();
+				if(board.canMove(player, d) && dist[next] < 0){
+					dist[next] = dist[square] + 1;
+					queue[tail++] = next;
+				}
+			}
+		}
+		board.place(player, sx, sy);
+		byte[] steps = new byte[width * height];
+		for(int y = 0; y < height; y++){
+			for(int x = 0; x < width; x++){
+				int expected = x == sx && y == sy ? 0 : dist[y * width + x];
+				int found = PathFinder.distance(board, sx, sy, x, y, width * height);
+				assertEquals(expected < 0 ? PathFinder.NO_PATH : expected, found);
+				assertEquals(found, PathFinder.path(board, sx, sy, x, y, width * height, steps));
+				// too few steps allowed
+				if(found > 0)
+					assertEquals(PathFinder.NO_PATH, PathFinder.distance(board, sx, sy, x, y, found - 1));
+			}
+		}
+		// every path found can be walked
+		for(int i = 0; i < tail; i += 7){
+			int x = queue[i] % width, y = queue[i] / width;
+			List<Direction> path = board.pathTo(player, x, y, width * height);
+			assertEquals(dist[queue[i]], path.size());
+			board.follow(player, path);
+			assertEquals(x, player.getXPos());
+			assertEquals(y, player.getYPos());
+			board.place(player, sx, sy);
+		}
+	}
+	
+	//====================================================================================//
+	//                                   GAME LOOP TESTS                                  //
+	//====================================================================================//
+	
+	@Test
+	public void testGameLoopKeepsProducerOrder() throws Exception {
+		final GameLoop loop = new GameLoop(newGame());
+		final List<Integer> seen = new ArrayList<Integer>(); // only added to by the loop
+		Thread consumer = new Thread(loop);
+		consumer.start();
+		Runnable[] producers = new Runnable[6];
+		for(int p = 0; p < producers.length; p++){
+			final int producer = p;
+			producers[p] = new Runnable() {
+				public void run() {
+					for(int i = 0; i < 5000; i++){
+						final int n = producer * 1000000 + i;
+						loop.submit(new Action() {
+							public boolean valid(CluedoGame game) {
+								return true;
+							}
+							public void apply(CluedoGame game) {
+								seen.add(n);
+							}
+						});
+					}
+				}
+			};
+		}
+		try {
+			runThreads(producers);
+		} finally {
+			loop.stop();
+		}
+		consumer.join();
+		assertEquals(30000, seen.size());
+		assertEquals(30000, loop.applied());
+		// each producer's actions are applied in the order they were sent
+		int[] next = new int[producers.length];
+		for(int n : seen){
+			assertEquals(next[n / 1000000]++, n % 1000000);
+		}
+	}
+	
+	@Test
+	public void testGameLoopRejectsInvalidActions(){
+		CluedoGame game = newGame();
+		GameLoop loop = new GameLoop(game);
+		CharacterToken player = game.players().get(0);
+		int x = player.getXPos(), y = player.getYPos();
+		for(Direction d : Direction.values()){
+			loop.submit(Action.step(player, d));
+		}
+		// nothing happens until the loop takes the actions
+		assertEquals(x, player.getXPos());
+		assertEquals(y, player.getYPos());
+		assertEquals(4, loop.drain());
+		// the first allowed step is taken, and the rest are checked from the new square
+		assertFalse(x == player.getXPos() && y == player.getYPos());
+		assertTrue(loop.applied() >= 1);
+		assertEquals(4, loop.applied() + loop.rejected());
+		assertEquals(0, loop.drain());
+		loop.submit(Action.intoRoom(player, Room.HALL));
+		loop.drain();
+		assertTrue(game.board().inRoom(player));
+		// a token of another game can not be sent into a room
+		assertFalse(Action.intoRoom(getPlayer(), Room.HALL).valid(game));
+		long rejected = loop.rejected();
+		loop.submit(Action.intoRoom(getPlayer(), Room.HALL));
+		loop.drain();
+		assertEquals(rejected + 1, loop.rejected());
+	}
+
+	@Test
+	public void testGameLoopSurvivesFailingListener(){
+		CluedoGame game = newGame();
+		GameLoop loop = new GameLoop(game);
+		CharacterToken player = game.players().get(0);
+		final int[] calls = new int[1];
+		game.addListener(new GameListener() {
+			public void tokenMoved(GameToken token, int x, int y) {
+				calls[0]++;
+				throw new IllegalStateException("listener failed");
+			}
+		});
+		Point start = new Point(player.getXPos(), player.getYPos());
+		loop.submit(Action.intoRoom(player, Room.HALL));
+		loop.submit(Action.intoRoom(player, Room.KITCHEN));
+		// the first failure does not drop the rest of the batch
+		assertEquals(2, loop.drain());
+		assertEquals(2, calls[0]);
+		assertEquals(2, loop.failed());
+		assertEquals(0, loop.applied());
+		assertFalse(start.equals(new Point(player.getXPos(), player.getYPos())));
+		// and the loop still takes actions afterwards
+		game.listeners().clear();
+		loop.submit(Action.intoRoom(player, Room.LOUNGE));
+		assertEquals(1, loop.drain());
+		assertEquals(1, loop.applied());
+		assertEquals(2, loop.failed());
+		assertTrue(game.board().inRoom(player));
+	}
+
+	//====================================================================================//
+	//                                     LOBBY TESTS                                    //
+	//====================================================================================//
+	
+	@Test
+	public void testLobbyAssignsCharacters(){
+		final List<Match> matches = new ArrayList<Match>();
+		Lobby lobby = new Lobby(1, 3, new MatchListener() {
+			public void matched(Match match) { matches.add(match); }
+		});
+		lobby.join("a", Character.MRS_WHITE);
+		lobby.join("b", Character.MRS_WHITE); // already taken
+		lobby.join("c", null);
+		assertEquals(1, matches.size());
+		List<CharacterToken> players = matches.get(0).players();
+		assertEquals(6, players.size());
+		assertEquals(Character.MRS_WHITE, players.get(0).getToken());
+		assertFalse(players.get(1).getToken() == Character.MRS_WHITE);
+		assertFalse(players.get(1).getToken() == players.get(2).getToken());
+		assertTrue(players.get(2).isPlayer());
+		assertFalse(players.get(3).isPlayer());
+	}
+	
+	@Test
+	public void testLobbyFlush(){
+		final List<Match> matches = new ArrayList<Match>();
+		Lobby lobby = new Lobby(4, 6, new MatchListener() {
+			public void matched(Match match) { matches.add(match); }
+		});
+		for(int i = 0; i < 8; i++){
+			lobby.join("p" + i, null);
+		}
+		lobby.flush(); // a full game, then two players put back
+		assertEquals(1, matches.size());
+		assertEquals(6, matches.get(0).size());
+		assertEquals(2, lobby.waiting());
+		lobby.join("p8", null);
+		lobby.flush();
+		assertEquals(2, matches.size());
+		assertEquals(3, matches.get(1).size());
+		assertNotNull(matches.get(1).start("gameBoard.txt"));
+	}
+
+	@Test
+	public void testMatchStartsTwice(){
+		final List<Match> matches = new ArrayList<Match>();
+		Lobby lobby = new Lobby(3, 3, new MatchListener() {
+			public void matched(Match match) { matches.add(match); }
+		});
+		for(int i = 0; i < 3; i++){
+			lobby.join("p" + i, null);
+		}
+		Match match = matches.get(0);
+		CluedoGame first = match.start("gameBoard.txt");
+		CluedoGame second = match.start("gameBoard.txt");
+		assertEquals(6, second.players().size());
+		for(int i = 0; i < 6; i++){
+			CharacterToken seat = match.players().get(i);
+			CharacterToken a = first.players().get(i), b = second.players().get(i);
+			// each game has its own tokens for the same seats
+			assertFalse(a == b);
+			assertFalse(seat == a || seat == b);
+			assertEquals(seat.getName(), b.getName());
+			assertEquals(seat.getToken(), b.getToken());
+			assertEquals(seat.isPlayer(), b.isPlayer());
+			assertTrue(second.positions().holds(b));
+			assertFalse(first.positions().holds(b));
+		}
+	}
+
+	//====================================================================================//
+	//                                  SAVE + LOAD TESTS                                 //
+	//====================================================================================//
+	
+	@Test
+	public void testSaveRoundTrip(){
+		TextClient client = cluedoGame();
+		CluedoGame game = client.game();
+		CharacterToken player = game.players().get(0);
+		client.board().moveSouth(player);
+		player.suggested(true);
+		game.setTurn(2);
+		byte[] saved = GameCodec.encode(game);
+		assertTrue(saved.length < 400);
+		
+		CluedoGame restored = GameCodec.decode(saved);
+		assertEquals(2, restored.turn());
+		assertArrayEquals(game.Solution(), restored.Solution());
+		CharacterToken copy = restored.players().get(0);
+		assertEquals(player.getXPos(), copy.getXPos());
+		assertEquals(player.getYPos(), copy.getYPos());
+		assertTrue(copy.hasSuggested());
+		assertEquals(player.getHand(), copy.getHand());
+		assertSame(copy, restored.board().getTile(copy.getXPos(), copy.getYPos()).getToken());
+		WeaponToken weapon = restored.weapons().get(0);
+		assertSame(weapon, restored.board().getTile(weapon.getXPos(), weapon.getYPos()).getToken());
+		assertArrayEquals(saved, GameCodec.encode(restored));
+	}
+	
+	@Test
+	public void testLoadCorrupt(){
+		try {
+			GameCodec.decode(new byte[]{ 1, 2, 3 });
+			fail("expected an error");
+		} catch(CluedoError e) {
+			// expected
+		}
+	}
+	
+	@Test
+	public void testCacheEvictsToDisk() throws IOException{
+		File file = File.createTempFile("cluedo", ".cache");
+		file.deleteOnExit();
+		GameCache cache = new GameCache(GameCache.GAME_BYTES, file); // room for one game
+		CluedoGame first = cluedoGame().game();
+		long a = cache.put(first);
+		long b = cache.put(cluedoGame().game());
+		assertEquals(1, cache.resident());
+		assertEquals(2, cache.size());
+		assertTrue(cache.fileBytes() > 0);
+		CluedoGame restored = cache.get(a); // brought back, sending the other to disk
+		assertArrayEquals(first.Solution(), restored.Solution());
+		assertSame(restored, cache.get(a));
+		assertNotNull(cache.get(b));
+		cache.remove(a);
+		assertNull(cache.get(a));
+		cache.close();
+	}
+
+	@Test
+	public void testCacheKeepsGameWhenRestoreFails() throws IOException{
+		File file = File.createTempFile("cluedo", ".cache");
+		file.deleteOnExit();
+		GameCache cache = new GameCache(GameCache.GAME_BYTES, file);
+		CluedoGame first = cluedoGame().game();
+		long a = cache.put(first);
+		cache.put(cluedoGame().game()); // the first game is saved at the start of the file
+		RandomAccessFile raw = new RandomAccessFile(file, "rw");
+		byte[] saved = new byte[8];
+		raw.readFully(saved);
+		raw.seek(0);
+		raw.write(new byte[8]);
+		try {
+			cache.get(a);
+			fail("restored a corrupt game");
+		} catch(CluedoError e) {
+			// expected
+		}
+		assertEquals(2, cache.size());
+		// once the file is mended the game comes back
+		raw.seek(0);
+		raw.write(saved);
+		raw.close();
+		assertArrayEquals(first.Solution(), cache.get(a).Solution());
+		cache.close();
+	}
+
+	@Test
+	public void testCacheCompacts() throws IOException{
+		File file = File.createTempFile("cluedo", ".cache");
+		file.deleteOnExit();
+		GameCache cache = new GameCache(GameCache.GAME_BYTES, file);
+		CluedoGame first = cluedoGame().game(), second = cluedoGame().game();
+		long a = cache.put(first), b = cache.put(second);
+		long one = cache.fileBytes(), most = 0;
+		assertTrue(one * 10000 > 1 << 20);
+		// each restore saves the other game, and the file is rewritten before it grows too far
+		for(int i = 0; i < 10000; i++){
+			cache.get(i % 2 == 0 ? a : b);
+			most = Math.max(most, cache.fileBytes());
+		}
+		assertTrue(most <= (1 << 20) + one);
+		assertEquals(2, cache.size());
+		assertArrayEquals(first.Solution(), cache.get(a).Solution());
+		assertArrayEquals(second.Solution(), cache.get(b).Solution());
+		assertFalse(new File(file.getPath() + ".compact").exists());
+		cache.close();
+	}
+
+	//====================================================================================//
+	//                                  VALIDATOR TESTS                                   //
+	//====================================================================================//
+	
+	@Test
+	public void testValidBoard(){
+		BoardValidator.Report report = BoardValidator.validate(new File("gameBoard.txt"));
+		assertTrue(report.errors().toString(), report.valid());
+		assertTrue(report.warnings().isEmpty());
+	}
+	
+	@Test
+	public void testInvalidBoard() throws IOException{
+		List<String> lines = new ArrayList<String>(Files.readAllLines(new File("gameBoard.txt").toPath()));
+		lines.set(0, lines.get(0).replace('2', 'x')); // no start square 2
+		lines.set(9, lines.get(9).replace('e', 'w')); // door facing away from its room
+		lines.set(3, lines.get(3) + "?"); // too wide
+		BoardValidator.Report report = BoardValidator.validate("broken", lines);
+		assertFalse(report.valid());
+		String errors = report.errors().toString();
+		assertTrue(errors, errors.contains("missing start square 2"));
+		assertTrue(errors, errors.contains("door 'w' does not lead into a room"));
+		assertTrue(errors, errors.contains("row is 26 squares wide"));
+		assertTrue(report.toJson().startsWith("{\"file\":\"broken\",\"valid\":false"));
+	}
+	
+	@Test
+	public void testGeneratedBoardsValid(){
+		Random random = new Random(3);
+		for(int i = 0; i < 50; i++){
+			int width = 18 + random.nextInt(100); // big enough for nine rooms
+			int height = 18 + random.nextInt(100);
+			int rooms = 1 + random.nextInt(9);
+			List<String> lines = BoardGenerator.generate(width, height, rooms, random.nextDouble(), random);
+			BoardValidator.Report report = BoardValidator.validate("generated", lines);
+			assertTrue(report.toJson(), report.valid());
+		}
+	}
+	
+	@Test
+	public void testPlayOnGeneratedBoard() throws IOException{
+		File file = File.createTempFile("cluedo", ".txt");
+		file.deleteOnExit();
+		PrintStream out = new PrintStream(file);
+		BoardGenerator.write(BoardGenerator.generate(60, 40, 9, 0.5, new Random(5)), out);
+		out.close();
+		CluedoGame game = new CluedoGame(6, getAllCharacters(), file.getPath());
+		Board board = game.board();
+		assertEquals(60, board.width());
+		assertEquals(40, board.height());
+		assertNotNull(board.getTile(59, 39));
+		assertNull(board.getTile(60, 0));
+		CharacterToken player = game.players().get(0);
+		board.moveIntoRoom(player, Room.LIBRARY);
+		assertTrue(board.inRoom(player));
+	}
+	
+	@Test
+	public void testChangedBoardFileReadAgain() throws IOException{
+		File file = File.createTempFile("cluedo", ".txt");
+		file.deleteOnExit();
+		PrintStream out = new PrintStream(file);
+		BoardGenerator.write(BoardGenerator.generate(60, 40, 9, 0.5, new Random(5)), out);
+		out.close();
+		assertEquals(60, new CluedoGame(6, getAllCharacters(), file.getPath()).board().width());
+		MoveTable table = MoveTable.of(file.getPath());
+		// a new board under the same name, which may be written within the same tick of the clock
+		out = new PrintStream(file);
+		BoardGenerator.write(BoardGenerator.generate(70, 40, 9, 0.5, new Random(5)), out);
+		out.close();
+		assertEquals(70, new CluedoGame(6, getAllCharacters(), file.getPath()).board().width());
+		assertNotSame(table, MoveTable.of(file.getPath()));
+		assertEquals(70, MoveTable.of(file.getPath()).width());
+		// forgetting a file reads it again even if its time and size are the same
+		table = MoveTable.of(file.getPath());
+		Board.forget(file.getPath());
+		assertNotSame(table, MoveTable.of(file.getPath()));
+	}
+	
+	//====================================================================================//
+	//                                  NAME LOOKUP TESTS                                 //
+	//====================================================================================//
+	
+	@Test
+	public void testNameIndex(){
+		NameIndex<Integer> index = new NameIndex<Integer>(4);
+		index.put("Lead Pipe", 1);
+		index.put("hall", 2);
+		assertEquals(Integer.valueOf(1), index.get("LEAD_PIPE"));
+		assertEquals(Integer.valueOf(1), index.get("lead pipe"));
+		assertEquals(Integer.valueOf(2), index.get(new StringBuilder("HaLL")));
+		assertNull(index.get("hal"));
+		assertNull(index.get(null));
+		index.put("HALL", 3); // replaces
+		assertEquals(2, index.size());
+		assertEquals(Integer.valueOf(3), index.get("hall"));
+	}
+	
+	@Test
+	public void testCardNames(){
+		assertEquals(Character.MISS_SCARLETT, CluedoGame.getCard("miss scarlett"));
+		assertEquals(CluedoGame.Weapon.LEAD_PIPE, CluedoGame.getCard("Lead_Pipe"));
+		assertEquals(Room.BALL_ROOM, CluedoGame.getRoom("ball room"));
+		assertNull(CluedoGame.getCard("butler"));
+		CluedoGame game = cluedoGame().game();
+		assertEquals(game.players().get(2), game.getCharacter("TEST3"));
+		assertSame(game.weapons().get(3), game.getWeapon("revolver"));
+	}
+	
+	@Test
+	public void testCardIds(){
+		List<Card> cards = new ArrayList<Card>();
+		cards.addAll(Arrays.asList(Character.values()));
+		cards.addAll(Arrays.asList(CluedoGame.Weapon.values()));
+		cards.addAll(Arrays.asList(Room.values()));
+		assertEquals(CluedoGame.NUM_CARDS, cards.size());
+		for(int i = 0; i < cards.size(); i++){
+			assertEquals(i, cards.get(i).id());
+			assertSame(cards.get(i), CluedoGame.getCard(i));
+		}
+		cards.addAll(getAllWeapons());
+		// ids are equal exactly when the names are, weapon tokens included
+		for(Card a : cards){
+			for(Card b : cards){
+				assertEquals(a.toString().equals(b.toString()), a.id() == b.id());
+			}
+		}
+	}
+	
 	//====================================================================================//
 	//                                  HELPER METHODS                                    //
 	//====================================================================================//
@@ -449,6 +1735,39 @@ public class Tests {
 		return solution;
 	}
 	
+	/**
+	 * Runs each task on a thread of its own and waits for them all to finish,
+	 *  then throws the first exception or failed assertion of any of them.
+	 * @param tasks
+	 */
+	private static void runThreads(Runnable[] tasks) throws Exception {
+		final Throwable[] failures = new Throwable[tasks.length];
+		Thread[] threads = new Thread[tasks.length];
+		for(int t = 0; t < tasks.length; t++){
+			final int task = t;
+			final Runnable run = tasks[t];
+			threads[t] = new Thread() {
+				public void run() {
+					try {
+						run.run();
+					} catch(Throwable e) {
+						failures[task] = e;
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for(Thread t : threads){
+			t.join();
+		}
+		for(Throwable e : failures){
+			if(e instanceof Error)
+				throw (Error)e;
+			if(e != null)
+				throw (Exception)e;
+		}
+	}
+	
 	/**
 	 * Returns a test character.
 	 * @return
@@ -661,6 +1980,19 @@ public class Tests {
 		return new CluedoGame(6, getAllCharacters(), "gameBoard.txt");
 	}
 	
+	/**
+	 * Creates a game with 3 players and 3 spare characters, as a bot game is set up.
+	 * @return
+	 */
+	private CluedoGame threePlayerGame(){
+		List<CharacterToken> players = new ArrayList<CharacterToken>();
+		Character[] characters = Character.values();
+		for(int i = 0; i < characters.length; i++){
+			players.add(new CharacterToken("TEST" + (i + 1), characters[i], i < 3, i + 1));
+		}
+		return new CluedoGame(3, players, "gameBoard.txt");
+	}
+	
 	/**
 	 * Creates a game with 4 players.
 	 * @return
@@ -6,6 +6,14 @@ package cluedo.tokens;
  *
  */
 public interface Card {
+	
+	/**
+	 * Returns the id of this card, the same for every copy of the card.
+	 *  Characters are 0 to 5, weapons 6 to 11 and rooms 12 to 20, 
+	 *  and a weapon token has the id of its weapon.
+	 * @return
+	 */
+	public int id();
 
 	@Override 
 	public String toString();
@@ -1,4 +1,7 @@
 package cluedo.tokens;
+
+import cluedo.control.CluedoError;
+
 /**
  * Tokens displayed on the board.
  * 
@@ -7,23 +10,28 @@ package cluedo.tokens;
  */
 public abstract class GameToken {
 	
-	// position of the game token on the board.
+	// position of the game token, until it is bound to a game's store
 	private int XPos;
 	private int YPos;
+	private PositionStore store; // where the game keeps this token's position, may be null
+	private int slot; // of this token in the store
 	
 	/**
 	 * Returns the x position of the game token on the board.
 	 * @return
 	 */
 	public int getXPos() {
-		return XPos;
+		return store == null ? XPos : store.x(slot);
 	}
 
 	/**
-	 * Sets the x position of the game token on the board.
+	 * Sets the x position of a game token which is not in a game. A token
+	 *  in a game is moved through the game's board.
 	 * @return
 	 */
 	public void setXPos(int Xpos){
+		if(store != null)
+			throw new CluedoError("Token in a game is moved by its board: " + getName());
 		this.XPos = Xpos;
 	}
 
@@ -32,17 +40,42 @@ public abstract class GameToken {
 	 * @return
 	 */
 	public int getYPos(){
-		return YPos;
+		return store == null ? YPos : store.y(slot);
 	}
 
 	/**
-	 * Sets the y position of the game token on the board.
+	 * Sets the y position of a game token which is not in a game. A token
+	 *  in a game is moved through the game's board.
 	 * @return
 	 */
 	public void setYPos(int Ypos){
+		if(store != null)
+			throw new CluedoError("Token in a game is moved by its board: " + getName());
 		this.YPos = Ypos;
 	}
 	
+	/**
+	 * Keeps this token's position in a store from now on.
+	 */
+	void bind(PositionStore store, int slot){
+		this.store = store;
+		this.slot = slot;
+	}
+	
+	/**
+	 * Returns the store keeping this token's position, or null.
+	 */
+	PositionStore store(){
+		return store;
+	}
+	
+	/**
+	 * Returns the slot of this token in its store.
+	 */
+	int slot(){
+		return slot;
+	}
+	
 	/**
 	 * Returns the name of this game token.
 	 * @return
@@ -0,0 +1,215 @@
+package cluedo.tokens;
+
+import cluedo.control.CluedoError;
+
+/**
+ * Where each of the twelve tokens of a game is, kept as one array of squares
+ *  with a slot for each token, numbered as the token's card: the six
+ *  characters, then the six weapons. This is the only record of where a
+ *  game's tokens are. The tokens read their positions from it, and the tiles
+ *  of the board find which token is on them from it, so there is nothing to
+ *  keep in step when a token moves. Alongside the squares it keeps which
+ *  slot is on each square of the board, so finding the token on a square
+ *  takes one look whatever the number of tokens.
+ *
+ * A token belongs to the store of the one game it is made for, and can only
+ *  be moved through that game's board. A token of no game which is put on a
+ *  game's board, as the tests do, joins that game's store in a spare slot
+ *  after the twelve. A token which is in no store is on no board, and keeps
+ *  its own position, as tokens always have.
+ *
+ * @author Patrick Evans and Maria Legaspi
+ *
+ */
+public class PositionStore {
+
+	public static final int SLOTS = 12; // six characters then six weapons
+	private static final int MAX_SLOTS = 32; // with the spare slots, one bit of placed each
+
+	private final int[] squares = new int[MAX_SLOTS * 2]; // x then y of each slot
+	private final GameToken[] tokens = new GameToken[MAX_SLOTS];
+	private int placed; // bitmask of the slots whose token is on the board
+	private int spare = SLOTS; // the next spare slot
+	private int width, height; // of the board the tokens are on
+	private byte[] occupants = new byte[0]; // one more than the slot on each square, 0 for none
+
+	/**
+	 * Makes a store the record of where a token is, keeping its current
+	 *  position, though it is not on the board until put there. A token
+	 *  can only belong to one store.
+	 * @param token
+	 */
+	public void bind(GameToken token) {
+		if(token == null)
+			throw new CluedoError("Null parameters: bind()");
+		if(token.store() != null)
+			throw new CluedoError("Token already in a game: " + token.getName());
+		int slot = slotOf(token);
+		if(tokens[slot] != null)
+			throw new CluedoError("Two tokens for " + token.getName());
+		bind(token, slot);
+	}
+
+	/**
+	 * Takes a token of no game into a spare slot, so it can be put on this
+	 *  store's board alongside the game's own tokens.
+	 * @param token
+	 */
+	public void join(GameToken token) {
+		if(token == null)
+			throw new CluedoError("Null parameters: join()");
+		if(token.store() != null)
+			throw new CluedoError("Token already in a game: " + token.getName());
+		if(spare == MAX_SLOTS)
+			throw new CluedoError("Too many tokens on the board");
+		bind(token, spare++);
+	}
+
+	/**
+	 * Makes room for the squares of a board of a given size, keeping the
+	 *  tokens already on the board.
+	 * @param width
+	 * @param height
+	 */
+	public void cover(int width, int height) {
+		if(width <= this.width && height <= this.height)
+			return;
+		this.width = Math.max(width, this.width);
+		this.height = Math.max(height, this.height);
+		occupants = new byte[this.width * this.height];
+		for(int m = placed; m != 0; m &= m - 1){
+			int slot = Integer.numberOfTrailingZeros(m);
+			occupants[square(squares[slot * 2], squares[slot * 2 + 1])] = (byte)(slot + 1);
+		}
+	}
+
+	/**
+	 * Returns true if a token is bound to this store.
+	 * @param token
+	 * @return
+	 */
+	public boolean holds(GameToken token) {
+		return token != null && token.store() == this;
+	}
+
+	/**
+	 * Puts a token on a square of the board, taking it off the square it
+	 *  was on. Fails if another token is on the square.
+	 * @param token
+	 * @param x
+	 * @param y
+	 */
+	public void put(GameToken token, int x, int y) {
+		int slot = slot(token);
+		if(x < 0 || x >= width || y < 0 || y >= height)
+			throw new CluedoError("Square off the board: " + x + ", " + y);
+		int to = square(x, y);
+		if(occupants[to] != 0 && occupants[to] != slot + 1)
+			throw new CluedoError("Tile already contains an item");
+		if((placed & 1 << slot) != 0)
+			occupants[square(squares[slot * 2], squares[slot * 2 + 1])] = 0;
+		squares[slot * 2] = x;
+		squares[slot * 2 + 1] = y;
+		occupants[to] = (byte)(slot + 1);
+		placed |= 1 << slot;
+	}
+
+	/**
+	 * Takes a token off the board, keeping the square it was on as its position.
+	 * @param token
+	 */
+	public void lift(GameToken token) {
+		int slot = slot(token);
+		if((placed & 1 << slot) == 0)
+			return;
+		occupants[square(squares[slot * 2], squares[slot * 2 + 1])] = 0;
+		placed &= ~(1 << slot);
+	}
+
+	/**
+	 * Returns the token on a square, or null.
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public GameToken tokenAt(int x, int y) {
+		if(x < 0 || x >= width || y < 0 || y >= height)
+			return null;
+		int occupant = occupants[square(x, y)];
+		return occupant == 0 ? null : tokens[occupant - 1];
+	}
+
+	/**
+	 * Returns the token in a slot, or null.
+	 * @param slot
+	 * @return
+	 */
+	public GameToken token(int slot) {
+		return tokens[slot];
+	}
+
+	/**
+	 * Returns the slots whose tokens are on the board, as a bitmask.
+	 * @return
+	 */
+	public int placed() {
+		return placed;
+	}
+
+	/**
+	 * Returns the column of the token in a slot.
+	 * @param slot
+	 * @return
+	 */
+	public int x(int slot) {
+		return squares[slot * 2];
+	}
+
+	/**
+	 * Returns the row of the token in a slot.
+	 * @param slot
+	 * @return
+	 */
+	public int y(int slot) {
+		return squares[slot * 2 + 1];
+	}
+
+	/**
+	 * Keeps a token in a slot, starting from its current position.
+	 */
+	private void bind(GameToken token, int slot) {
+		squares[slot * 2] = token.getXPos();
+		squares[slot * 2 + 1] = token.getYPos();
+		tokens[slot] = token;
+		token.bind(this, slot);
+	}
+
+	/**
+	 * Returns the index of a square in the occupants.
+	 */
+	private int square(int x, int y) {
+		return y * width + x;
+	}
+
+	/**
+	 * Returns the slot of a token bound to this store.
+	 */
+	private int slot(GameToken token) {
+		if(!holds(token))
+			throw new CluedoError("Token not in this game: " + (token == null ? null : token.getName()));
+		return token.slot();
+	}
+
+	/**
+	 * Returns the slot for a token, which is the id of its card.
+	 * @param token
+	 * @return
+	 */
+	public static int slotOf(GameToken token) {
+		if(token instanceof CharacterToken)
+			return ((CharacterToken)token).getToken().id();
+		if(token instanceof WeaponToken)
+			return ((WeaponToken)token).id();
+		throw new CluedoError("Unknown token: " + token);
+	}
+}
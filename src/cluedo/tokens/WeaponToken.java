@@ -9,6 +9,8 @@ public class WeaponToken extends GameToken implements Card{
 	
 	private Weapon name;
 	
+	private static final char[] SYMBOLS = { '+', '-', '/', '*', '=', '?' }; // in the order of the weapons
+	
 	/**
 	 * Creates a game token representation of the weapon.
 	 * @param name
@@ -32,6 +34,11 @@ public class WeaponToken extends GameToken implements Card{
 		return name;
 	}
 
+	@Override
+	public int id() {
+		return name.id();
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -61,21 +68,6 @@ public class WeaponToken extends GameToken implements Card{
 
 	@Override
 	public char getSymbol() {
-		switch(getName()){
-			case "CANDLESTICK":
-				return '+';
-			case "DAGGER":
-				return '-';
-			case "LEAD PIPE":
-				return '/';
-			case "REVOLVER":
-				return '*';
-			case "ROPE":
-				return '=';
-			case "SPANNER":
-				return '?';
-			default:
-				return (Character) null;
-		}
+		return SYMBOLS[name.ordinal()];
 	}
 }